@@ -0,0 +1,27 @@
+package bdda.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accès d'une relation au buffer pool (BufferManager.getAccessCounters) : pages trouvées
+ * en mémoire et pages lues sur disque. Passés à GetPageBuffer par la relation et ses
+ * parcours ; les compteurs sont des LongAdder (pas de contention entre threads).
+ */
+public final class AccessCounters {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    void reset() {
+        hits.reset();
+        misses.reset();
+    }
+}
@@ -0,0 +1,116 @@
+package bdda.core;
+
+/**
+ * ARC, Adaptive Replacement Cache (Megiddo, Modha, FAST 2003).
+ *
+ * T1 : pages en mémoire vues une seule fois récemment (LRU).
+ * T2 : pages en mémoire vues au moins deux fois (LRU).
+ * B1, B2 : historiques des pages évincées de T1 et de T2.
+ *
+ * La cible p est la taille visée pour T1 : un défaut sur une page de B1 montre que T1
+ * était trop petit (p augmente), un défaut sur une page de B2 que T2 l'était (p diminue).
+ * Un parcours ne remplit que T1 et ne fait pas sortir les pages de T2.
+ * Les tailles suivent l'article : |T1| + |B1| <= c et |T1| + |T2| + |B1| + |B2| <= 2c.
+ */
+final class ArcPolicy implements ReplacementPolicy {
+
+    private final Frame[] frames;
+    private final int capacity;
+    private final FrameList t1;
+    private final FrameList t2;
+    private final GhostList b1;
+    private final GhostList b2;
+    private int p;
+
+    // Pages préchargées pas encore demandées
+    private final boolean[] unreferenced;
+
+    ArcPolicy(Frame[] frames) {
+        this.frames = frames;
+        this.capacity = frames.length;
+        this.t1 = new FrameList(capacity);
+        this.t2 = new FrameList(capacity);
+        this.b1 = new GhostList(capacity);
+        this.b2 = new GhostList(capacity);
+        this.p = 0;
+        this.unreferenced = new boolean[capacity];
+    }
+
+    @Override
+    public void loaded(Frame frame) {
+        long key = PageTable.key(frame.pageId);
+        unreferenced[frame.slot] = false;
+        if (b1.contains(key)) {
+            p = Math.min(capacity, p + Math.max(1, b2.size() / b1.size()));
+            b1.remove(key);
+            t2.moveToTail(frame.slot);
+        } else if (b2.contains(key)) {
+            p = Math.max(0, p - Math.max(1, b1.size() / b2.size()));
+            b2.remove(key);
+            t2.moveToTail(frame.slot);
+        } else {
+            t1.moveToTail(frame.slot);
+            if (t1.size() + b1.size() > capacity) {
+                b1.removeOldest();
+            }
+            while (t1.size() + t2.size() + b1.size() + b2.size() > 2 * capacity && b2.size() > 0) {
+                b2.removeOldest();
+            }
+        }
+    }
+
+    /**
+     * Dans T1, sans consulter B1/B2 ni changer p : son premier accès compte comme son chargement.
+     */
+    @Override
+    public void prefetched(Frame frame) {
+        t1.moveToTail(frame.slot);
+        unreferenced[frame.slot] = true;
+        if (t1.size() + b1.size() > capacity) {
+            b1.removeOldest();
+        }
+    }
+
+    @Override
+    public void accessed(Frame frame) {
+        if (unreferenced[frame.slot]) {
+            t1.remove(frame.slot);
+            loaded(frame);
+            return;
+        }
+        t1.remove(frame.slot);
+        t2.moveToTail(frame.slot);
+    }
+
+    @Override
+    public void removed(Frame frame) {
+        t1.remove(frame.slot);
+        t2.remove(frame.slot);
+        unreferenced[frame.slot] = false;
+    }
+
+    @Override
+    public Frame victim() {
+        // REPLACE : T1 s'il dépasse sa cible, sinon T2 ; l'autre liste si tout y est épinglé
+        boolean fromT1 = t1.size() > 0 && (t1.size() > p || t2.size() == 0);
+        int idx = evict(fromT1);
+        if (idx == FrameList.NONE) {
+            idx = evict(!fromT1);
+        }
+        return idx == FrameList.NONE ? null : frames[idx];
+    }
+
+    private int evict(boolean fromT1) {
+        FrameList list = fromT1 ? t1 : t2;
+        int idx = list.claimOldest(frames);
+        if (idx != FrameList.NONE) {
+            list.remove(idx);
+            // Une page préchargée qui n'a pas servi n'entre pas dans l'historique
+            if (!unreferenced[idx]) {
+                (fromT1 ? b1 : b2).add(PageTable.key(frames[idx].pageId), 0);
+            }
+            unreferenced[idx] = false;
+        }
+        return idx;
+    }
+}
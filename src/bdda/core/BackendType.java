@@ -0,0 +1,10 @@
+package bdda.core;
+
+/**
+ * Stockage des pages (voir StorageBackend) :
+ * FILE   -> fichiers Data.bin (DiskManager)
+ * MEMORY -> mémoire hors tas, non persistante (InMemoryBackend)
+ */
+enum BackendType {
+    FILE, MEMORY
+}
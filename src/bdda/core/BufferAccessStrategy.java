@@ -0,0 +1,59 @@
+package bdda.core;
+
+import java.util.Arrays;
+
+/**
+ * Anneau de frames d'une opération de masse (BufferManager.getAccessStrategy).
+ *
+ * Une page absente du buffer pool demandée avec l'anneau est chargée dans la frame
+ * suivante de l'anneau, si celle-ci contient encore une page chargée par l'anneau et
+ * non épinglée : l'opération recycle ses propres frames au lieu d'en prendre au buffer
+ * pool. Sinon (anneau pas encore plein, page reprise par une autre session, frame
+ * épinglée), la frame vient du buffer pool comme pour un accès normal et prend cette
+ * place dans l'anneau. Les pages chargées par l'anneau entrent avec une priorité basse
+ * dans la politique de remplacement, et une page demandée sans l'anneau en sort.
+ *
+ * Un anneau sert une seule opération, dans un seul thread (pas de synchronisation).
+ */
+public final class BufferAccessStrategy {
+
+    private final BufferAccessType type;
+    // Indices des frames de l'anneau (-1 : place vide)
+    private final int[] ring;
+    private int current;
+
+    BufferAccessStrategy(BufferAccessType type, int size) {
+        this.type = type;
+        this.ring = new int[size];
+        Arrays.fill(ring, -1);
+        this.current = size - 1;
+    }
+
+    public BufferAccessType getType() {
+        return type;
+    }
+
+    /**
+     * @return le nombre de frames de l'anneau
+     */
+    public int size() {
+        return ring.length;
+    }
+
+    /**
+     * Avance d'une place dans l'anneau.
+     *
+     * @return l'indice de la frame à cette place, ou -1 si la place est vide
+     */
+    int advance() {
+        current = (current + 1) % ring.length;
+        return ring[current];
+    }
+
+    /**
+     * Place la frame obtenue pour la place courante.
+     */
+    void put(int frameIdx) {
+        ring[current] = frameIdx;
+    }
+}
@@ -0,0 +1,12 @@
+package bdda.core;
+
+/**
+ * Type d'opération de masse servie par un anneau de frames (BufferAccessStrategy) :
+ * BULK_READ  -> parcours en lecture : une frame de l'anneau modifiée n'est pas réutilisée,
+ *               elle est laissée au buffer pool (écriture en tâche de fond)
+ * BULK_WRITE -> chargement ou parcours qui modifie ses pages : une frame de l'anneau
+ *               modifiée est réécrite par l'opération elle-même avant d'être réutilisée
+ */
+public enum BufferAccessType {
+    BULK_READ, BULK_WRITE
+}
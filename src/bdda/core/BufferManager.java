@@ -1,158 +1,1657 @@
 package bdda.core;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Buffer pool partagé par toutes les sessions (utilisable par plusieurs threads).
+ *
+ * Verrous :
+ * - la table des pages est découpée entre les partitions : chacune a la sienne, protégée
+ *   par son propre verrou, où sont les pages dont elle est la partition d'origine (homeOf) ;
+ * - le nombre d'épinglages d'une frame est atomique (Frame.tryPin / unpin) :
+ *   un accès à une page en mémoire ne prend que le verrou de la table de sa partition
+ *   d'origine, le temps de la recherche, puis celui de la partition de sa frame ;
+ * - les frames sont réparties en bm_shards partitions (Shard), chacune avec sa politique
+ *   de remplacement, sa pile de frames libres et son verrou, tenu seulement pour choisir
+ *   une frame de la partition.
+ *
+ * Une frame choisie pour un remplacement est réservée (pinCount = Frame.CLAIMED) :
+ * personne ne peut l'épingler tant que l'ancienne page n'est pas réécrite et la nouvelle
+ * lue. Les lectures et écritures disque se font sans aucun verrou : deux défauts de page
+ * sur des pages différentes ne s'attendent pas. Un thread qui trouve une page en cours
+ * de chargement attend la fin de celui-ci (Frame.loading), puis recommence sa recherche.
+ *
+ * L'épinglage empêche seulement le remplacement de la page. Les accès concurrents au
+ * contenu passent par pin(), qui prend le verrou de la frame (Frame.latch) dans le mode
+ * demandé ; GetPage/FreePage restent disponibles pour un accès sans verrou de contenu.
+ *
+ * Les frames sont dans le tas (un tableau par frame) ou, avec bm_memory = 'DIRECT',
+ * des tranches d'une même mémoire hors tas : les lectures et écritures du stockage
+ * se font alors directement dans la mémoire des frames, sans tableau intermédiaire.
+ *
+ * Un thread de fond (bdda-bgwriter, voir writeDirtyPages) écrit les pages modifiées
+ * non épinglées quand elles dépassent bm_writer_dirty_ratio % des frames : un défaut
+ * de page trouve presque toujours une victime propre, sans écriture à attendre.
+ * Un point de contrôle (checkpoint) écrit toutes les pages modifiées sans vider le
+ * buffer pool ; seul FlushBuffers, à l'arrêt, le vide.
+ *
+ * Lecture anticipée : quand des pages d'un fichier absentes du buffer pool sont
+ * demandées dans l'ordre (READ_AHEAD_TRIGGER pages consécutives), les pages suivantes
+ * sont préchargées en tâche de fond (Prefetch), avant que le parcours ne les demande.
+ * Elle s'arrête à la fin du fichier, et n'est pas faite sur les pages qu'un appelant
+ * précharge lui-même (Prefetch, par exemple RelationScanner avec les pages de sa relation).
+ *
+ * Les opérations de masse (parcours complet, APPEND) passent un anneau de frames
+ * (BufferAccessStrategy, voir getAccessStrategy) : elles recyclent leurs propres frames
+ * au lieu de chasser les pages des autres sessions.
+ *
+ * Le nombre de frames peut changer pendant le fonctionnement (SetBufferCount) : le tableau
+ * des frames est remplacé, les frames restantes gardent leur indice et leurs pages.
+ *
+ * Partitions : la frame d'indice i appartient à la partition i % bm_shards. Une page
+ * absente est chargée dans la partition de son groupe de SHARD_EXTENT_PAGES pages
+ * (homeOf), ou dans une autre si toutes les frames de celle-ci sont épinglées. Épinglages,
+ * libérations et remplacements ne prennent que le verrou d'une partition : les threads
+ * qui travaillent sur des pages différentes ne se disputent plus un verrou commun.
+ * Hors tas, chaque partition a sa propre mémoire, alignée sur les pages de 2 Mo
+ * (HUGE_PAGE_BYTES) pour les huge pages transparentes du système.
+ *
+ * Statistiques (getStats, JMX avec registerMBean) : des LongAdder incrémentés sur les
+ * chemins d'accès, sans verrou ni contention entre threads.
+ *
+ * Buffer pools nommés (BufferPoolName, voir getPool) : le BufferManager créé par le SGBD est
+ * le pool DEFAULT ; il crée aussi les pools KEEP et RECYCLE configurés, chacun avec ses
+ * frames, sa politique de remplacement et son écriture en tâche de fond. Une page n'est
+ * utilisée que par le pool de sa relation ; une page désallouée est oubliée par tous
+ * les pools (discardPage) avant d'être réutilisée par une autre relation.
+ */
 public class BufferManager {
 
+    private static final Comparator<PageId> DISK_ORDER =
+            Comparator.comparingInt(PageId::getFileIdx).thenComparingInt(PageId::getPageIdx);
+
+    // Taille maximale d'un bloc de mémoire hors tas (un ByteBuffer est indexé par un int)
+    private static final int MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    // Alignement et granularité des blocs hors tas d'au moins une huge page (2 Mo)
+    private static final int HUGE_PAGE_BYTES = 2 * 1024 * 1024;
+
+    // Pages consécutives d'un fichier chargées dans une même partition (lecture anticipée, Prefetch)
+    private static final int SHARD_EXTENT_PAGES = 64;
+
+    // Pages copiées puis écrites à la fois par writeDirtyPages et checkpoint
+    private static final int WRITER_BATCH_PAGES = 64;
+
+    // Pages consécutives d'un fichier à partir desquelles la lecture anticipée démarre
+    private static final int READ_AHEAD_TRIGGER = 3;
+
+    // Attente maximale d'une page épinglée dans une frame retirée par SetBufferCount (ms)
+    private static final long RESIZE_TIMEOUT_MS = 10_000;
+
+    // Lectures optimistes tentées par readOptimistic avant de prendre le verrou partagé
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+    // Essais de tryOptimisticRead avant d'attendre l'écrivain sur le verrou partagé
+    private static final int OPTIMISTIC_SPINS = 64;
+
     private DBConfig config;
-    private DiskManager diskManager;
-    private BufferPolicy policy;
-    private Frame[] frames;
-    private Map<String, Frame> pageTable;
+    private StorageBackend diskManager;
+    private final BufferPoolName name;
+    // Tous les pools créés avec le pool DEFAULT (lui compris), partagés par chacun d'eux
+    private final Map<BufferPoolName, BufferManager> pools;
+    private volatile BufferPolicy policy;
+    // Remplacé (jamais modifié) par SetBufferCount : une frame garde son indice
+    private volatile Frame[] frames;
+    // Partitions des frames : la frame i appartient à shards[i % shards.length]
+    private final Shard[] shards;
+
+    // Écriture en tâche de fond : writerLock sépare ses passages des points de contrôle et de FlushBuffers
+    private final Object writerLock = new Object();
+    private ScheduledExecutorService writer;
+    private ByteBuffer writerCopies;
 
-    public BufferManager(DBConfig config, DiskManager diskManager) {
+    // Détection des parcours séquentiels, par fichier (sans verrou, indicative en concurrence) :
+    // dernière page demandée, longueur de la suite en cours, fin de la zone déjà préchargée,
+    // et pages [explicitFromOf, explicitToOf) du dernier Prefetch explicite (sans lecture anticipée)
+    private final int[] lastPageOf;
+    private final int[] sequentialRunOf;
+    private final int[] readAheadEndOf;
+    private final int[] explicitFromOf;
+    private final int[] explicitToOf;
+
+    // Horloge logique des accès (Frame.lastAccess) : sans appel système, indicative en concurrence
+    private long accessClock;
+
+    // Statistiques (getStats) depuis statsSince (System.nanoTime) ; pinnedNanos : durée cumulée
+    // des épinglages terminés, pour le nombre moyen de frames épinglées
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder dirtyWritebacks = new LongAdder();
+    private final LongAdder backgroundWrites = new LongAdder();
+    private final LongAdder pinWaits = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    private volatile long statsSince = System.nanoTime();
+    private final ConcurrentHashMap<String, AccessCounters> relationCounters = new ConcurrentHashMap<>();
+    private ObjectName mbeanName;
+
+    /**
+     * Crée le pool DEFAULT (bm_buffercount, bm_policy), et les pools KEEP et RECYCLE
+     * si bm_keep_buffercount ou bm_recycle_buffercount est positif.
+     */
+    public BufferManager(DBConfig config, StorageBackend diskManager) {
+        this(config, diskManager, BufferPoolName.DEFAULT, config.getBufferCount(), config.getBufferPolicy(),
+                new EnumMap<>(BufferPoolName.class));
+        if (config.getKeepBufferCount() > 0) {
+            new BufferManager(config, diskManager, BufferPoolName.KEEP, config.getKeepBufferCount(),
+                    config.getKeepPolicy(), pools);
+        }
+        if (config.getRecycleBufferCount() > 0) {
+            new BufferManager(config, diskManager, BufferPoolName.RECYCLE, config.getRecycleBufferCount(),
+                    config.getRecyclePolicy(), pools);
+        }
+    }
+
+    private BufferManager(DBConfig config, StorageBackend diskManager, BufferPoolName name, int bufferCount,
+                          BufferPolicy policy, Map<BufferPoolName, BufferManager> pools) {
         this.config = config;
         this.diskManager = diskManager;
-        this.policy = config.getBufferPolicy();
+        this.name = name;
+        this.pools = pools;
+        this.policy = policy;
+        pools.put(name, this);
+
+        this.frames = new Frame[bufferCount];
+        this.shards = new Shard[Math.max(1, Math.min(config.getShards(), bufferCount))];
+        for (int s = 0; s < shards.length; s++) {
+            shards[s] = new Shard(s, bufferCount / shards.length + 1);
+        }
+
+        allocateFrames(frames, 0, config.getPageSize());
 
-        this.frames = new Frame[config.getBufferCount()];
-        this.pageTable = new HashMap<>();
+        this.lastPageOf = new int[config.getMaxFileCount()];
+        this.sequentialRunOf = new int[config.getMaxFileCount()];
+        this.readAheadEndOf = new int[config.getMaxFileCount()];
+        this.explicitFromOf = new int[config.getMaxFileCount()];
+        this.explicitToOf = new int[config.getMaxFileCount()];
+        Arrays.fill(lastPageOf, -1);
 
-        for(int i = 0; i < config.getBufferCount(); i++) {
-            frames[i] = new Frame(config.getPageSize());
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.freeFrames = new int[framesOf(shard, frames.length)];
+                resetFreeFrames(shard);
+                shard.replacement = createReplacement(shard);
+            }
+        }
+
+        if (config.getWriterDirtyRatio() > 0) {
+            startWriter();
+        }
+    }
+
+    /**
+     * Crée les frames frames[from..] : un tableau du tas par frame, ou des tranches de
+     * blocs hors tas contenant chacun un nombre entier de pages (un bloc fait au plus 2 Go).
+     * Hors tas, les frames d'une partition sont dans ses propres blocs (voir allocateArena).
+     */
+    private void allocateFrames(Frame[] frames, int from, int pageSize) {
+        int n = shards.length;
+        if (config.getFrameMemory() != FrameMemory.DIRECT) {
+            for (int i = from; i < frames.length; i++) {
+                frames[i] = new Frame(i, i / n, ByteBuffer.wrap(new byte[pageSize]));
+            }
+            return;
+        }
+
+        int framesPerChunk = Math.max(1, (MAX_CHUNK_BYTES - 2 * HUGE_PAGE_BYTES) / pageSize);
+        for (Shard shard : shards) {
+            ByteBuffer chunk = null;
+            int offset = 0;
+            for (int i = from + Math.floorMod(shard.id - from, n); i < frames.length; i += n) {
+                if (chunk == null || offset == framesPerChunk) {
+                    int remaining = (frames.length - i + n - 1) / n;
+                    chunk = allocateArena(Math.min(framesPerChunk, remaining) * pageSize);
+                    offset = 0;
+                }
+                frames[i] = new Frame(i, i / n, chunk.slice(offset++ * pageSize, pageSize));
+            }
         }
     }
 
+    /**
+     * Alloue un bloc hors tas. À partir d'une huge page, le bloc est aligné sur HUGE_PAGE_BYTES
+     * et sa taille arrondie au multiple supérieur : le noyau peut le couvrir entièrement de
+     * huge pages transparentes (moins de défauts de TLB qu'avec des pages de 4 Ko).
+     */
+    private static ByteBuffer allocateArena(int bytes) {
+        if (bytes < HUGE_PAGE_BYTES) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        int rounded = (bytes + HUGE_PAGE_BYTES - 1) / HUGE_PAGE_BYTES * HUGE_PAGE_BYTES;
+        return ByteBuffer.allocateDirect(rounded + HUGE_PAGE_BYTES).alignedSlice(HUGE_PAGE_BYTES);
+    }
+
     public DBConfig getConfig() {
         return config;
     }
 
-    public DiskManager getDiskManager() {
+    public StorageBackend getDiskManager() {
         return diskManager;
     }
 
-    public Map<String, Frame> getPageTable() {
-        return pageTable;
+    /**
+     * @return une copie de la table des pages (les tables de toutes les partitions réunies)
+     */
+    public PageTable getPageTable() {
+        PageTable snapshot = new PageTable(frames.length);
+        for (Shard shard : shards) {
+            synchronized (shard.pageTable) {
+                shard.pageTable.forEach((fileIdx, pageIdx, frameIdx) ->
+                        snapshot.put(PageTable.key(fileIdx, pageIdx), frameIdx));
+            }
+        }
+        return snapshot;
+    }
+
+    public BufferPoolName getPoolName() {
+        return name;
     }
 
-    public byte[] GetPage(PageId pageId) throws IOException {
-        String key = pageId.getFileIdx() + ":" + pageId.getPageIdx();
+    /**
+     * @return le pool demandé, ou le pool DEFAULT s'il n'est pas configuré (taille 0)
+     */
+    public BufferManager getPool(BufferPoolName pool) {
+        BufferManager manager = pools.get(pool);
+        return manager != null ? manager : pools.get(BufferPoolName.DEFAULT);
+    }
+
+    /**
+     * @return tous les pools existants, DEFAULT en premier (pour checkpoint, FlushBuffers, finish)
+     */
+    public Collection<BufferManager> getPools() {
+        return pools.values();
+    }
+
+    public Frame getFrame(int frameIdx) {
+        return frames[frameIdx];
+    }
 
-        Frame frame = pageTable.get(key);
+    /**
+     * @return le nombre de frames du buffer pool (bm_buffercount, bm_keep_buffercount ou
+     *         bm_recycle_buffercount, ou la taille donnée à SetBufferCount)
+     */
+    public int getBufferCount() {
+        return frames.length;
+    }
 
-        if(frame != null) {
-            frame.pinCount++;
-            frame.lastAccess = System.currentTimeMillis();
+    /**
+     * Épingle la page et retourne son contenu, sans verrou de contenu
+     * (à rendre avec FreePage ; voir pin() pour un accès verrouillé).
+     * Avec des frames hors tas (bm_memory = 'DIRECT'), le tableau retourné est une copie
+     * de la page : ses modifications ne sont pas reportées dans la frame (pour modifier
+     * la page, utiliser GetPageBuffer ou pin).
+     */
+    public byte[] GetPage(PageId pageId) throws IOException {
+        Frame frame = pinFrame(pageId, null, null);
+        if (frame.buffer != null) {
             return frame.buffer;
         }
+        byte[] copy = new byte[config.getPageSize()];
+        frame.data.get(0, copy);
+        return copy;
+    }
+
+    /**
+     * Comme GetPage, mais retourne une vue de la page (position 0, taille d'une page),
+     * quelle que soit la mémoire des frames. La vue n'est plus valide après FreePage.
+     */
+    public ByteBuffer GetPageBuffer(PageId pageId) throws IOException {
+        return GetPageBuffer(pageId, null);
+    }
+
+    /**
+     * Comme GetPageBuffer, pour une opération de masse : une page absente du buffer pool
+     * est chargée dans une frame de l'anneau (voir BufferAccessStrategy).
+     *
+     * @param strategy anneau de l'opération, ou null pour un accès normal
+     */
+    public ByteBuffer GetPageBuffer(PageId pageId, BufferAccessStrategy strategy) throws IOException {
+        return pinFrame(pageId, strategy, null).view();
+    }
+
+    /**
+     * Comme GetPageBuffer, en comptant l'accès dans les statistiques d'une relation.
+     *
+     * @param strategy anneau de l'opération, ou null pour un accès normal
+     * @param counters compteurs de la relation (getAccessCounters), ou null
+     */
+    public ByteBuffer GetPageBuffer(PageId pageId, BufferAccessStrategy strategy, AccessCounters counters) throws IOException {
+        return pinFrame(pageId, strategy, counters).view();
+    }
 
-        Frame freeFrame = null;
+    /**
+     * Crée un anneau de frames pour une opération de masse : bm_ring_pages frames au plus,
+     * et au plus le huitième du buffer pool.
+     *
+     * @return l'anneau, ou null si bm_ring_pages = 0 (accès normal)
+     */
+    public BufferAccessStrategy getAccessStrategy(BufferAccessType type) {
+        if (config.getRingPages() <= 0) {
+            return null;
+        }
+        return new BufferAccessStrategy(type, Math.max(1, Math.min(config.getRingPages(), frames.length / 8)));
+    }
 
-        for(Frame f : frames) {
-            if(f.pageId == null) {
-                freeFrame = f;
+    /**
+     * Épingle la page et verrouille son contenu dans le mode demandé.
+     *
+     * @return le handle de la page, à fermer après usage (try-with-resources)
+     * @throws IOException si la page ne peut pas être chargée
+     */
+    public PageHandle pin(PageId pageId, LatchMode mode) throws IOException {
+        Frame frame = pinFrame(pageId, null, null);
+        long stamp;
+        switch (mode) {
+            case SHARED:
+                stamp = frame.latch.readLock();
                 break;
+            case EXCLUSIVE:
+                stamp = frame.latch.writeLock();
+                break;
+            case OPTIMISTIC:
+            default:
+                stamp = optimisticStamp(frame);
+                break;
+        }
+        return new PageHandle(this, frame, pageId, mode, stamp);
+    }
+
+    /**
+     * Lit la page sans verrou (mode OPTIMISTIC) : reader est rappelé tant que la lecture
+     * n'est pas validée, et au-delà de OPTIMISTIC_ATTEMPTS essais la page est lue
+     * sous verrou partagé. Convient aux pages lues souvent et rarement modifiées
+     * (Header Pages), à condition que leurs écrivains prennent le verrou EXCLUSIVE.
+     *
+     * @param reader lecture de la page (vue en lecture seule, position 0), sans effet de bord
+     * @return la valeur retournée par la dernière lecture (validée)
+     */
+    public <T> T readOptimistic(PageId pageId, Function<ByteBuffer, T> reader) throws IOException {
+        try (PageHandle handle = pin(pageId, LatchMode.OPTIMISTIC)) {
+            for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+                try {
+                    T value = reader.apply(handle.getBuffer());
+                    if (handle.validate()) {
+                        return value;
+                    }
+                } catch (RuntimeException e) {
+                    // Contenu incohérent lu pendant une écriture : seule une lecture validée compte
+                    if (handle.validate()) {
+                        throw e;
+                    }
+                }
+                handle.restart();
             }
         }
+        try (PageHandle handle = pin(pageId, LatchMode.SHARED)) {
+            return reader.apply(handle.getBuffer());
+        }
+    }
 
-        if (freeFrame == null) {
-            
-            freeFrame = selectVictimFrame(); 
+    /**
+     * Numéro de version pour une lecture optimiste, une fois qu'aucun écrivain ne tient la frame.
+     * Au-delà de OPTIMISTIC_SPINS essais, le thread attend l'écrivain sur le verrou partagé
+     * (sans occuper le processeur), puis le rend aussitôt contre un numéro de version.
+     */
+    static long optimisticStamp(Frame frame) {
+        for (int spin = 0; spin < OPTIMISTIC_SPINS; spin++) {
+            long stamp = frame.latch.tryOptimisticRead();
+            if (stamp != 0) {
+                return stamp;
+            }
+            Thread.onSpinWait();
+        }
+        return frame.latch.tryConvertToOptimisticRead(frame.latch.readLock());
+    }
+
+    /**
+     * Rend un épinglage obtenu par pin() (PageHandle.close).
+     */
+    void unpin(Frame frame, boolean dirty) {
+        if (dirty) {
+            frame.dirty = true;
+        }
+        frame.lastAccess = ++accessClock;
+        release(frame);
+    }
+
+    /**
+     * Suit les défauts de page par fichier (pages lues, ou préchargées et demandées pour
+     * la première fois : les accès aux pages déjà en mémoire ne comptent pas) et, au cours
+     * d'un parcours séquentiel, demande la fenêtre suivante dès que le parcours entre dans
+     * la seconde moitié de la fenêtre courante : la lecture se fait pendant le traitement
+     * des pages déjà en mémoire. La fenêtre est limitée au huitième des frames (pas de
+     * lecture anticipée sous 2 pages) : des pages préchargées ne doivent pas chasser
+     * celles qui servent, ni être remplacées avant de servir. Avec un anneau, la fenêtre
+     * est aussi limitée à la moitié de l'anneau, où les pages sont préchargées.
+     * La fenêtre s'arrête à la dernière page existante du fichier (StorageBackend.getPageCount),
+     * et avant la première page présente dans un autre buffer pool (elle appartient à une
+     * relation de ce pool, comme sans doute les suivantes). Rien n'est fait dans la zone
+     * du dernier Prefetch explicite du fichier : l'appelant précharge déjà ses propres pages.
+     */
+    private void readAhead(PageId pageId, BufferAccessStrategy strategy) {
+        int fileIdx = pageId.getFileIdx();
+        int pageIdx = pageId.getPageIdx();
+        int window = Math.min(config.getReadAheadPages(), frames.length / 8);
+        if (strategy != null) {
+            window = Math.min(window, strategy.size() / 2);
+        }
+        if (window < 2 || fileIdx < 0 || fileIdx >= lastPageOf.length) {
+            return;
+        }
+        if (pageIdx >= explicitFromOf[fileIdx] && pageIdx < explicitToOf[fileIdx]) {
+            return;
+        }
+
+        int previous = lastPageOf[fileIdx];
+        if (pageIdx == previous) {
+            return; // plusieurs enregistrements d'une même page
+        }
+        lastPageOf[fileIdx] = pageIdx;
+        if (pageIdx != previous + 1) {
+            sequentialRunOf[fileIdx] = 1;
+            readAheadEndOf[fileIdx] = pageIdx + 1;
+            return;
+        }
+        if (++sequentialRunOf[fileIdx] < READ_AHEAD_TRIGGER) {
+            return;
+        }
+
+        int start = Math.max(readAheadEndOf[fileIdx], pageIdx + 1);
+        if (start - pageIdx > window / 2) {
+            return; // la fenêtre en cours couvre encore la suite du parcours
+        }
+        int end = Math.min(pageIdx + 1 + window, diskManager.getPageCount(fileIdx));
+        readAheadEndOf[fileIdx] = Math.max(start, end);
+
+        List<PageId> next = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            PageId nextPage = new PageId(fileIdx, i);
+            if (isCachedInOtherPool(PageTable.key(nextPage))) {
+                break;
+            }
+            next.add(nextPage);
+        }
+        if (next.isEmpty()) {
+            return;
+        }
+        try {
+            prefetch(next, strategy);
+        } catch (IOException e) {
+            // lecture anticipée seulement indicative : la page demandée est déjà épinglée
+        }
+    }
+
+    /**
+     * Indique si la page est présente dans un autre pool que celui-ci.
+     */
+    private boolean isCachedInOtherPool(long key) {
+        for (BufferManager pool : pools.values()) {
+            if (pool != this && pool.lookup(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Frame pinFrame(PageId pageId, BufferAccessStrategy strategy, AccessCounters counters) throws IOException {
+        long key = PageTable.key(pageId);
+
+        while (true) {
+            Frame frame = lookup(key);
+
+            if (frame != null) {
+                if (!frame.tryPin()) {
+                    pinWaits.increment();
+                    awaitIO(frame); // remplacement ou lecture en cours
+                    continue;
+                }
+                if (!pageId.equals(frame.pageId)) {
+                    release(frame); // frame réutilisée pour une autre page entre-temps
+                    continue;
+                }
+                hits.increment();
+                if (counters != null) {
+                    counters.hits.increment();
+                }
+                frame.lastAccess = ++accessClock;
+                // Une page de l'anneau reprise par un autre accès appartient désormais au buffer pool ;
+                // les accès de l'anneau à ses propres pages ne les rendent pas plus prioritaires
+                if (strategy == null || frame.strategy != strategy) {
+                    frame.strategy = null;
+                    Shard shard = shardOf(frame);
+                    synchronized (shard) {
+                        if (!frame.retired) {
+                            shard.replacement.accessed(frame);
+                        }
+                    }
+                }
+                if (frame.prefetched) {
+                    frame.prefetched = false;
+                    readAhead(pageId, strategy);
+                }
+                return frame;
+            }
+
+            Frame freeFrame = takeFrame(homeOf(pageId), strategy);
 
             if (freeFrame == null) {
                 throw new IOException("Buffer pool saturé : toutes les frames sont épinglées");
             }
-            
-            
-            if (freeFrame.dirty) {
-                diskManager.WritePage(freeFrame.pageId, freeFrame.buffer);
+
+            if (!publish(freeFrame, pageId)) {
+                continue; // chargée par un autre thread pendant le remplacement
+            }
+            misses.increment();
+            if (counters != null) {
+                counters.misses.increment();
+            }
+
+            try {
+                diskManager.ReadPages(pageId, 1, new ByteBuffer[] { freeFrame.ioView() });
+            } catch (IOException | RuntimeException e) {
+                unpublish(freeFrame); // la page n'est pas chargée : personne ne doit trouver la frame
+                throw e;
+            }
+            freeFrame.lastAccess = ++accessClock;
+            endIO(freeFrame);
+            // La politique apprend le chargement avant tout accès d'un autre thread
+            Shard shard = shardOf(freeFrame);
+            synchronized (shard) {
+                freeFrame.pinnedSince = System.nanoTime();
+                freeFrame.pinCount = 1;
+                if (freeFrame.retired) {
+                    // frame retirée pendant la lecture : SetBufferCount l'évincera une fois libérée
+                } else if (strategy == null) {
+                    shard.replacement.loaded(freeFrame);
+                } else {
+                    shard.replacement.prefetched(freeFrame);
+                }
             }
-            
-            String oldKey = freeFrame.pageId.getFileIdx() + ":" + freeFrame.pageId.getPageIdx();
-            pageTable.remove(oldKey);
-            
+            readAhead(pageId, strategy);
+
+            return freeFrame;
         }
+    }
 
-        diskManager.ReadPage(pageId, freeFrame.buffer);
-        freeFrame.pageId = pageId;
-        freeFrame.dirty = false;
-        freeFrame.pinCount = 1;
-        freeFrame.lastAccess = System.currentTimeMillis();
-        pageTable.put(key, freeFrame);
-        
-        return freeFrame.buffer;
-    } 
+    /**
+     * Charge à l'avance dans le buffer pool les pages données qui n'y sont pas encore,
+     * sans les épingler. Les pages contiguës d'un même fichier sont lues en un seul
+     * appel (StorageBackend.readPagesAsync). Les lectures sont asynchrones : la méthode
+     * rend la main tout de suite et GetPage attend la fin de la lecture si besoin.
+     * Au plus la moitié des frames est utilisée, et le préchargement s'arrête
+     * s'il n'y a plus de frame libre ou remplaçable. Une lecture échouée libère
+     * simplement sa frame : l'erreur sera levée par le GetPage suivant.
+     * Les pages préchargées entrent avec une priorité basse dans la politique de
+     * remplacement (ReplacementPolicy.prefetched) : tant qu'elles n'ont pas servi,
+     * elles ne comptent pas comme des pages réutilisées. Les pages qui n'existent pas
+     * sont ignorées, et la lecture anticipée automatique n'est pas faite entre la
+     * première et la dernière page demandée de chaque fichier.
+     *
+     * @param pageIds pages à précharger (par exemple les prochaines pages d'un parcours)
+     * @throws IOException si l'écriture d'une victime échoue
+     */
+    public void Prefetch(List<PageId> pageIds) throws IOException {
+        Prefetch(pageIds, null);
+    }
 
-     public void SetCurrentReplacementPolicy(BufferPolicy policy) {
+    /**
+     * Comme Prefetch, pour une opération de masse : les pages sont préchargées dans
+     * l'anneau, au plus la moitié de l'anneau (l'autre moitié sert aux pages en cours).
+     *
+     * @param strategy anneau de l'opération, ou null pour un accès normal
+     */
+    public void Prefetch(List<PageId> pageIds, BufferAccessStrategy strategy) throws IOException {
+        List<Integer> files = new ArrayList<>();
+        for (PageId pageId : pageIds) {
+            int fileIdx = pageId.getFileIdx();
+            if (fileIdx < 0 || fileIdx >= explicitFromOf.length) {
+                continue;
+            }
+            if (!files.contains(fileIdx)) {
+                files.add(fileIdx);
+                explicitFromOf[fileIdx] = pageId.getPageIdx();
+                explicitToOf[fileIdx] = pageId.getPageIdx() + 1;
+            } else {
+                explicitFromOf[fileIdx] = Math.min(explicitFromOf[fileIdx], pageId.getPageIdx());
+                explicitToOf[fileIdx] = Math.max(explicitToOf[fileIdx], pageId.getPageIdx() + 1);
+            }
+        }
+        prefetch(pageIds, strategy);
+    }
+
+    /**
+     * Préchargement commun à Prefetch et à la lecture anticipée (readAhead).
+     */
+    private void prefetch(List<PageId> pageIds, BufferAccessStrategy strategy) throws IOException {
+        List<PageId> missing = new ArrayList<>();
+        for (PageId pageId : pageIds) {
+            if (pageId.getPageIdx() < 0 || pageId.getPageIdx() >= diskManager.getPageCount(pageId.getFileIdx())) {
+                continue; // au-delà de la fin du fichier : aucune frame à réserver
+            }
+            if (lookup(PageTable.key(pageId)) == null && !missing.contains(pageId)) {
+                missing.add(pageId);
+            }
+        }
+        missing.sort(DISK_ORDER);
+
+        // Réserver une frame par page, publiée dans la table des pages le temps de la lecture
+        int limit = Math.min(missing.size(), Math.max(1, frames.length / 2));
+        if (strategy != null) {
+            limit = Math.min(limit, strategy.size() / 2);
+        }
+        List<PageId> pages = new ArrayList<>();
+        List<Frame> reserved = new ArrayList<>();
+        try {
+            for (int i = 0; i < limit; i++) {
+                Frame frame = takeFrame(homeOf(missing.get(i)), strategy);
+                if (frame == null) {
+                    break;
+                }
+                if (publish(frame, missing.get(i))) {
+                    pages.add(missing.get(i));
+                    reserved.add(frame);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Frame frame : reserved) {
+                unpublish(frame);
+            }
+            throw e;
+        }
+
+        int first = 0;
+        while (first < reserved.size()) {
+            int run = 1;
+            while (first + run < reserved.size() && isNext(pages.get(first + run - 1), pages.get(first + run))) {
+                run++;
+            }
+            ByteBuffer[] dests = new ByteBuffer[run];
+            for (int j = 0; j < run; j++) {
+                dests[j] = reserved.get(first + j).ioView();
+            }
+            List<Frame> runFrames = reserved.subList(first, first + run);
+            diskManager.readPagesAsync(pages.get(first), run, dests).whenComplete((result, error) -> {
+                for (Frame frame : runFrames) {
+                    if (error != null) {
+                        unpublish(frame);
+                        continue;
+                    }
+                    frame.lastAccess = ++accessClock;
+                    frame.prefetched = true;
+                    endIO(frame);
+                    Shard shard = shardOf(frame);
+                    synchronized (shard) {
+                        frame.pinCount = 0;
+                        if (!frame.retired) {
+                            shard.replacement.prefetched(frame);
+                        }
+                    }
+                }
+            });
+            first += run;
+        }
+    }
+
+    /**
+     * Retourne une frame réservée (Frame.CLAIMED) et vide : la frame suivante de l'anneau
+     * si elle peut être recyclée, une frame libre, ou une victime de la politique de
+     * remplacement ; son ancienne page a été écrite si modifiée puis retirée de la table
+     * des pages. Retourne null si toutes les frames sont épinglées.
+     *
+     * @param home partition de la page à charger (homeOf), essayée avant les autres
+     * @param strategy anneau de l'opération (la frame y prend la place courante), ou null
+     */
+    private Frame takeFrame(int home, BufferAccessStrategy strategy) throws IOException {
+        Frame victim = strategy != null ? claimRingFrame(strategy) : null;
+        if (victim == null) {
+            victim = selectVictimFrame(home);
+        }
+        if (victim == null) {
+            return null;
+        }
+        if (strategy != null) {
+            strategy.put(victim.index);
+        }
+        victim.loading = new CompletableFuture<>();
+
+        if (victim.pageId == null) {
+            victim.strategy = strategy;
+            return victim;
+        }
+        // Une copie de l'ancienne page peut être en cours d'écriture : elle doit arriver
+        // sur disque avant toute nouvelle écriture ou relecture de cette page
+        awaitWrite(victim);
+        // Les threads qui cherchent l'ancienne page la trouvent encore dans la table,
+        // attendent la fin du remplacement, puis la relisent depuis le disque
+        if (victim.dirty) {
+            try {
+                diskManager.WritePages(victim.pageId, 1, new ByteBuffer[] { victim.ioView() });
+            } catch (IOException | RuntimeException e) {
+                endIO(victim);
+                Shard shard = shardOf(victim);
+                synchronized (shard) {
+                    victim.pinCount = 0; // la page reste en mémoire
+                    if (!victim.retired) {
+                        shard.replacement.loaded(victim);
+                    }
+                }
+                throw e;
+            }
+            dirtyWritebacks.increment();
+        }
+        PageTable table = pageTableOf(PageTable.key(victim.pageId));
+        synchronized (table) {
+            table.remove(PageTable.key(victim.pageId));
+        }
+        evictions.increment();
+        victim.pageId = null;
+        victim.dirty = false;
+        victim.strategy = strategy;
+        return victim;
+    }
+
+    /**
+     * Réserve (Frame.CLAIMED) une frame libre ou, à défaut, la victime de la politique de
+     * remplacement, en commençant par la partition home. La victime est retirée de sa
+     * politique mais son ancienne page reste dans la table des pages : seul takeFrame
+     * l'appelle, et l'écrit puis la retire de la table (ou la rend à la politique).
+     *
+     * @return la frame réservée, ou null si toutes les frames sont épinglées
+     */
+    private Frame selectVictimFrame(int home) {
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(home + i) % shards.length];
+            synchronized (shard) {
+                Frame victim = claimFreeFrame(shard);
+                if (victim == null) {
+                    victim = shard.replacement.victim();
+                }
+                if (victim != null) {
+                    return victim;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Réserve la frame suivante de l'anneau si elle contient encore une page chargée par
+     * l'anneau, non épinglée (et non modifiée pour BULK_READ : la page est laissée à
+     * l'écriture en tâche de fond). La frame est retirée de la politique de remplacement
+     * de sa partition, quelle que soit la partition de la page à charger.
+     *
+     * @return la frame réservée, ou null
+     */
+    private Frame claimRingFrame(BufferAccessStrategy strategy) {
+        int frameIdx = strategy.advance();
+        Frame[] frames = this.frames;
+        if (frameIdx < 0 || frameIdx >= frames.length) {
+            return null;
+        }
+        Frame frame = frames[frameIdx];
+        Shard shard = shardOf(frame);
+        synchronized (shard) {
+            if (frame.strategy != strategy || frame.pageId == null || frame.retired) {
+                return null;
+            }
+            if (frame.dirty && strategy.getType() == BufferAccessType.BULK_READ) {
+                return null;
+            }
+            if (!frame.tryClaim()) {
+                return null;
+            }
+            shard.replacement.removed(frame);
+            return frame;
+        }
+    }
+
+    /**
+     * Réserve une frame de la pile des frames libres. Une frame libre peut être épinglée
+     * un instant par un thread qui cherchait l'ancienne page (il la relâche aussitôt) :
+     * elle est alors sautée. À appeler sous le verrou de la partition.
+     *
+     * @return la frame réservée, ou null
+     */
+    private Frame claimFreeFrame(Shard shard) {
+        Frame[] frames = this.frames;
+        for (int i = shard.freeCount - 1; i >= 0; i--) {
+            Frame frame = frames[shard.freeFrames[i]];
+            if (frame.tryClaim()) {
+                shard.freeFrames[i] = shard.freeFrames[--shard.freeCount];
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associe la page à une frame réservée dans la table des pages.
+     * Si un autre thread l'y a déjà placée, la frame est rendue à la pile des frames libres.
+     *
+     * @return false si la page était déjà dans la table
+     */
+    private boolean publish(Frame frame, PageId pageId) {
+        long key = PageTable.key(pageId);
+        PageTable table = pageTableOf(key);
+        synchronized (table) {
+            if (!table.containsKey(key)) {
+                frame.pageId = pageId;
+                frame.dirty = false;
+                frame.prefetched = false;
+                table.put(key, frame.index);
+                return true;
+            }
+        }
+        freeFrame(frame);
+        return false;
+    }
+
+    /**
+     * Retire de la table des pages une page dont la lecture a échoué, et libère sa frame.
+     */
+    private void unpublish(Frame frame) {
+        long key = PageTable.key(frame.pageId);
+        PageTable table = pageTableOf(key);
+        synchronized (table) {
+            table.remove(key);
+        }
+        freeFrame(frame);
+    }
+
+    /**
+     * Rend une frame réservée, sans page, à la pile des frames libres.
+     */
+    private void freeFrame(Frame frame) {
+        frame.pageId = null;
+        frame.dirty = false;
+        endIO(frame);
+        Shard shard = shardOf(frame);
+        synchronized (shard) {
+            frame.pinCount = 0;
+            if (!frame.retired) {
+                shard.freeFrames[shard.freeCount++] = frame.index;
+            }
+        }
+    }
+
+    /**
+     * Termine le remplacement ou la lecture de la frame et réveille les threads qui l'attendent.
+     * À appeler avant de rendre la réservation (pinCount) : sinon un autre thread pourrait
+     * réserver la frame et affecter son propre Frame.loading, qui serait effacé ici.
+     */
+    private static void endIO(Frame frame) {
+        CompletableFuture<Void> loading = frame.loading;
+        frame.loading = null;
+        if (loading != null) {
+            loading.complete(null);
+        }
+    }
+
+    /**
+     * Attend que la frame ne soit plus réservée (remplacement ou lecture terminé).
+     */
+    private static void awaitIO(Frame frame) {
+        CompletableFuture<Void> loading = frame.loading;
+        if (loading != null) {
+            loading.join();
+        } else {
+            Thread.onSpinWait(); // réservée, Frame.loading pas encore affecté
+        }
+    }
+
+    /**
+     * Attend la fin de l'écriture en tâche de fond de la page de la frame.
+     */
+    private static void awaitWrite(Frame frame) {
+        CompletableFuture<Void> writing = frame.writing;
+        if (writing != null) {
+            writing.join();
+        }
+    }
+
+    /**
+     * Retire un épinglage ; la politique de remplacement est prévenue quand une page
+     * en mémoire n'est plus épinglée (pas si la frame est libre ou déjà réservée).
+     */
+    private void release(Frame frame) {
+        if (frame.unpin() == 0) {
+            pinnedNanos.add(System.nanoTime() - Math.max(frame.pinnedSince, statsSince));
+            Shard shard = shardOf(frame);
+            synchronized (shard) {
+                if (frame.pinCount == 0 && frame.pageId != null && !frame.retired) {
+                    shard.replacement.unpinned(frame);
+                }
+            }
+        }
+    }
+
+    private Frame lookup(long key) {
+        PageTable table = pageTableOf(key);
+        int frameIdx;
+        synchronized (table) {
+            frameIdx = table.get(key);
+        }
+        Frame[] frames = this.frames;
+        // Indice au-delà du tableau : frame retirée par SetBufferCount, sa page n'est plus en mémoire
+        return frameIdx == PageTable.NOT_FOUND || frameIdx >= frames.length ? null : frames[frameIdx];
+    }
+
+    /**
+     * @return la table des pages de la partition d'origine de la page (homeOf), où elle
+     *         est inscrite même si sa frame a été empruntée à une autre partition
+     */
+    private PageTable pageTableOf(long key) {
+        return shards[homeOf(key)].pageTable;
+    }
+
+    /**
+     * Toutes les frames de la partition libres, sa première frame en tête de pile.
+     * À appeler sous le verrou de la partition.
+     */
+    private void resetFreeFrames(Shard shard) {
+        shard.freeCount = 0;
+        for (int i = framesOf(shard, frames.length) - 1; i >= 0; i--) {
+            shard.freeFrames[shard.freeCount++] = shard.id + i * shards.length;
+        }
+    }
+
+    /**
+     * @return la partition de la frame
+     */
+    private Shard shardOf(Frame frame) {
+        return shards[frame.index % shards.length];
+    }
+
+    /**
+     * @return le nombre de frames de la partition parmi les count premières
+     */
+    private int framesOf(Shard shard, int count) {
+        return (count - shard.id + shards.length - 1) / shards.length;
+    }
+
+    /**
+     * Partition où charger une page : la même pour SHARD_EXTENT_PAGES pages consécutives
+     * d'un fichier, pour qu'un parcours séquentiel ou un préchargement y reste.
+     */
+    private int homeOf(PageId pageId) {
+        return homeOf(PageTable.key(pageId));
+    }
+
+    /**
+     * Comme homeOf(PageId), à partir de la clé de la page (PageTable.key).
+     */
+    private int homeOf(long key) {
+        if (shards.length == 1) {
+            return 0;
+        }
+        long extent = PageTable.key((int) (key >>> 32), (int) key / SHARD_EXTENT_PAGES);
+        int h = (int) (extent ^ (extent >>> 32)) * 0x9E3779B9;
+        return (h >>> 1) % shards.length;
+    }
+
+    private static boolean isNext(PageId previous, PageId next) {
+        return previous.getFileIdx() == next.getFileIdx() && previous.getPageIdx() + 1 == next.getPageIdx();
+    }
+
+    /**
+     * Compteurs d'accès d'une relation, créés au premier appel (voir GetPageBuffer).
+     */
+    public AccessCounters getAccessCounters(String relationName) {
+        return relationCounters.computeIfAbsent(relationName, name -> new AccessCounters());
+    }
+
+    /**
+     * Oublie les compteurs d'une relation supprimée.
+     */
+    public void removeAccessCounters(String relationName) {
+        relationCounters.remove(relationName);
+    }
+
+    /**
+     * @return les statistiques depuis la création du BufferManager ou le dernier resetStats
+     */
+    public BufferPoolStats getStats() {
+        long now = System.nanoTime();
+        long since = statsSince;
+        // Épinglages en cours : comptés jusqu'à maintenant
+        long pinned = pinnedNanos.sum();
+        for (Frame frame : frames) {
+            if (frame.pinCount > 0) {
+                pinned += Math.max(0, now - Math.max(frame.pinnedSince, since));
+            }
+        }
+        double averagePinned = now > since ? (double) pinned / (now - since) : 0.0;
+
+        Map<String, Double> relationHitRatios = new HashMap<>();
+        relationCounters.forEach((name, counters) ->
+                relationHitRatios.put(name, BufferPoolStats.ratio(counters.getHits(), counters.getMisses())));
+
+        return new BufferPoolStats(frames.length, hits.sum(), misses.sum(), evictions.sum(),
+                dirtyWritebacks.sum(), backgroundWrites.sum(), pinWaits.sum(), averagePinned,
+                relationHitRatios);
+    }
+
+    /**
+     * Remet les statistiques à zéro (par exemple avant de comparer deux politiques de remplacement).
+     */
+    public void resetStats() {
+        statsSince = System.nanoTime();
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        dirtyWritebacks.reset();
+        backgroundWrites.reset();
+        pinWaits.reset();
+        pinnedNanos.reset();
+        relationCounters.values().forEach(AccessCounters::reset);
+    }
+
+    /**
+     * Publie les statistiques par JMX sous le nom bdda:type=BufferPool (BufferPoolMXBean ;
+     * bdda:type=BufferPool,name=KEEP pour le pool KEEP, de même pour RECYCLE), à la place d'un buffer pool déjà publié sous ce nom. Retiré par finish().
+     *
+     * @throws IOException si l'enregistrement échoue
+     */
+    public void registerMBean() throws IOException {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(this.name == BufferPoolName.DEFAULT
+                    ? "bdda:type=BufferPool" : "bdda:type=BufferPool,name=" + this.name);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new BufferPoolMonitor(this), name);
+            mbeanName = name;
+        } catch (JMException e) {
+            throw new IOException("Enregistrement JMX du buffer pool impossible", e);
+        }
+    }
+
+    /**
+     * Change la politique de remplacement. Les pages en mémoire sont transmises
+     * à la nouvelle politique comme si elles venaient d'être chargées.
+     */
+    public void SetCurrentReplacementPolicy(BufferPolicy policy) {
         if (policy == null) {
             throw new IllegalArgumentException("Politique de remplacement invalide.");
         }
         this.policy = policy;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.replacement = createReplacement(shard);
+            }
+        }
+    }
+
+    /**
+     * Crée la politique courante sur les frames non retirées de la partition (les frames
+     * retirées par SetBufferCount sont en fin de tableau), rangées selon Frame.slot, et lui
+     * transmet les pages en mémoire comme si elles venaient d'être chargées.
+     * À appeler sous le verrou de la partition.
+     */
+    private ReplacementPolicy createReplacement(Shard shard) {
+        Frame[] all = frames;
+        List<Frame> owned = new ArrayList<>();
+        for (int i = shard.id; i < all.length && !all[i].retired; i += shards.length) {
+            owned.add(all[i]);
+        }
+        Frame[] activeFrames = owned.toArray(new Frame[0]);
+        ReplacementPolicy created = ReplacementPolicy.create(policy, activeFrames);
+        for (Frame frame : activeFrames) {
+            if (frame.pageId != null && frame.pinCount >= 0) {
+                created.loaded(frame);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Change le nombre de frames du buffer pool pendant le fonctionnement (SET BUFFERCOUNT).
+     * Les nouvelles frames sont libres. En réduction, les frames au-delà de la nouvelle
+     * taille sont retirées : leurs pages sont écrites si modifiées puis évincées, et une
+     * page épinglée est attendue jusqu'à sa libération. Si une page reste épinglée plus de
+     * RESIZE_TIMEOUT_MS ms (par exemple par l'appelant lui-même), le buffer pool garde sa
+     * taille : les pages déjà évincées le restent, aucune n'est perdue.
+     * La politique de remplacement repart des pages en mémoire, comme pour
+     * SetCurrentReplacementPolicy. Hors tas, la mémoire d'un bloc n'est rendue qu'avec
+     * sa dernière frame.
+     *
+     * @throws IllegalArgumentException si count < 1
+     * @throws IOException si l'écriture d'une page échoue ou si une page reste épinglée
+     */
+    public void SetBufferCount(int count) throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("Nombre de frames invalide : " + count);
+        }
+        // Pas de passage de l'écriture en tâche de fond, de point de contrôle ni de vidage pendant le changement
+        synchronized (writerLock) {
+            if (count > frames.length) {
+                growFrames(count);
+            } else if (count < frames.length) {
+                shrinkFrames(count);
+            }
+        }
     }
 
-    public Frame selectVictimFrame() {
-        Frame victim = null;
+    private void growFrames(int count) {
+        int oldCount = frames.length;
+        Frame[] grown = Arrays.copyOf(frames, count);
+        allocateFrames(grown, oldCount, config.getPageSize());
 
-        if(this.policy == BufferPolicy.LRU) {
-            long oldest = Long.MAX_VALUE;
+        // Les nouvelles frames ne sont atteignables qu'une fois dans la pile de leur partition
+        frames = grown;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                int owned = framesOf(shard, count);
+                if (shard.freeFrames.length < owned) {
+                    shard.freeFrames = Arrays.copyOf(shard.freeFrames, owned);
+                }
+                for (int i = owned - 1; i >= framesOf(shard, oldCount); i--) {
+                    shard.freeFrames[shard.freeCount++] = shard.id + i * shards.length;
+                }
+                shard.replacement = createReplacement(shard);
+            }
+        }
+    }
 
-            for(Frame f : frames) {
-                if(f.pinCount == 0 && f.lastAccess < oldest) {
-                    oldest = f.lastAccess;
-                    victim = f;
+    private void shrinkFrames(int count) throws IOException {
+        Frame[] retiring = Arrays.copyOfRange(frames, count, frames.length);
+
+        // Plus aucune page ne peut être chargée dans les frames retirées
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Frame frame : retiring) {
+                    if (shardOf(frame) == shard) {
+                        frame.retired = true;
+                    }
+                }
+                int kept = 0;
+                for (int i = 0; i < shard.freeCount; i++) {
+                    if (shard.freeFrames[i] < count) {
+                        shard.freeFrames[kept++] = shard.freeFrames[i];
+                    }
                 }
+                shard.freeCount = kept;
+                shard.replacement = createReplacement(shard);
             }
-        } else if(this.policy == BufferPolicy.MRU) {
-            long newest = Long.MIN_VALUE;
+        }
 
-            for(Frame f : frames) {
-                if(f.pinCount == 0 && f.lastAccess > newest) {
-                    newest = f.lastAccess;
-                    victim = f;
+        long deadline = System.currentTimeMillis() + RESIZE_TIMEOUT_MS;
+        List<Frame> emptied = new ArrayList<>();
+        try {
+            for (Frame frame : retiring) {
+                retireFrame(frame, deadline);
+                emptied.add(frame);
+            }
+        } catch (IOException e) {
+            // Le buffer pool garde sa taille : les frames vidées redeviennent libres
+            for (Shard shard : shards) {
+                synchronized (shard) {
+                    for (Frame frame : retiring) {
+                        if (shardOf(frame) != shard) {
+                            continue;
+                        }
+                        frame.retired = false;
+                        if (emptied.contains(frame)) {
+                            frame.pinCount = 0;
+                        }
+                        if (frame.pageId == null && frame.pinCount == 0) {
+                            shard.freeFrames[shard.freeCount++] = frame.index;
+                        }
+                    }
+                    shard.replacement = createReplacement(shard);
                 }
             }
+            throw e;
         }
-        return victim;
+
+        // Les piles des frames libres ne contiennent plus que des frames restantes
+        frames = Arrays.copyOf(frames, count);
+    }
+
+    /**
+     * Vide une frame retirée dès qu'elle n'est plus épinglée (page écrite si modifiée,
+     * puis retirée de la table des pages). La frame reste réservée : plus personne
+     * ne peut l'épingler.
+     */
+    private void retireFrame(Frame frame, long deadline) throws IOException {
+        while (!frame.tryClaim()) {
+            if (frame.pinCount == Frame.CLAIMED) {
+                awaitIO(frame); // lecture ou remplacement commencé avant la réduction
+                continue;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Frame " + frame.index + " toujours épinglée : le buffer pool garde sa taille");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Réduction du buffer pool interrompue", e);
+            }
+        }
+        frame.loading = new CompletableFuture<>();
+
+        if (frame.pageId != null) {
+            awaitWrite(frame);
+            if (frame.dirty) {
+                try {
+                    diskManager.WritePages(frame.pageId, 1, new ByteBuffer[] { frame.ioView() });
+                } catch (IOException e) {
+                    endIO(frame);
+                    frame.pinCount = 0; // la page reste en mémoire
+                    throw e;
+                }
+                dirtyWritebacks.increment();
+            }
+            PageTable table = pageTableOf(PageTable.key(frame.pageId));
+            synchronized (table) {
+                table.remove(PageTable.key(frame.pageId));
+            }
+            evictions.increment();
+            frame.pageId = null;
+            frame.dirty = false;
+        }
+        frame.strategy = null;
+        frame.prefetched = false;
+        endIO(frame);
     }
 
     public void FreePage(PageId pageId, boolean valDirty) {
-        String key = pageId.getFileIdx() + ":" + pageId.getPageIdx();
-        Frame frame = pageTable.get(key);
+        Frame frame = lookup(PageTable.key(pageId));
+        if (frame == null || !pageId.equals(frame.pageId) || frame.pinCount <= 0) {
+            return;
+        }
+
+        if (valDirty) {
+            frame.dirty = true;
+        }
+        frame.lastAccess = ++accessClock;
+        release(frame);
+    }
+
+    /**
+     * Oublie une page désallouée dans tous les pools, sans l'écrire : une copie restée
+     * dans un pool (préchargée ou modifiée) ne doit pas revenir sur la page une fois
+     * réutilisée par une relation d'un autre pool. Une page encore épinglée est laissée.
+     */
+    public void discardPage(PageId pageId) {
+        for (BufferManager pool : pools.values()) {
+            pool.discard(pageId);
+        }
+    }
 
-        if (frame != null && frame.pinCount > 0) {   
-            frame.pinCount--;
- 
-            if (valDirty) {
-                frame.dirty = true;
+    private void discard(PageId pageId) {
+        long key = PageTable.key(pageId);
+        while (true) {
+            Frame frame = lookup(key);
+            if (frame == null) {
+                return;
             }
-            frame.lastAccess = System.currentTimeMillis();
+            boolean claimed = false;
+            Shard shard = shardOf(frame);
+            synchronized (shard) {
+                if (pageId.equals(frame.pageId) && !frame.retired && frame.tryClaim()) {
+                    shard.replacement.removed(frame);
+                    claimed = true;
+                }
+            }
+            if (claimed) {
+                awaitWrite(frame);
+                unpublish(frame);
+                return;
+            }
+            if (frame.pinCount != Frame.CLAIMED) {
+                return; // épinglée, ou retirée par SetBufferCount (qui la vide)
+            }
+            awaitIO(frame); // lecture ou remplacement en cours : recommencer la recherche
         }
     }
 
 
+    /**
+     * Point de contrôle : écrit toutes les pages modifiées, dans l'ordre du disque,
+     * et les garde en mémoire (propres), puis rend le stockage durable (StorageBackend.force).
+     * Le buffer pool reste chaud, contrairement à FlushBuffers. Les pages épinglées sont
+     * laissées modifiées pour le point suivant : GetPageBuffer les modifie sans verrou de
+     * contenu, et une copie faite pendant une modification serait incohérente.
+     *
+     * @return le nombre de pages écrites
+     * @throws IOException si une écriture échoue (ses pages restent modifiées)
+     */
+    public int checkpoint() throws IOException {
+        return checkpoint(true);
+    }
+
+    /**
+     * Comme checkpoint(), sans StorageBackend.force si force est faux : pour écrire
+     * plusieurs buffer pools d'un même stockage, puis le rendre durable une seule fois.
+     */
+    public int checkpoint(boolean force) throws IOException {
+        synchronized (writerLock) {
+            // Attendre les remplacements et préchargements en cours (une victime modifiée est
+            // réécrite par son remplacement)
+            for (Frame frame : frames) {
+                while (frame.pinCount == Frame.CLAIMED) {
+                    awaitIO(frame);
+                }
+            }
+
+            List<Frame> dirtyFrames = new ArrayList<>();
+            for (Frame frame : frames) {
+                if (frame.dirty && frame.pageId != null) {
+                    dirtyFrames.add(frame);
+                }
+            }
+            dirtyFrames.sort((a, b) -> DISK_ORDER.compare(a.pageId, b.pageId));
+
+            int written = 0;
+            for (int start = 0; start < dirtyFrames.size(); start += WRITER_BATCH_PAGES) {
+                int end = Math.min(dirtyFrames.size(), start + WRITER_BATCH_PAGES);
+                written += writeBatch(dirtyFrames.subList(start, end));
+            }
+            if (force) {
+                diskManager.force();
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Écrit toutes les pages modifiées puis vide le buffer pool.
+     * À appeler à l'arrêt, quand plus aucune session n'utilise le buffer pool ;
+     * pour une sauvegarde en cours de fonctionnement, voir checkpoint.
+     */
     public void FlushBuffers() throws IOException {
-        
+        // Pas de passage de l'écriture en tâche de fond pendant le vidage
+        synchronized (writerLock) {
+            flushAll();
+        }
+    }
+
+    private void flushAll() throws IOException {
+
+        // Attendre les remplacements et préchargements en cours
         for (Frame frame : frames) {
-            if (frame.pageId != null && frame.dirty) {
-                diskManager.WritePage(frame.pageId, frame.buffer);
+            while (frame.pinCount == Frame.CLAIMED) {
+                awaitIO(frame);
             }
         }
-        
+
+        // Pages modifiées triées dans l'ordre du disque : les suites contiguës
+        // sont écrites en un seul appel, et toutes les écritures sont lancées
+        // en parallèle (StorageBackend.writePagesAsync) avant d'attendre leur fin
+        List<Frame> dirtyFrames = new ArrayList<>();
         for (Frame frame : frames) {
-            frame.pageId = null;
-            frame.dirty = false;
-            frame.pinCount = 0;
-            frame.lastAccess = System.currentTimeMillis();
-            
-            for (int i = 0; i < frame.buffer.length; i++) {
-                frame.buffer[i] = 0;
+            if (frame.pageId != null && frame.dirty) {
+                dirtyFrames.add(frame);
             }
         }
-        
-        pageTable.clear();
+        dirtyFrames.sort((a, b) -> DISK_ORDER.compare(a.pageId, b.pageId));
+
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        int first = 0;
+        while (first < dirtyFrames.size()) {
+            int run = 1;
+            while (first + run < dirtyFrames.size()
+                    && isNext(dirtyFrames.get(first + run - 1).pageId, dirtyFrames.get(first + run).pageId)) {
+                run++;
+            }
+            ByteBuffer[] srcs = new ByteBuffer[run];
+            for (int j = 0; j < run; j++) {
+                srcs[j] = dirtyFrames.get(first + j).ioView();
+            }
+            writes.add(diskManager.writePagesAsync(dirtyFrames.get(first).pageId, run, srcs));
+            first += run;
+        }
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Écriture asynchrone échouée", e.getCause());
+        }
+
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Frame frame : frames) {
+                    if (shardOf(frame) != shard) {
+                        continue;
+                    }
+                    if (frame.pageId != null) {
+                        shard.replacement.removed(frame);
+                    }
+                    frame.pageId = null;
+                    frame.dirty = false;
+                    frame.pinCount = 0;
+                    frame.lastAccess = 0;
+                    frame.clear();
+                }
+                resetFreeFrames(shard);
+            }
+        }
+        for (Shard shard : shards) {
+            synchronized (shard.pageTable) {
+                shard.pageTable.clear();
+            }
+        }
+    }
+
+    /**
+     * Écrit des pages modifiées et non épinglées, pour que les remplacements trouvent
+     * des victimes propres. Ne fait rien tant que les pages modifiées ne dépassent pas
+     * bm_writer_dirty_ratio % des frames ; sinon les ramène à la moitié de ce seuil,
+     * en commençant par les pages accédées le moins récemment (écrites dans l'ordre du disque).
+     * Appelée périodiquement par le thread bdda-bgwriter, ou directement
+     * (avec un seuil de 0, toutes les pages modifiées non épinglées sont écrites).
+     *
+     * @return le nombre de pages écrites
+     * @throws IOException si une écriture échoue (ses pages restent modifiées)
+     */
+    public int writeDirtyPages() throws IOException {
+        synchronized (writerLock) {
+            List<Frame> candidates = new ArrayList<>();
+            long[] accessOf = new long[frames.length];
+            int dirtyCount = 0;
+            for (Frame frame : frames) {
+                if (frame.dirty && frame.pageId != null) {
+                    dirtyCount++;
+                    if (frame.pinCount == 0) {
+                        accessOf[frame.index] = frame.lastAccess;
+                        candidates.add(frame);
+                    }
+                }
+            }
+
+            long threshold = (long) frames.length * config.getWriterDirtyRatio();
+            if ((long) dirtyCount * 100 <= threshold) {
+                return 0;
+            }
+            int toWrite = (int) Math.min(candidates.size(), dirtyCount - threshold / 200);
+            candidates.sort(Comparator.comparingLong(frame -> accessOf[frame.index]));
+
+            int written = 0;
+            for (int start = 0; start < toWrite; start += WRITER_BATCH_PAGES) {
+                written += writeBatch(candidates.subList(start, Math.min(toWrite, start + WRITER_BATCH_PAGES)));
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Copie puis écrit un lot de pages. Chaque frame est réservée le temps de sa copie,
+     * sous le verrou de sa partition : personne ne peut modifier la page pendant la copie, et
+     * la politique de remplacement ne voit jamais cette réservation. La page est propre
+     * dès sa copie ; un remplacement qui la choisit attend la fin de l'écriture (Frame.writing).
+     * Une page épinglée est ignorée et reste modifiée.
+     * À appeler sous writerLock.
+     */
+    private int writeBatch(List<Frame> batch) throws IOException {
+        int pageSize = config.getPageSize();
+        if (writerCopies == null) {
+            int capacity = WRITER_BATCH_PAGES * pageSize;
+            writerCopies = config.getFrameMemory() == FrameMemory.DIRECT
+                    ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        List<Frame> copied = new ArrayList<>();
+        List<PageId> pageIds = new ArrayList<>();
+        List<ByteBuffer> copies = new ArrayList<>();
+        for (Frame frame : batch) {
+            synchronized (shardOf(frame)) {
+                if (!frame.dirty || frame.pageId == null || !frame.tryClaim()) {
+                    continue;
+                }
+                ByteBuffer copy = writerCopies.slice(copied.size() * pageSize, pageSize);
+                copy.put(0, frame.data, 0, pageSize);
+                pageIds.add(frame.pageId);
+                frame.dirty = false;
+                frame.writing = new CompletableFuture<>();
+                frame.pinCount = 0;
+                copied.add(frame);
+                copies.add(copy);
+            }
+        }
+
+        // Suites de pages contiguës sur disque, écrites chacune en un seul appel
+        Integer[] order = new Integer[copied.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> DISK_ORDER.compare(pageIds.get(a), pageIds.get(b)));
+
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        int first = 0;
+        while (first < order.length) {
+            int run = 1;
+            while (first + run < order.length
+                    && isNext(pageIds.get(order[first + run - 1]), pageIds.get(order[first + run]))) {
+                run++;
+            }
+            ByteBuffer[] srcs = new ByteBuffer[run];
+            List<Frame> runFrames = new ArrayList<>();
+            for (int j = 0; j < run; j++) {
+                srcs[j] = copies.get(order[first + j]);
+                runFrames.add(copied.get(order[first + j]));
+            }
+            writes.add(diskManager.writePagesAsync(pageIds.get(order[first]), run, srcs)
+                    .whenComplete((ignored, error) -> {
+                        if (error == null) {
+                            backgroundWrites.add(runFrames.size());
+                        }
+                        for (Frame frame : runFrames) {
+                            if (error != null) {
+                                frame.dirty = true; // réécrite au prochain passage ou au remplacement
+                            }
+                            CompletableFuture<Void> writing = frame.writing;
+                            frame.writing = null;
+                            writing.complete(null);
+                        }
+                    }));
+            first += run;
+        }
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Écriture en tâche de fond échouée", e.getCause());
+        }
+        return copied.size();
     }
 
+    /**
+     * Démarre l'écriture en tâche de fond (toutes les config.getWriterInterval() ms).
+     */
+    private void startWriter() {
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name == BufferPoolName.DEFAULT
+                    ? "bdda-bgwriter" : "bdda-bgwriter-" + name.name().toLowerCase());
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, config.getWriterInterval());
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                writeDirtyPages();
+            } catch (IOException e) {
+                // les pages non écrites restent modifiées : le passage suivant les reprendra
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arrête l'écriture en tâche de fond et retire le MBean (registerMBean), à l'arrêt du SGBD (avant FlushBuffers).
+     */
+    public void finish() {
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException e) {
+                // déjà retiré (remplacé par un autre buffer pool)
+            }
+            mbeanName = null;
+        }
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Partition des frames : politique de remplacement et pile des frames libres,
+     * protégées par le verrou de la partition (synchronized sur l'objet Shard).
+     */
+    private static final class Shard {
+        final int id;
+        // Table des pages dont la partition est l'origine (homeOf), protégée par son propre verrou
+        final PageTable pageTable;
+        ReplacementPolicy replacement;
+        // Pile des indices des frames sans page : une frame libre s'obtient en O(1)
+        int[] freeFrames;
+        int freeCount;
 
+        Shard(int id, int capacity) {
+            this.id = id;
+            this.pageTable = new PageTable(capacity);
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package bdda.core;
+
+import java.util.Map;
+
+/**
+ * Statistiques du buffer pool exposées par JMX (bdda:type=BufferPool, voir
+ * BufferManager.registerMBean) : mêmes valeurs que BufferPoolStats.
+ */
+public interface BufferPoolMXBean {
+
+    int getBufferCount();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getEvictions();
+
+    long getDirtyWritebacks();
+
+    long getBackgroundWrites();
+
+    long getPinWaits();
+
+    double getAveragePinnedFrames();
+
+    Map<String, Double> getRelationHitRatios();
+
+    /**
+     * Remet les compteurs à zéro (par exemple pour comparer deux politiques de remplacement).
+     */
+    void resetStats();
+}
@@ -0,0 +1,70 @@
+package bdda.core;
+
+import java.util.Map;
+
+/**
+ * MXBean du buffer pool : chaque attribut est lu dans un nouveau BufferPoolStats.
+ */
+final class BufferPoolMonitor implements BufferPoolMXBean {
+
+    private final BufferManager bufferManager;
+
+    BufferPoolMonitor(BufferManager bufferManager) {
+        this.bufferManager = bufferManager;
+    }
+
+    @Override
+    public int getBufferCount() {
+        return bufferManager.getStats().getBufferCount();
+    }
+
+    @Override
+    public long getHits() {
+        return bufferManager.getStats().getHits();
+    }
+
+    @Override
+    public long getMisses() {
+        return bufferManager.getStats().getMisses();
+    }
+
+    @Override
+    public double getHitRatio() {
+        return bufferManager.getStats().getHitRatio();
+    }
+
+    @Override
+    public long getEvictions() {
+        return bufferManager.getStats().getEvictions();
+    }
+
+    @Override
+    public long getDirtyWritebacks() {
+        return bufferManager.getStats().getDirtyWritebacks();
+    }
+
+    @Override
+    public long getBackgroundWrites() {
+        return bufferManager.getStats().getBackgroundWrites();
+    }
+
+    @Override
+    public long getPinWaits() {
+        return bufferManager.getStats().getPinWaits();
+    }
+
+    @Override
+    public double getAveragePinnedFrames() {
+        return bufferManager.getStats().getAveragePinnedFrames();
+    }
+
+    @Override
+    public Map<String, Double> getRelationHitRatios() {
+        return bufferManager.getStats().getRelationHitRatios();
+    }
+
+    @Override
+    public void resetStats() {
+        bufferManager.resetStats();
+    }
+}
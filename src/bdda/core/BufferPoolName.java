@@ -0,0 +1,20 @@
+package bdda.core;
+
+/**
+ * Buffer pool d'une relation (voir BufferManager.getPool) :
+ * DEFAULT -> buffer pool principal (bm_buffercount, bm_policy)
+ * KEEP    -> petites relations très utilisées et Header Pages de toutes les relations :
+ *            leurs pages ne sont jamais chassées par les parcours des autres relations
+ *            (bm_keep_buffercount, bm_keep_policy)
+ * RECYCLE -> grandes relations parcourues : leurs pages se remplacent entre elles
+ *            (bm_recycle_buffercount, bm_recycle_policy)
+ * Un pool de taille 0 (par défaut pour KEEP et RECYCLE) n'existe pas : ses relations
+ * utilisent le pool DEFAULT.
+ */
+public enum BufferPoolName {
+    DEFAULT, KEEP, RECYCLE;
+
+    public static BufferPoolName parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,126 @@
+package bdda.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistiques du buffer pool à un instant donné (BufferManager.getStats), depuis la
+ * création du BufferManager ou le dernier resetStats.
+ *
+ * Un accès (GetPage, GetPageBuffer, pin) est un succès si la page était déjà en mémoire
+ * (préchargée comprise), un défaut sinon. Une éviction retire une page d'une frame pour en
+ * charger une autre (ou pour réduire le buffer pool) ; si la page était modifiée, elle est
+ * d'abord réécrite par le thread qui a provoqué l'éviction (dirtyWritebacks). Les pages
+ * écrites par le thread bdda-bgwriter et les points de contrôle sont comptées à part.
+ */
+public final class BufferPoolStats {
+
+    private final int bufferCount;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long dirtyWritebacks;
+    private final long backgroundWrites;
+    private final long pinWaits;
+    private final double averagePinnedFrames;
+    private final Map<String, Double> relationHitRatios;
+
+    BufferPoolStats(int bufferCount, long hits, long misses, long evictions, long dirtyWritebacks,
+                    long backgroundWrites, long pinWaits, double averagePinnedFrames,
+                    Map<String, Double> relationHitRatios) {
+        this.bufferCount = bufferCount;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.dirtyWritebacks = dirtyWritebacks;
+        this.backgroundWrites = backgroundWrites;
+        this.pinWaits = pinWaits;
+        this.averagePinnedFrames = averagePinnedFrames;
+        this.relationHitRatios = Collections.unmodifiableMap(new TreeMap<>(relationHitRatios));
+    }
+
+    /**
+     * @return le nombre de frames du buffer pool
+     */
+    public int getBufferCount() {
+        return bufferCount;
+    }
+
+    /**
+     * @return le nombre d'accès à une page déjà en mémoire
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return le nombre d'accès à une page lue sur disque
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return la part des accès servis par le buffer pool (0 sans accès)
+     */
+    public double getHitRatio() {
+        return ratio(hits, misses);
+    }
+
+    /**
+     * @return le nombre de pages retirées de leur frame
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return le nombre de pages modifiées réécrites au moment de leur éviction
+     */
+    public long getDirtyWritebacks() {
+        return dirtyWritebacks;
+    }
+
+    /**
+     * @return le nombre de pages écrites par le thread bdda-bgwriter et les points de contrôle
+     */
+    public long getBackgroundWrites() {
+        return backgroundWrites;
+    }
+
+    /**
+     * @return le nombre d'accès qui ont attendu la fin d'une lecture ou d'un remplacement
+     */
+    public long getPinWaits() {
+        return pinWaits;
+    }
+
+    /**
+     * @return le nombre moyen de frames épinglées (moyenne dans le temps)
+     */
+    public double getAveragePinnedFrames() {
+        return averagePinnedFrames;
+    }
+
+    /**
+     * @return la part des accès aux pages de données servis par le buffer pool, par relation
+     */
+    public Map<String, Double> getRelationHitRatios() {
+        return relationHitRatios;
+    }
+
+    static double ratio(long hits, long misses) {
+        long accesses = hits + misses;
+        return accesses == 0 ? 0.0 : (double) hits / accesses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Buffer pool : %d frames, %d succès, %d défauts (%.1f %%), %d évictions, "
+                        + "%d réécritures à l'éviction, %d écritures en tâche de fond, %d attentes, "
+                        + "%.2f frames épinglées en moyenne",
+                bufferCount, hits, misses, 100 * getHitRatio(), evictions, dirtyWritebacks,
+                backgroundWrites, pinWaits, averagePinnedFrames);
+    }
+}
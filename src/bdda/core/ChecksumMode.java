@@ -0,0 +1,11 @@
+package bdda.core;
+
+/**
+ * Vérification des sommes de contrôle des pages par le DiskManager :
+ * ALWAYS  -> à chaque lecture
+ * SAMPLED -> une lecture sur dm_checksum_sample
+ * SCRUB   -> jamais à la lecture, seulement par un thread de fond toutes les dm_scrub_interval secondes
+ */
+enum ChecksumMode {
+    ALWAYS, SAMPLED, SCRUB
+}
@@ -0,0 +1,67 @@
+package bdda.core;
+
+/**
+ * CLOCK (seconde chance).
+ *
+ * Chaque frame a un bit de référence, mis à 1 à chaque accès. L'aiguille parcourt
+ * les frames en cercle : une page référencée perd son bit et reste en mémoire
+ * (seconde chance), la première page non référencée et non épinglée est la victime.
+ * Un accès ne coûte qu'une écriture de booléen, et une recherche de victime s'arrête
+ * en O(1) amorti (chaque pas de l'aiguille consomme un bit posé par un accès).
+ */
+final class ClockPolicy implements ReplacementPolicy {
+
+    private final Frame[] frames;
+    private final boolean[] referenced;
+    private int hand;
+
+    ClockPolicy(Frame[] frames) {
+        this.frames = frames;
+        this.referenced = new boolean[frames.length];
+        this.hand = 0;
+    }
+
+    @Override
+    public void loaded(Frame frame) {
+        referenced[frame.slot] = true;
+    }
+
+    /**
+     * Sans bit de référence : remplacée au premier passage de l'aiguille si elle n'a pas servi.
+     */
+    @Override
+    public void prefetched(Frame frame) {
+        referenced[frame.slot] = false;
+    }
+
+    @Override
+    public void accessed(Frame frame) {
+        referenced[frame.slot] = true;
+    }
+
+    @Override
+    public void removed(Frame frame) {
+        referenced[frame.slot] = false;
+    }
+
+    @Override
+    public Frame victim() {
+        // Deux tours au plus : le premier peut n'avoir fait qu'effacer des bits
+        for (int steps = 0; steps < 2 * frames.length; steps++) {
+            Frame frame = frames[hand];
+            hand = (hand + 1) % frames.length;
+
+            if (frame.pageId == null || frame.pinCount != 0) {
+                continue;
+            }
+            if (referenced[frame.slot]) {
+                referenced[frame.slot] = false;
+                continue;
+            }
+            if (frame.tryClaim()) {
+                return frame;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,186 @@
+package bdda.core;
+
+/**
+ * CLOCK-Pro (Jiang, Chen, Zhang, USENIX 2005), version à une aiguille par rôle.
+ *
+ * Les pages en mémoire sont chaudes ou froides. Une page froide chargée entre en
+ * période de test : si elle est réutilisée pendant cette période (bit de référence vu
+ * par l'aiguille froide, ou rechargée alors qu'elle est encore dans l'historique),
+ * elle devient chaude. Les victimes sont toujours des pages froides (aiguille froide,
+ * seconde chance comme CLOCK) ; l'aiguille chaude refroidit les pages chaudes non
+ * référencées quand elles dépassent leur part du buffer pool.
+ *
+ * L'historique garde les clés des dernières pages froides évincées en période de test
+ * (au plus une par frame). La part réservée aux pages froides (coldTarget) augmente
+ * quand une page de l'historique revient, et diminue quand une période de test
+ * se termine sans réutilisation : un parcours unique ne chasse pas les pages chaudes.
+ */
+final class ClockProPolicy implements ReplacementPolicy {
+
+    private final Frame[] frames;
+    private final boolean[] referenced;
+    private final boolean[] hot;
+    private final boolean[] test;
+    // Pages préchargées pas encore demandées
+    private final boolean[] unreferenced;
+    private int handCold;
+    private int handHot;
+    private int hotCount;
+    private int coldTarget;
+
+    // Historique des pages froides évincées en période de test
+    private final GhostList ghosts;
+
+    ClockProPolicy(Frame[] frames) {
+        this.frames = frames;
+        int n = frames.length;
+        this.referenced = new boolean[n];
+        this.hot = new boolean[n];
+        this.test = new boolean[n];
+        this.unreferenced = new boolean[n];
+        this.handCold = 0;
+        this.handHot = 0;
+        this.hotCount = 0;
+        this.coldTarget = Math.max(1, n / 4);
+        this.ghosts = new GhostList(n);
+    }
+
+    @Override
+    public void loaded(Frame frame) {
+        int idx = frame.slot;
+        long key = PageTable.key(frame.pageId);
+        referenced[idx] = false;
+        unreferenced[idx] = false;
+
+        if (ghosts.remove(key) != -1) {
+            // Réutilisée pendant sa période de test : la part froide était trop petite
+            coldTarget = Math.min(coldTarget + 1, Math.max(1, frames.length - 1));
+            promote(idx);
+        } else {
+            hot[idx] = false;
+            test[idx] = true;
+        }
+    }
+
+    /**
+     * Page froide hors période de test, sans consulter l'historique : son premier accès
+     * compte comme son chargement.
+     */
+    @Override
+    public void prefetched(Frame frame) {
+        int idx = frame.slot;
+        if (hot[idx]) {
+            hotCount--;
+        }
+        referenced[idx] = false;
+        hot[idx] = false;
+        test[idx] = false;
+        unreferenced[idx] = true;
+    }
+
+    @Override
+    public void accessed(Frame frame) {
+        if (unreferenced[frame.slot]) {
+            loaded(frame);
+            return;
+        }
+        referenced[frame.slot] = true;
+    }
+
+    @Override
+    public void removed(Frame frame) {
+        int idx = frame.slot;
+        if (hot[idx]) {
+            hotCount--;
+        }
+        referenced[idx] = false;
+        hot[idx] = false;
+        test[idx] = false;
+        unreferenced[idx] = false;
+    }
+
+    @Override
+    public Frame victim() {
+        // Si toutes les pages froides sont épinglées, refroidir une page chaude et recommencer
+        for (int attempt = 0; attempt < 2; attempt++) {
+            for (int steps = 0; steps < 2 * frames.length; steps++) {
+                Frame frame = frames[handCold];
+                int idx = handCold;
+                handCold = (handCold + 1) % frames.length;
+
+                if (frame.pageId == null || frame.pinCount != 0 || hot[idx]) {
+                    continue;
+                }
+                if (referenced[idx]) {
+                    referenced[idx] = false;
+                    if (test[idx]) {
+                        promote(idx);
+                    } else {
+                        test[idx] = true;
+                    }
+                    continue;
+                }
+
+                if (!frame.tryClaim()) {
+                    continue;
+                }
+                if (test[idx] && ghosts.add(PageTable.key(frame.pageId), 0)) {
+                    // La plus ancienne page de l'historique termine sa période de test sans être revenue
+                    coldTarget = Math.max(1, coldTarget - 1);
+                }
+                test[idx] = false;
+                unreferenced[idx] = false;
+                return frame;
+            }
+            if (!coolHotPage()) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private void promote(int idx) {
+        hot[idx] = true;
+        test[idx] = false;
+        hotCount++;
+        if (hotCount > frames.length - coldTarget) {
+            coolHotPage();
+        }
+    }
+
+    /**
+     * Aiguille chaude : refroidit la première page chaude non référencée et non épinglée.
+     * Les périodes de test des pages froides qu'elle dépasse se terminent.
+     *
+     * @return false si aucune page chaude n'a pu être refroidie
+     */
+    private boolean coolHotPage() {
+        for (int steps = 0; steps < 2 * frames.length; steps++) {
+            Frame frame = frames[handHot];
+            int idx = handHot;
+            handHot = (handHot + 1) % frames.length;
+
+            if (frame.pageId == null) {
+                continue;
+            }
+            if (!hot[idx]) {
+                if (test[idx]) {
+                    test[idx] = false;
+                    coldTarget = Math.max(1, coldTarget - 1);
+                }
+                continue;
+            }
+            if (frame.pinCount != 0) {
+                continue;
+            }
+            if (referenced[idx]) {
+                referenced[idx] = false;
+                continue;
+            }
+            hot[idx] = false;
+            hotCount--;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,10 @@
+package bdda.core;
+
+/**
+ * Format des nouveaux fichiers Data.bin :
+ * NONE -> pages stockées telles quelles
+ * LZ4  -> pages compressées (mode CHANNEL seulement, ignoré en mode MMAP)
+ */
+enum CompressionMode {
+    NONE, LZ4
+}
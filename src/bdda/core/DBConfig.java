@@ -5,8 +5,24 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 
+/**
+ * Politique de remplacement du BufferManager (voir ReplacementPolicy) :
+ * LRU       -> page utilisée le moins récemment
+ * MRU       -> page utilisée le plus récemment
+ * CLOCK     -> seconde chance (bit de référence, aiguille circulaire)
+ * CLOCK_PRO -> CLOCK avec pages chaudes/froides et historique des pages évincées
+ * TWO_Q     -> 2Q : file des pages vues une fois, LRU des pages réutilisées
+ * LRU_2     -> LRU-K avec K = 2 : avant-dernier accès le plus ancien
+ * ARC       -> Adaptive Replacement Cache
+ * Dans config.txt, '-' peut remplacer '_' ('CLOCK-PRO', 'LRU-2') et 2Q s'écrit '2Q'.
+ */
 enum BufferPolicy {
-    LRU, MRU
+    LRU, MRU, CLOCK, CLOCK_PRO, TWO_Q, LRU_2, ARC;
+
+    static BufferPolicy parse(String name) {
+        String value = name.trim().toUpperCase().replace('-', '_');
+        return value.equals("2Q") ? TWO_Q : valueOf(value);
+    }
 }
 
 public class DBConfig {
@@ -15,6 +31,24 @@ public class DBConfig {
     private int dm_maxfilecount;
     private int bm_buffercount;
     private BufferPolicy bm_policy;
+    private IOMode dm_io_mode = IOMode.CHANNEL;
+    private int dm_extent_pages = 1;
+    private int dm_io_threads = 4;
+    private ChecksumMode dm_checksum = ChecksumMode.ALWAYS;
+    private int dm_checksum_sample = 16;
+    private int dm_scrub_interval = 300;
+    private CompressionMode dm_compression = CompressionMode.NONE;
+    private BackendType dm_backend = BackendType.FILE;
+    private FrameMemory bm_memory = FrameMemory.HEAP;
+    private int bm_writer_dirty_ratio = 10;
+    private int bm_writer_interval = 200;
+    private int bm_readahead_pages = 16;
+    private int bm_ring_pages = 32;
+    private int bm_keep_buffercount = 0;
+    private BufferPolicy bm_keep_policy;
+    private int bm_recycle_buffercount = 0;
+    private BufferPolicy bm_recycle_policy;
+    private int bm_shards = 1;
     
     /**
      * Constructeur complet de la classe DBConfig
@@ -58,6 +92,233 @@ public class DBConfig {
         return bm_policy;
     }
 
+    /**
+     * Récupère le mode d'accès aux fichiers (CHANNEL par défaut)
+     * @return le mode d'entrée/sortie du DiskManager
+     */
+    public IOMode getIOMode() {
+        return dm_io_mode;
+    }
+
+    public void setIOMode(IOMode dm_io_mode) {
+        this.dm_io_mode = dm_io_mode;
+    }
+
+    /**
+     * Récupère la taille d'un extent : nombre de pages contiguës réservées
+     * d'un coup quand un fichier grandit (1 par défaut)
+     * @return le nombre de pages par extent
+     */
+    public int getExtentPages() {
+        return dm_extent_pages;
+    }
+
+    public void setExtentPages(int dm_extent_pages) {
+        this.dm_extent_pages = dm_extent_pages;
+    }
+
+    /**
+     * Récupère le nombre de threads d'entrée/sortie du DiskManager
+     * utilisés par les lectures/écritures asynchrones (4 par défaut)
+     * @return le nombre de threads d'entrée/sortie
+     */
+    public int getIOThreads() {
+        return dm_io_threads;
+    }
+
+    public void setIOThreads(int dm_io_threads) {
+        this.dm_io_threads = dm_io_threads;
+    }
+
+    /**
+     * Récupère le mode de vérification des sommes de contrôle (ALWAYS par défaut)
+     * @return le mode de vérification
+     */
+    public ChecksumMode getChecksumMode() {
+        return dm_checksum;
+    }
+
+    public void setChecksumMode(ChecksumMode dm_checksum) {
+        this.dm_checksum = dm_checksum;
+    }
+
+    /**
+     * Récupère la fréquence d'échantillonnage en mode SAMPLED :
+     * une lecture sur getChecksumSample() est vérifiée (16 par défaut)
+     * @return le pas d'échantillonnage
+     */
+    public int getChecksumSample() {
+        return dm_checksum_sample;
+    }
+
+    public void setChecksumSample(int dm_checksum_sample) {
+        this.dm_checksum_sample = dm_checksum_sample;
+    }
+
+    /**
+     * Récupère l'intervalle entre deux vérifications de fond en mode SCRUB
+     * @return l'intervalle en secondes (300 par défaut)
+     */
+    public int getScrubInterval() {
+        return dm_scrub_interval;
+    }
+
+    public void setScrubInterval(int dm_scrub_interval) {
+        this.dm_scrub_interval = dm_scrub_interval;
+    }
+
+    /**
+     * Récupère le format des fichiers Data.bin créés désormais (NONE par défaut).
+     * Un fichier existant garde le format choisi à sa création.
+     * @return le mode de compression des nouveaux fichiers
+     */
+    public CompressionMode getCompression() {
+        return dm_compression;
+    }
+
+    public void setCompression(CompressionMode dm_compression) {
+        this.dm_compression = dm_compression;
+    }
+
+    /**
+     * Récupère le stockage des pages choisi au démarrage (FILE par défaut)
+     * @return le type de stockage
+     */
+    public BackendType getBackend() {
+        return dm_backend;
+    }
+
+    public void setBackend(BackendType dm_backend) {
+        this.dm_backend = dm_backend;
+    }
+
+    /**
+     * Récupère la mémoire utilisée pour les frames du buffer pool (HEAP par défaut)
+     * @return le type de mémoire des frames
+     */
+    public FrameMemory getFrameMemory() {
+        return bm_memory;
+    }
+
+    public void setFrameMemory(FrameMemory bm_memory) {
+        this.bm_memory = bm_memory;
+    }
+
+    /**
+     * Récupère le pourcentage de pages modifiées au-delà duquel le BufferManager
+     * les écrit en tâche de fond (10 par défaut, 0 = pas d'écriture en tâche de fond)
+     * @return le seuil, en pourcentage des frames
+     */
+    public int getWriterDirtyRatio() {
+        return bm_writer_dirty_ratio;
+    }
+
+    public void setWriterDirtyRatio(int bm_writer_dirty_ratio) {
+        this.bm_writer_dirty_ratio = bm_writer_dirty_ratio;
+    }
+
+    /**
+     * Récupère l'intervalle entre deux passages de l'écriture en tâche de fond (200 ms par défaut)
+     * @return l'intervalle en millisecondes
+     */
+    public int getWriterInterval() {
+        return bm_writer_interval;
+    }
+
+    public void setWriterInterval(int bm_writer_interval) {
+        this.bm_writer_interval = bm_writer_interval;
+    }
+
+    /**
+     * Récupère le nombre de pages lues à l'avance quand le BufferManager détecte
+     * un parcours séquentiel d'un fichier (16 par défaut, 0 = pas de lecture anticipée)
+     * @return la taille de la fenêtre de lecture anticipée
+     */
+    public int getReadAheadPages() {
+        return bm_readahead_pages;
+    }
+
+    public void setReadAheadPages(int bm_readahead_pages) {
+        this.bm_readahead_pages = bm_readahead_pages;
+    }
+
+    /**
+     * Récupère le nombre de frames de l'anneau d'une opération de masse (BufferAccessStrategy :
+     * parcours complet, APPEND), au plus le huitième du buffer pool (32 par défaut, 0 = pas d'anneau)
+     * @return la taille de l'anneau
+     */
+    public int getRingPages() {
+        return bm_ring_pages;
+    }
+
+    public void setRingPages(int bm_ring_pages) {
+        this.bm_ring_pages = bm_ring_pages;
+    }
+
+    /**
+     * Récupère le nombre de frames du buffer pool KEEP (petites relations et Header Pages,
+     * jamais chassées par les autres relations), 0 par défaut : pas de pool KEEP
+     * @return le nombre de frames du pool KEEP
+     */
+    public int getKeepBufferCount() {
+        return bm_keep_buffercount;
+    }
+
+    public void setKeepBufferCount(int bm_keep_buffercount) {
+        this.bm_keep_buffercount = bm_keep_buffercount;
+    }
+
+    /**
+     * Récupère la politique de remplacement du pool KEEP (bm_policy par défaut)
+     * @return la politique du pool KEEP
+     */
+    public BufferPolicy getKeepPolicy() {
+        return bm_keep_policy != null ? bm_keep_policy : bm_policy;
+    }
+
+    public void setKeepPolicy(BufferPolicy bm_keep_policy) {
+        this.bm_keep_policy = bm_keep_policy;
+    }
+
+    /**
+     * Récupère le nombre de frames du buffer pool RECYCLE (grandes relations parcourues,
+     * qui ne chassent plus les pages du pool DEFAULT), 0 par défaut : pas de pool RECYCLE
+     * @return le nombre de frames du pool RECYCLE
+     */
+    public int getRecycleBufferCount() {
+        return bm_recycle_buffercount;
+    }
+
+    public void setRecycleBufferCount(int bm_recycle_buffercount) {
+        this.bm_recycle_buffercount = bm_recycle_buffercount;
+    }
+
+    /**
+     * Récupère la politique de remplacement du pool RECYCLE (bm_policy par défaut)
+     * @return la politique du pool RECYCLE
+     */
+    public BufferPolicy getRecyclePolicy() {
+        return bm_recycle_policy != null ? bm_recycle_policy : bm_policy;
+    }
+
+    public void setRecyclePolicy(BufferPolicy bm_recycle_policy) {
+        this.bm_recycle_policy = bm_recycle_policy;
+    }
+
+    /**
+     * Récupère le nombre de partitions de chaque buffer pool (frames, politique de remplacement
+     * et verrou propres ; mémoire propre hors tas), par exemple une par socket ou groupe de
+     * cœurs (1 par défaut, au plus le nombre de frames du pool)
+     * @return le nombre de partitions
+     */
+    public int getShards() {
+        return bm_shards;
+    }
+
+    public void setShards(int bm_shards) {
+        this.bm_shards = bm_shards;
+    }
+
     /**
      * Charge la configuration complète de la base de données depuis un fichier
      * @param fichier_config le fichier de configuration à lire
@@ -72,6 +333,24 @@ public class DBConfig {
         int dm_maxfilecount = 0;
         int bm_buffercount = 0;
         BufferPolicy bm_Policy = null;
+        IOMode dm_io_mode = IOMode.CHANNEL;
+        int dm_extent_pages = 1;
+        int dm_io_threads = 4;
+        ChecksumMode dm_checksum = ChecksumMode.ALWAYS;
+        int dm_checksum_sample = 16;
+        int dm_scrub_interval = 300;
+        CompressionMode dm_compression = CompressionMode.NONE;
+        BackendType dm_backend = BackendType.FILE;
+        FrameMemory bm_memory = FrameMemory.HEAP;
+        int bm_writer_dirty_ratio = 10;
+        int bm_writer_interval = 200;
+        int bm_readahead_pages = 16;
+        int bm_ring_pages = 32;
+        int bm_keep_buffercount = 0;
+        BufferPolicy bm_keep_policy = null;
+        int bm_recycle_buffercount = 0;
+        BufferPolicy bm_recycle_policy = null;
+        int bm_shards = 1;
         
         while(line != null) {
             if(line.startsWith("dbpath = '")) {
@@ -91,18 +370,116 @@ public class DBConfig {
                 int start = line.indexOf("'");
                 int end = line.indexOf("'", start + 1);
                 String bm_policyStr = line.substring(start + 1, end); 
-                bm_Policy = BufferPolicy.valueOf(bm_policyStr.toUpperCase());
+                bm_Policy = BufferPolicy.parse(bm_policyStr);
             }
             else if(line.startsWith("bm_buffercount = ")) {
                 String value = line.substring("bm_buffercount = ".length()).trim();
                 bm_buffercount = Integer.parseInt(value);
             }
+            else if(line.startsWith("dm_io_mode = '")) {
+                int start = line.indexOf("'");
+                int end = line.indexOf("'", start + 1);
+                dm_io_mode = IOMode.valueOf(line.substring(start + 1, end).toUpperCase());
+            }
+            else if(line.startsWith("dm_extent_pages = ")) {
+                String value = line.substring("dm_extent_pages = ".length()).trim();
+                dm_extent_pages = Integer.parseInt(value);
+            }
+            else if(line.startsWith("dm_io_threads = ")) {
+                String value = line.substring("dm_io_threads = ".length()).trim();
+                dm_io_threads = Integer.parseInt(value);
+            }
+            else if(line.startsWith("dm_checksum = '")) {
+                int start = line.indexOf("'");
+                int end = line.indexOf("'", start + 1);
+                dm_checksum = ChecksumMode.valueOf(line.substring(start + 1, end).toUpperCase());
+            }
+            else if(line.startsWith("dm_checksum_sample = ")) {
+                String value = line.substring("dm_checksum_sample = ".length()).trim();
+                dm_checksum_sample = Integer.parseInt(value);
+            }
+            else if(line.startsWith("dm_scrub_interval = ")) {
+                String value = line.substring("dm_scrub_interval = ".length()).trim();
+                dm_scrub_interval = Integer.parseInt(value);
+            }
+            else if(line.startsWith("dm_compression = '")) {
+                int start = line.indexOf("'");
+                int end = line.indexOf("'", start + 1);
+                dm_compression = CompressionMode.valueOf(line.substring(start + 1, end).toUpperCase());
+            }
+            else if(line.startsWith("dm_backend = '")) {
+                int start = line.indexOf("'");
+                int end = line.indexOf("'", start + 1);
+                dm_backend = BackendType.valueOf(line.substring(start + 1, end).toUpperCase());
+            }
+            else if(line.startsWith("bm_memory = '")) {
+                int start = line.indexOf("'");
+                int end = line.indexOf("'", start + 1);
+                bm_memory = FrameMemory.valueOf(line.substring(start + 1, end).toUpperCase());
+            }
+            else if(line.startsWith("bm_writer_dirty_ratio = ")) {
+                String value = line.substring("bm_writer_dirty_ratio = ".length()).trim();
+                bm_writer_dirty_ratio = Integer.parseInt(value);
+            }
+            else if(line.startsWith("bm_writer_interval = ")) {
+                String value = line.substring("bm_writer_interval = ".length()).trim();
+                bm_writer_interval = Integer.parseInt(value);
+            }
+            else if(line.startsWith("bm_readahead_pages = ")) {
+                String value = line.substring("bm_readahead_pages = ".length()).trim();
+                bm_readahead_pages = Integer.parseInt(value);
+            }
+            else if(line.startsWith("bm_ring_pages = ")) {
+                String value = line.substring("bm_ring_pages = ".length()).trim();
+                bm_ring_pages = Integer.parseInt(value);
+            }
+            else if(line.startsWith("bm_keep_buffercount = ")) {
+                String value = line.substring("bm_keep_buffercount = ".length()).trim();
+                bm_keep_buffercount = Integer.parseInt(value);
+            }
+            else if(line.startsWith("bm_keep_policy = '")) {
+                int start = line.indexOf("'");
+                int end = line.indexOf("'", start + 1);
+                bm_keep_policy = BufferPolicy.parse(line.substring(start + 1, end));
+            }
+            else if(line.startsWith("bm_recycle_buffercount = ")) {
+                String value = line.substring("bm_recycle_buffercount = ".length()).trim();
+                bm_recycle_buffercount = Integer.parseInt(value);
+            }
+            else if(line.startsWith("bm_recycle_policy = '")) {
+                int start = line.indexOf("'");
+                int end = line.indexOf("'", start + 1);
+                bm_recycle_policy = BufferPolicy.parse(line.substring(start + 1, end));
+            }
+            else if(line.startsWith("bm_shards = ")) {
+                String value = line.substring("bm_shards = ".length()).trim();
+                bm_shards = Integer.parseInt(value);
+            }
             line = reader.readLine();
         }
         
         reader.close();
         if (dbpath != null && pagesize > 0 && dm_maxfilecount > 0 && bm_Policy != null && bm_buffercount > 0) {
-            return new DBConfig(dbpath, pagesize, dm_maxfilecount, bm_buffercount, bm_Policy);
+            DBConfig config = new DBConfig(dbpath, pagesize, dm_maxfilecount, bm_buffercount, bm_Policy);
+            config.setIOMode(dm_io_mode);
+            config.setExtentPages(dm_extent_pages);
+            config.setIOThreads(dm_io_threads);
+            config.setChecksumMode(dm_checksum);
+            config.setChecksumSample(dm_checksum_sample);
+            config.setScrubInterval(dm_scrub_interval);
+            config.setCompression(dm_compression);
+            config.setBackend(dm_backend);
+            config.setFrameMemory(bm_memory);
+            config.setWriterDirtyRatio(bm_writer_dirty_ratio);
+            config.setWriterInterval(bm_writer_interval);
+            config.setReadAheadPages(bm_readahead_pages);
+            config.setRingPages(bm_ring_pages);
+            config.setKeepBufferCount(bm_keep_buffercount);
+            config.setKeepPolicy(bm_keep_policy);
+            config.setRecycleBufferCount(bm_recycle_buffercount);
+            config.setRecyclePolicy(bm_recycle_policy);
+            config.setShards(bm_shards);
+            return config;
         }
 
         return null;
@@ -2,369 +2,1982 @@ package bdda.core;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Gestionnaire des fichiers Data.bin.
+ *
+ * Structure d'un fichier Data.bin (en emplacements de config.getPageSize() + CHECKSUM_SIZE octets :
+ * le contenu de la page, suivi de la somme de contrôle CRC32C des pages de données ;
+ * config.getPageSize() + COMPRESSED_HEADER_SIZE octets dans un fichier compressé) :
+ *
+ * Page 0            : en-tête du fichier (niveau résumé de la carte d'espace)
+ *                     magic, version, nombre de pages de données, nombre de groupes,
+ *                     puis nombre de pages libres de chaque groupe
+ * Page 1            : bitmap du groupe 0
+ * Pages 2...        : les GROUP_PAGES pages de données du groupe 0
+ * Page suivante     : bitmap du groupe 1 (créée seulement quand le fichier y arrive)
+ * ...
+ *
+ * Un groupe couvre GROUP_PAGES = pageSize * 8 pages de données (un bit par page).
+ *
+ * La somme de contrôle est calculée à chaque écriture de page et vérifiée selon
+ * config.getChecksumMode() : à chaque lecture, sur un échantillon des lectures,
+ * ou seulement par une vérification en tâche de fond (scrub).
+ *
+ * Fichier compressé (dm_compression = 'LZ4' à sa création, mode CHANNEL) : après l'en-tête,
+ * les pages et les bitmaps sont des enregistrements compressés de longueur variable, rangés
+ * les uns à la suite des autres par secteurs de PackedFile.SECTOR_SIZE octets : une page de
+ * texte complétée par des espaces n'occupe qu'un ou deux secteurs au lieu d'un emplacement entier.
+ * La table des emplacements est reconstruite à l'ouverture (voir PackedFile).
+ *
+ * Un fichier d'un format précédent (sans en-tête, ou versions 2 et 3) est converti
+ * au format courant à son ouverture (upgradeFile).
+ */
+public class DiskManager implements StorageBackend {
 
-public class DiskManager {
-    
     private DBConfig config;
 
     /**
      * Bitmap d'utilisation des pages EN MÉMOIRE (cache) :
      * usedPages[fileIdx].get(pageIdx) == true  -> page utilisée (1)
      * usedPages[fileIdx].get(pageIdx) == false -> page libre (0)
+     * Seuls les groupes de loadedGroups[fileIdx] sont chargés depuis le fichier.
      */
     private BitSet[] usedPages;
+    private BitSet[] loadedGroups;
+
+    /**
+     * En-tête de fichier : "BDDA" puis version du format.
+     */
+    private static final int FILE_MAGIC = 0x42444441;
+    private static final int FILE_VERSION = 5;
+    private static final int HEADER_FIXED_BYTES = 20; // magic + version + flags + pageCount + groupCount
+    private static final int FLAG_COMPRESSED = 1;
+
+    /**
+     * Taille de la bitmap placée en tête des fichiers de l'ancien format sans en-tête
+     * (512 pages au plus), convertis à l'ouverture (upgradeFile).
+     */
+    private static final int LEGACY_BITMAP_BYTES = 64;
+
+    /**
+     * Taille de la somme de contrôle placée après chaque page, et taille d'un emplacement
+     * de page dans le fichier. Une somme calculée nulle est enregistrée comme 1 :
+     * une somme nulle signifie "emplacement jamais écrit". growFile écrit les pages vides
+     * avec leur somme (blankChecksum), une somme nulle n'est donc admise que pour une page
+     * libre d'après la bitmap (fichier agrandi par une version précédente).
+     */
+    public static final int CHECKSUM_SIZE = 4;
+    private final int blankChecksum;
+
+    /**
+     * packedFiles[fileIdx] -> emplacements des pages d'un fichier compressé (null sinon)
+     * slotSizes[fileIdx]   -> taille d'un emplacement de page dans un fichier non compressé
+     * Dans l'ancien format 4, une page compressée avait un emplacement fixe commençant par
+     * COMPRESSED_HEADER_SIZE octets : longueur stockée (0 = jamais écrit, négative = page
+     * stockée sans compression) puis somme de contrôle (converti par upgradeFile).
+     */
+    private static final int COMPRESSED_HEADER_SIZE = 8;
+    private PackedFile[] packedFiles;
+    private int[] slotSizes;
+
+    /**
+     * Nombre de pages de données par groupe (une page de bitmap par groupe),
+     * nombre maximal de groupes (limité par le résumé dans l'en-tête)
+     * et donc nombre maximal de pages de données par fichier.
+     */
+    private final int GROUP_PAGES;
+    private final int MAX_GROUPS;
+    private final int MAX_PAGES_PER_FILE;
+
+    /**
+     * Nombre maximal de FileChannel gardés ouverts simultanément.
+     * Au-delà, le canal utilisé le moins récemment est fermé.
+     */
+    private static final int MAX_OPEN_CHANNELS = 32;
+
+    /**
+     * Cache des canaux ouverts sur les fichiers Data.bin (fileIdx -> FileChannel).
+     * Ordre d'accès (LRU) : évite un open/close par lecture ou écriture de page.
+     */
+    private Map<Integer, FileChannel> channels;
+
+    /**
+     * Mode MMAP : chaque fichier est projeté par segments de MMAP_SEGMENT_PAGES pages.
+     * mappings[fileIdx][s] couvre les pages [s * MMAP_SEGMENT_PAGES, (s + 1) * MMAP_SEGMENT_PAGES).
+     * Le fichier grandit d'un segment entier à la fois quand allocPage a besoin de place.
+     */
+    private static final int MMAP_SEGMENT_PAGES = 64;
+    private MappedByteBuffer[][] mappings;
+
+    /**
+     * Entrées/sorties asynchrones : pool de config.getIOThreads() threads (créé à la demande)
+     * et écritures asynchrones pas encore terminées (attendues par force() et finish()).
+     * Une lecture ou écriture (synchrone ou asynchrone) interrompue par la fermeture
+     * de son canal est recommencée au plus MAX_IO_ATTEMPTS fois.
+     */
+    private static final int MAX_IO_ATTEMPTS = 3;
+    private ExecutorService ioExecutor;
+    private final Set<CompletableFuture<Void>> pendingWrites = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Vérification des sommes de contrôle :
+     * readCount         -> compteur des lectures (mode SAMPLED)
+     * corruptPages      -> pages dont la somme de contrôle est fausse ; leur lecture échoue
+     *                      jusqu'à ce qu'elles soient réécrites
+     * scrubber          -> thread de vérification en tâche de fond (mode SCRUB)
+     * SCRUB_CHUNK_PAGES -> nombre de pages lues à la fois par la vérification
+     */
+    private static final int SCRUB_CHUNK_PAGES = 64;
+
+    /**
+     * Nombre de secteurs lus à la fois pour reconstruire la table d'un fichier compressé.
+     */
+    private static final int SCAN_CHUNK_SECTORS = 256;
+    private final AtomicLong readCount = new AtomicLong();
+    private final Set<PageId> corruptPages = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scrubber;
+
+    /**
+     * Index des pages libres EN MÉMOIRE (évite de parcourir fichiers et bitmaps) :
+     * pageCounts[fileIdx]     -> nombre de pages de données du fichier (-1 si fichier absent)
+     * freeCounts[fileIdx]     -> nombre de pages existantes libres (bit = 0)
+     * freeHints[fileIdx]      -> aucune page libre d'indice inférieur dans le fichier
+     * groupFree[fileIdx][g]   -> nombre de pages libres du groupe g (résumé de l'en-tête)
+     * groupsWithFree[fileIdx] -> groupes ayant au moins une page libre
+     * filesWithFree           -> ensemble des fichiers ayant au moins une page libre
+     * growFileIdx             -> premier fichier qui peut encore grandir
+     */
+    private int[] pageCounts;
+    private int[] freeCounts;
+    private int[] freeHints;
+    private int[][] groupFree;
+    private BitSet[] groupsWithFree;
+    private BitSet filesWithFree;
+    private int growFileIdx;
+
+    /**
+     * Pages de bitmap et en-têtes modifiés depuis la dernière écriture.
+     * Ils sont écrits par lots dans force(), finish() et quand un fichier grandit,
+     * et non plus à chaque allocation / désallocation.
+     */
+    private BitSet[] dirtyGroups;
+    private BitSet dirtyHeaders;
 
     /**
-     * Taille de la bitmap en bytes au début de chaque fichier Data.bin
-     * Permet de tracker jusqu'à 512 pages par fichier (64 bytes * 8 bits)
+     * Allocation par extents : un fichier grandit de extentPages pages contiguës à la fois
+     * (préallocation en une seule écriture). L'extent e d'un fichier couvre les pages
+     * [e * extentPages, (e + 1) * extentPages).
+     * extentUsed[fileIdx][e]  -> nombre de pages utilisées dans l'extent (groupes chargés)
+     * emptyExtents[fileIdx]   -> extents existants entièrement libres (groupes chargés)
+     * filesWithEmptyExtent    -> fichiers ayant au moins un extent entièrement libre
      */
-    private static final int BITMAP_SIZE_BYTES = 64;
-    private static final int MAX_PAGES_PER_FILE = BITMAP_SIZE_BYTES * 8; // = 512 pages
+    private int extentPages;
+    private int[][] extentUsed;
+    private BitSet[] emptyExtents;
+    private BitSet filesWithEmptyExtent;
 
     /**
      * Constructeur du DiskManager.
      * Initialise le gestionnaire avec la configuration fournie et
-     * charge les bitmaps depuis les fichiers de données.
-     * 
+     * charge les en-têtes depuis les fichiers de données.
+     *
      * @param config configuration de la base de données contenant
      *               le chemin, la taille des pages et le nombre max de fichiers
      */
     public DiskManager(DBConfig config) throws IOException {
         this.config = config;
-        this.usedPages = new BitSet[config.getMaxFileCount()];
+        int maxFiles = config.getMaxFileCount();
+
+        this.GROUP_PAGES = config.getPageSize() * 8;
+        this.MAX_GROUPS = (config.getPageSize() - HEADER_FIXED_BYTES) / 4;
+        this.MAX_PAGES_PER_FILE = (int) Math.min(Integer.MAX_VALUE - GROUP_PAGES,
+                (long) MAX_GROUPS * GROUP_PAGES);
+        this.blankChecksum = checksum(ByteBuffer.allocate(config.getPageSize()), 0);
+
+        this.extentPages = config.getExtentPages();
+        if (extentPages < 1 || GROUP_PAGES % extentPages != 0) {
+            throw new IOException("dm_extent_pages (" + extentPages +
+                ") doit être un diviseur de " + GROUP_PAGES);
+        }
+        if (config.getIOMode() == IOMode.MMAP && GROUP_PAGES % MMAP_SEGMENT_PAGES != 0) {
+            throw new IOException("En mode MMAP, la taille de page doit être un multiple de " +
+                (MMAP_SEGMENT_PAGES / 8));
+        }
+
+        this.packedFiles = new PackedFile[maxFiles];
+        this.slotSizes = new int[maxFiles];
+        this.usedPages = new BitSet[maxFiles];
+        this.loadedGroups = new BitSet[maxFiles];
+        this.mappings = new MappedByteBuffer[maxFiles][];
+        this.pageCounts = new int[maxFiles];
+        this.freeCounts = new int[maxFiles];
+        this.freeHints = new int[maxFiles];
+        this.groupFree = new int[maxFiles][];
+        this.groupsWithFree = new BitSet[maxFiles];
+        this.filesWithFree = new BitSet(maxFiles);
+        this.dirtyGroups = new BitSet[maxFiles];
+        this.dirtyHeaders = new BitSet(maxFiles);
+        this.extentUsed = new int[maxFiles][];
+        this.emptyExtents = new BitSet[maxFiles];
+        this.filesWithEmptyExtent = new BitSet(maxFiles);
+        this.channels = new LinkedHashMap<Integer, FileChannel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FileChannel> eldest) {
+                if (size() > MAX_OPEN_CHANNELS) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
         this.Init();
+
+        if (config.getChecksumMode() == ChecksumMode.SCRUB) {
+            startScrubber();
+        }
     }
 
     /**
      * Retourne la configuration actuelle du DiskManager.
-     * 
+     *
      * @return l'objet DBConfig utilisé par ce gestionnaire
      */
+    @Override
     public DBConfig getConfig() {
         return config;
     }
-    
+
+    /**
+     * Les fichiers Data.bin sont persistants.
+     */
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
     /**
      * Alloue une nouvelle page pour stockage.
-     * 
-     * 1) Si une page précédemment désallouée (bit = 0) est disponible, elle est réutilisée.
-     * 2) Sinon, une nouvelle page est créée à la fin d'un fichier existant
-     *    ou dans un nouveau fichier si nécessaire.
-     * 
+     *
+     * 1) Si une page précédemment désallouée (bit = 0) est disponible, elle est réutilisée :
+     *    le premier fichier ayant une page libre est donné par filesWithFree,
+     *    le groupe par le résumé groupsWithFree, puis la page par BitSet.nextClearBit.
+     * 2) Sinon, un nouvel extent est préalloué à la fin du premier fichier non plein
+     *    (ou dans un nouveau fichier si nécessaire) et sa première page est renvoyée.
+     *
+     * Les bitmaps ne sont pas réécrites immédiatement : elles sont marquées modifiées
+     * et seront écrites au prochain force() ou finish(), ou avec l'en-tête quand
+     * un fichier grandit.
+     *
      * @return PageId identifiant unique de la page allouée
      * @throws IOException si impossible de créer le fichier ou d'écrire la page,
      *                     ou si la limite maximale de fichiers est atteinte
      */
-    public PageId allocPage() throws IOException {
+    @Override
+    public synchronized PageId allocPage() throws IOException {
 
-        int maxFiles = config.getMaxFileCount(); 
-        int pageSize = config.getPageSize();
+        int maxFiles = config.getMaxFileCount();
 
         // 1) Essayer d'abord de réutiliser une page libre (bit = 0)
-        for (int fileIdx = 0; fileIdx < maxFiles; fileIdx++) {
-            File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
-            if (!f.exists()) {
-                continue;
-            }
-
-            long length = f.length();
-            if (length <= BITMAP_SIZE_BYTES) {
-                continue; // Fichier vide ou juste la bitmap
-            }
-
-            int pageCount = (int) ((length - BITMAP_SIZE_BYTES) / pageSize);
-            BitSet bitmap = getOrCreateBitmap(fileIdx);
+        int fileIdx = filesWithFree.nextSetBit(0);
+        if (fileIdx >= 0) {
+            return takeFreePage(fileIdx);
+        }
 
-            // Parcourir les pages existantes
-            for (int pageIdx = 0; pageIdx < pageCount; pageIdx++) {
-                if (!bitmap.get(pageIdx)) {   // false -> page libre
-                    bitmap.set(pageIdx);      // devient utilisée (1)
-                    
-                    // Synchroniser avec le fichier
-                    writeBitmapToFile(f, bitmap);
-                    
-                    return new PageId(fileIdx, pageIdx);
-                }
+        // 2) Aucune page libre : agrandir le premier fichier non plein
+        while (growFileIdx < maxFiles) {
+            if (pageCounts[growFileIdx] < MAX_PAGES_PER_FILE) {
+                growFile(growFileIdx);
+                return takeFreePage(growFileIdx);
             }
+            growFileIdx++; // Fichier plein, essayer le suivant
         }
-        
-        // 2) Aucune page libre : rajouter une nouvelle page
-        for (int fileIdx = 0; fileIdx < maxFiles; fileIdx++) {
-            File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
-            
-            if (!f.exists()) {
-                createNewFileWithBitmap(f);
-            }
 
-            long length = f.length();
-            int pageIdx = (int) ((length - BITMAP_SIZE_BYTES) / pageSize);
+        throw new IOException("Limite de fichiers atteinte (" + maxFiles + ")");
+    }
 
-            // Vérifier qu'on ne dépasse pas la limite
-            if (pageIdx >= MAX_PAGES_PER_FILE) {
-                continue; // Fichier plein, essayer le suivant
+    /**
+     * Alloue une page en privilégiant la contiguïté avec la page near
+     * (par exemple la dernière page de données d'une relation).
+     *
+     * 1) Une page libre du même extent que near.
+     * 2) Sinon, la première page d'un extent entièrement libre : les pages suivantes
+     *    de cet extent resteront disponibles pour near.
+     * 3) Sinon, la page libre la plus proche de near dans son groupe.
+     * 4) Sinon, n'importe quelle page libre, et seulement s'il n'y en a aucune,
+     *    un nouvel extent préalloué (allocPage()) : les pages désallouées sont réutilisées
+     *    avant que le fichier ne grandisse.
+     *
+     * @param near page voisine souhaitée (peut être null)
+     * @return PageId identifiant unique de la page allouée
+     * @throws IOException si la limite maximale de fichiers est atteinte
+     */
+    @Override
+    public synchronized PageId allocPage(PageId near) throws IOException {
+        boolean nearExists = near != null && near.getFileIdx() >= 0 && near.getFileIdx() < pageCounts.length
+                && near.getPageIdx() >= 0 && near.getPageIdx() < pageCounts[near.getFileIdx()];
+        if (nearExists) {
+            int fileIdx = near.getFileIdx();
+            int start = near.getPageIdx() / extentPages * extentPages;
+            int end = Math.min(start + extentPages, pageCounts[fileIdx]);
+            ensureGroupLoaded(fileIdx, start / GROUP_PAGES);
+            int pageIdx = usedPages[fileIdx].nextClearBit(start);
+            if (pageIdx < end) {
+                return takePage(fileIdx, pageIdx);
             }
+        }
 
-            try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
-                // Écrit une page vide à la fin
-                raf.seek(raf.length());
-                raf.write(new byte[pageSize]);
-
-                BitSet bitmap = getOrCreateBitmap(fileIdx);
-                bitmap.set(pageIdx); // nouvelle page = utilisée
-
-                // Synchroniser avec le fichier
-                writeBitmapToFile(f, bitmap);
+        // Extent entièrement libre déjà présent dans un fichier
+        int fileIdx = filesWithEmptyExtent.nextSetBit(0);
+        if (fileIdx >= 0) {
+            return takePage(fileIdx, emptyExtents[fileIdx].nextSetBit(0) * extentPages);
+        }
 
-                return new PageId(fileIdx, pageIdx);
+        // Page libre la plus proche de near dans son groupe (groupe déjà chargé)
+        if (nearExists) {
+            fileIdx = near.getFileIdx();
+            int group = near.getPageIdx() / GROUP_PAGES;
+            if (groupFree[fileIdx][group] > 0) {
+                int groupStart = group * GROUP_PAGES;
+                int groupEnd = Math.min(groupStart + GROUP_PAGES, pageCounts[fileIdx]);
+                int after = usedPages[fileIdx].nextClearBit(near.getPageIdx());
+                int before = usedPages[fileIdx].previousClearBit(near.getPageIdx());
+                if (after < groupEnd && (before < groupStart || after - near.getPageIdx() <= near.getPageIdx() - before)) {
+                    return takePage(fileIdx, after);
+                }
+                if (before >= groupStart) {
+                    return takePage(fileIdx, before);
+                }
             }
         }
-        
-        throw new IOException("Limite de fichiers atteinte (" + maxFiles + ")");
+
+        return allocPage();
     }
 
     /**
      * Désalloue une page en la marquant libre dans la bitmap (bit = 0).
      * La page pourra être réutilisée lors du prochain appel à allocPage().
      * Vérifie que la page existe avant de la désallouer.
-     * 
+     *
      * @param pageId identifiant de la page à désallouer
      * @throws IOException si la page n'existe pas ou si le fichier est inaccessible
      */
-    public void DeallocPage(PageId pageId) throws IOException {
-        File f = getFile(pageId);
+    @Override
+    public synchronized void DeallocPage(PageId pageId) throws IOException {
         // Vérifie que la page existe
-        getOffset(pageId, f);
+        checkPageExists(pageId);
 
-        BitSet bitmap = getOrCreateBitmap(pageId.getFileIdx());
-        bitmap.clear(pageId.getPageIdx()); // 0 -> libre
+        int fileIdx = pageId.getFileIdx();
+        int pageIdx = pageId.getPageIdx();
+        int group = pageIdx / GROUP_PAGES;
+        ensureGroupLoaded(fileIdx, group);
+        BitSet bitmap = usedPages[fileIdx];
+
+        if (bitmap.get(pageIdx)) {
+            bitmap.clear(pageIdx); // 0 -> libre
+            freeCounts[fileIdx]++;
+            freeHints[fileIdx] = Math.min(freeHints[fileIdx], pageIdx);
+            filesWithFree.set(fileIdx);
+            groupFree[fileIdx][group]++;
+            groupsWithFree[fileIdx].set(group);
+            dirtyGroups[fileIdx].set(group);
+            dirtyHeaders.set(fileIdx);
+
+            int extent = pageIdx / extentPages;
+            if (--extentUsed[fileIdx][extent] == 0) {
+                emptyExtents[fileIdx].set(extent);
+                filesWithEmptyExtent.set(fileIdx);
+            }
+        }
+    }
 
-        // Synchroniser avec le fichier
-        writeBitmapToFile(f, bitmap);
+    /**
+     * Nombre de pages de données du fichier, lu sans verrou dans l'index en mémoire.
+     */
+    @Override
+    public int getPageCount(int fileIdx) {
+        if (fileIdx < 0 || fileIdx >= pageCounts.length) {
+            return 0;
+        }
+        return Math.max(0, pageCounts[fileIdx]);
     }
 
     /**
      * Lit le contenu d'une page et le copie dans le buffer fourni.
      * Le buffer doit avoir exactement la taille d'une page.
-     * 
+     *
      * @param pageId identifiant de la page à lire
      * @param buff buffer de destination (doit faire config.getPageSize() octets)
      * @throws IOException si la page n'existe pas, le fichier est inaccessible,
      *                     ou si la taille du buffer est incorrecte
      */
+    @Override
     public void ReadPage(PageId pageId, byte[] buff) throws IOException {
 
         if (buff.length != config.getPageSize()) {
-            throw new IOException("Taille du buffer (" + buff.length + 
+            throw new IOException("Taille du buffer (" + buff.length +
                 ") différente de la taille d'une page (" + config.getPageSize() + ")");
         }
 
-        File f = getFile(pageId);
-
-        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
-            long offset = getOffset(pageId, f);
-            raf.seek(offset);
-            raf.readFully(buff);
-        }
+        checkPageExists(pageId);
+        transfer(false, pageId, 1, new ByteBuffer[] { ByteBuffer.wrap(buff) });
     }
 
     /**
      * Écrit le contenu du buffer dans la page spécifiée.
      * Le buffer doit avoir exactement la taille d'une page.
-     * 
+     *
      * @param pageId identifiant de la page où écrire
      * @param buff buffer contenant les données à écrire (doit faire config.getPageSize() octets)
      * @throws IOException si la page n'existe pas, le fichier est inaccessible,
      *                     ou si la taille du buffer est incorrecte
      */
+    @Override
     public void WritePage(PageId pageId, byte[] buff) throws IOException {
 
         if (buff.length != config.getPageSize()) {
-            throw new IOException("Taille du buffer (" + buff.length + 
+            throw new IOException("Taille du buffer (" + buff.length +
                 ") différente de la taille d'une page (" + config.getPageSize() + ")");
         }
 
-        File f = getFile(pageId);
+        checkPageExists(pageId);
+        transfer(true, pageId, 1, new ByteBuffer[] { ByteBuffer.wrap(buff) });
+    }
+
+    /**
+     * Lit count pages consécutives d'un même fichier, à partir de first,
+     * dans les buffers dests[0..count-1] (un buffer par page, chacun avec exactement
+     * config.getPageSize() octets restants ; leur position est avancée).
+     * En mode CHANNEL, chaque suite de pages contiguës sur disque est lue par
+     * un seul appel de lecture dispersée (scattering read) au lieu d'un appel par page.
+     *
+     * @param first première page à lire
+     * @param count nombre de pages à lire
+     * @param dests buffers de destination
+     * @throws IOException si une des pages n'existe pas ou si un buffer n'a pas la bonne taille
+     */
+    @Override
+    public void ReadPages(PageId first, int count, ByteBuffer[] dests) throws IOException {
+        checkRun(first, count, dests);
+        transfer(false, first, count, dests);
+    }
+
+    /**
+     * Écrit count pages consécutives d'un même fichier, à partir de first,
+     * depuis les buffers srcs[0..count-1] (un buffer par page, chacun avec exactement
+     * config.getPageSize() octets restants ; leur position est avancée).
+     * En mode CHANNEL, chaque suite de pages contiguës sur disque est écrite par
+     * un seul appel d'écriture regroupée (gathering write).
+     *
+     * @param first première page à écrire
+     * @param count nombre de pages à écrire
+     * @param srcs buffers contenant les données
+     * @throws IOException si une des pages n'existe pas ou si un buffer n'a pas la bonne taille
+     */
+    @Override
+    public void WritePages(PageId first, int count, ByteBuffer[] srcs) throws IOException {
+        checkRun(first, count, srcs);
+        transfer(true, first, count, srcs);
+    }
+
+    /**
+     * Lecture asynchrone d'une page : la lecture est faite par un thread d'entrée/sortie
+     * du DiskManager et le thread appelant peut continuer son traitement.
+     * Le buffer ne doit pas être utilisé avant la fin du futur.
+     *
+     * @param pageId identifiant de la page à lire
+     * @param dest buffer de destination (config.getPageSize() octets restants)
+     * @return un futur terminé quand la page est lue (ou en erreur avec une IOException)
+     */
+    @Override
+    public CompletableFuture<Void> readPageAsync(PageId pageId, ByteBuffer dest) {
+        return readPagesAsync(pageId, 1, new ByteBuffer[] { dest });
+    }
+
+    /**
+     * Écriture asynchrone d'une page (voir readPageAsync).
+     * force() et finish() attendent la fin de toutes les écritures en cours.
+     *
+     * @param pageId identifiant de la page à écrire
+     * @param src buffer contenant les données (config.getPageSize() octets restants)
+     * @return un futur terminé quand la page est écrite (ou en erreur avec une IOException)
+     */
+    @Override
+    public CompletableFuture<Void> writePageAsync(PageId pageId, ByteBuffer src) {
+        return writePagesAsync(pageId, 1, new ByteBuffer[] { src });
+    }
+
+    /**
+     * Version asynchrone de ReadPages.
+     */
+    @Override
+    public CompletableFuture<Void> readPagesAsync(PageId first, int count, ByteBuffer[] dests) {
+        return submitTransfer(false, first, count, dests);
+    }
+
+    /**
+     * Version asynchrone de WritePages.
+     */
+    @Override
+    public CompletableFuture<Void> writePagesAsync(PageId first, int count, ByteBuffer[] srcs) {
+        return submitTransfer(true, first, count, srcs);
+    }
+
+    /**
+     * Vérifie la demande dans le thread appelant (les index en mémoire ne sont lus
+     * que par lui), puis confie le transfert au pool de threads d'entrée/sortie.
+     */
+    private CompletableFuture<Void> submitTransfer(boolean write, PageId first, int count, ByteBuffer[] buffs) {
+        try {
+            checkRun(first, count, buffs);
+            if (config.getIOMode() == IOMode.CHANNEL) {
+                getChannel(first.getFileIdx()); // fichier ouvert avant le transfert
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
-            long offset = getOffset(pageId, f);
-            raf.seek(offset);
-            raf.write(buff);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (write) {
+            pendingWrites.add(future);
+            future.whenComplete((v, e) -> pendingWrites.remove(future));
         }
+
+        getIOExecutor().execute(() -> {
+            try {
+                transfer(write, first, count, buffs);
+                future.complete(null);
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
     }
 
     /**
-     * Finalise le DiskManager à l'arrêt du SGBD.
-     * Synchronise toutes les bitmaps en mémoire vers les fichiers.
-     * 
-     * @throws IOException si impossible d'écrire les bitmaps
+     * Transfert d'une suite de pages déjà vérifiée (checkRun), synchrone ou asynchrone.
+     * Un canal fermé pendant le transfert (évincé du cache par un autre thread) est rouvert
+     * et le transfert recommencé, au plus MAX_IO_ATTEMPTS fois.
      */
-    public void finish() throws IOException {
-        int maxFiles = config.getMaxFileCount();
+    private void transfer(boolean write, PageId first, int count, ByteBuffer[] buffs) throws IOException {
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = buffs[i].position();
+        }
 
-        // Sauvegarder toutes les bitmaps dans les fichiers
-        for (int fileIdx = 0; fileIdx < maxFiles; fileIdx++) {
-            if (usedPages[fileIdx] != null) {
-                File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
-                if (f.exists()) {
-                    writeBitmapToFile(f, usedPages[fileIdx]);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transferPages(write, first, count, buffs);
+                return;
+            } catch (ClosedChannelException e) {
+                if (attempt == MAX_IO_ATTEMPTS) {
+                    throw e;
+                }
+                for (int i = 0; i < count; i++) {
+                    buffs[i].position(positions[i]);
                 }
             }
         }
     }
 
     /**
-     * Initialise le DiskManager au démarrage du SGBD.
-     * Crée le répertoire de données s'il n'existe pas et charge les bitmaps.
-     * 
-     * @throws IOException si erreur lors de la lecture des fichiers
+     * Transfert effectif d'une suite de pages déjà vérifiée (checkRun).
+     * À l'écriture, la somme de contrôle de chaque page est écrite derrière elle ;
+     * à la lecture, elle est relue et vérifiée selon le mode (verifyChecksum).
+     * En mode CHANNEL, une page seule est lue/écrite avec sa somme par un appel positionnel ;
+     * une suite utilise la position du canal, qui est réservée pendant l'appel.
      */
-    public void Init() throws IOException {
-        // Créer le répertoire de données s'il n'existe pas
-        File dbDir = new File(config.getPath());
-        if (!dbDir.exists()) {
-            if (!dbDir.mkdirs()) {
-                throw new IOException("Impossible de créer le répertoire de données : " + config.getPath());
+    private void transferPages(boolean write, PageId first, int count, ByteBuffer[] buffs) throws IOException {
+        int fileIdx = first.getFileIdx();
+        int pageIdx = first.getPageIdx();
+        int pageSize = config.getPageSize();
+
+        int[] starts = new int[count];
+        int[] checksums = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = buffs[i].position();
+            if (write) {
+                checksums[i] = checksum(buffs[i], starts[i]);
+                corruptPages.remove(new PageId(fileIdx, pageIdx + i));
+            }
+        }
+
+        if (packedFiles[fileIdx] != null) {
+            transferCompressedPages(write, first, count, buffs, starts, checksums);
+            return;
+        }
+
+        if (config.getIOMode() == IOMode.MMAP) {
+            for (int i = 0; i < count; i++) {
+                PageId pageId = new PageId(fileIdx, pageIdx + i);
+                MappedByteBuffer segment = getSegment(pageId);
+                int offset = getSegmentOffset(pageId);
+                if (write) {
+                    segment.put(offset, buffs[i], starts[i], pageSize);
+                    segment.putInt(offset + pageSize, checksums[i]);
+                    buffs[i].position(buffs[i].limit());
+                } else {
+                    buffs[i].put(segment.slice(offset, pageSize));
+                    verifyChecksum(pageId, buffs[i], starts[i], segment.getInt(offset + pageSize));
+                }
+            }
+            return;
+        }
+
+        FileChannel channel = getChannel(fileIdx);
+        if (count == 1) {
+            ByteBuffer slot = ByteBuffer.allocate(slotSizes[fileIdx]);
+            if (write) {
+                slot.put(buffs[0]).putInt(checksums[0]).flip();
+                writeFully(channel, slot, getDataOffset(fileIdx, pageIdx));
+            } else {
+                readFully(channel, slot, getDataOffset(fileIdx, pageIdx));
+                int stored = slot.getInt(pageSize);
+                buffs[0].put(slot.flip().limit(pageSize));
+                verifyChecksum(first, buffs[0], starts[0], stored);
+            }
+            return;
+        }
+
+        // Contenu des pages et sommes de contrôle alternés : un seul appel par suite
+        ByteBuffer[] slots = new ByteBuffer[2 * count];
+        ByteBuffer[] trailers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            trailers[i] = ByteBuffer.allocate(CHECKSUM_SIZE);
+            if (write) {
+                trailers[i].putInt(0, checksums[i]);
+            }
+            slots[2 * i] = buffs[i];
+            slots[2 * i + 1] = trailers[i];
+        }
+
+        synchronized (channel) {
+            int done = 0;
+            while (done < count) {
+                // Une suite ne traverse pas la page de bitmap du groupe suivant
+                int run = Math.min(count - done, GROUP_PAGES - (pageIdx + done) % GROUP_PAGES);
+                channel.position(getDataOffset(fileIdx, pageIdx + done));
+                long remaining = (long) run * slotSizes[fileIdx];
+                while (remaining > 0) {
+                    long n = write ? channel.write(slots, 2 * done, 2 * run) : channel.read(slots, 2 * done, 2 * run);
+                    if (n < 0) {
+                        throw new IOException("Fin de fichier inattendue dans le fichier Data" + fileIdx + ".bin");
+                    }
+                    remaining -= n;
+                }
+                done += run;
+            }
+        }
+
+        if (!write) {
+            for (int i = 0; i < count; i++) {
+                verifyChecksum(new PageId(fileIdx, pageIdx + i), buffs[i], starts[i], trailers[i].getInt(0));
             }
         }
-        LoadState();
     }
 
     /**
-     * Charge l'état des pages depuis les bitmaps stockées dans les fichiers Data.bin.
+     * Transfert d'une suite de pages d'un fichier compressé, page par page :
+     * chaque page est un enregistrement du tas du fichier (writeRecord / readRecord).
+     * Une page jamais écrite est lue vide, avec une somme nulle (vérifiée par verifyChecksum).
      */
-    private void LoadState() throws IOException {
-        int maxFiles = config.getMaxFileCount();
+    private void transferCompressedPages(boolean write, PageId first, int count, ByteBuffer[] buffs,
+            int[] starts, int[] checksums) throws IOException {
+        int fileIdx = first.getFileIdx();
+        byte[] page = new byte[config.getPageSize()];
 
-        // Charger les bitmaps DEPUIS les fichiers
-        for (int fileIdx = 0; fileIdx < maxFiles; fileIdx++) {
-            File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
-            
-            if (!f.exists()) {
-                usedPages[fileIdx] = new BitSet();
+        for (int i = 0; i < count; i++) {
+            PageId pageId = new PageId(fileIdx, first.getPageIdx() + i);
+            if (write) {
+                buffs[i].get(page);
+                writeRecord(fileIdx, pageId.getPageIdx(), page, checksums[i]);
                 continue;
             }
 
-            // Lire la bitmap depuis le fichier
-            BitSet bitmap = readBitmapFromFile(f);
-            usedPages[fileIdx] = bitmap;
+            ByteBuffer record = readRecord(fileIdx, pageId.getPageIdx());
+            int stored = 0;
+            Arrays.fill(page, (byte) 0);
+            if (record != null) {
+                try {
+                    stored = packedFiles[fileIdx].decode(record, pageId.getPageIdx(), page);
+                } catch (IOException e) {
+                    corruptPages.add(pageId);
+                    throw corruptPageException(pageId);
+                }
+            }
+            buffs[i].put(page);
+            verifyChecksum(pageId, buffs[i], starts[i], stored);
+        }
+    }
+
+    /**
+     * Lit l'enregistrement de key (page, ou bitmap : PackedFile.bitmapKey) d'un fichier compressé.
+     *
+     * @return l'enregistrement, ou null si key n'a jamais été écrite
+     */
+    private ByteBuffer readRecord(int fileIdx, int key) throws IOException {
+        PackedFile packed = packedFiles[fileIdx];
+        synchronized (packed) {
+            int start = packed.startOf(key);
+            if (start < 0) {
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(packed.sectorsOf(key) * PackedFile.SECTOR_SIZE);
+            readFully(fileIdx, record, packed.position(start));
+            return record;
         }
     }
 
     /**
-     * Crée un nouveau fichier Data.bin avec une bitmap vide au début.
+     * Écrit l'enregistrement de key d'un fichier compressé : à la place de l'ancien s'il y tient,
+     * sinon dans des secteurs libres, puis l'en-tête de l'ancien est effacé (voir PackedFile).
+     * Sous le verrou du PackedFile, qui ne prend jamais celui du DiskManager.
      */
-    private void createNewFileWithBitmap(File f) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
-            // Écrire bitmap vide (tous bits à 0 = toutes pages libres)
-            byte[] emptyBitmap = new byte[BITMAP_SIZE_BYTES];
-            raf.write(emptyBitmap);
+    private void writeRecord(int fileIdx, int key, byte[] page, int checksum) throws IOException {
+        PackedFile packed = packedFiles[fileIdx];
+        synchronized (packed) {
+            ByteBuffer record = packed.encode(key, page, checksum);
+            int sectors = record.remaining() / PackedFile.SECTOR_SIZE;
+            int oldStart = packed.startOf(key);
+            boolean inPlace = oldStart >= 0 && packed.sectorsOf(key) >= sectors;
+            int start = inPlace ? oldStart : packed.allocate(sectors);
+
+            writeFully(fileIdx, record, packed.position(start));
+            if (oldStart >= 0 && !inPlace) {
+                writeFully(fileIdx, ByteBuffer.allocate(4), packed.position(oldStart));
+            }
+            packed.put(key, start, sectors);
         }
     }
 
     /**
-     * Lit la bitmap depuis le début d'un fichier Data.bin et la convertit en BitSet.
+     * Écrit en une fois, à la suite dans le tas d'un fichier compressé, les enregistrements
+     * des pages vides [from, to) et, si newGroup, de la bitmap vide de leur groupe.
      */
-    private BitSet readBitmapFromFile(File f) throws IOException {
-        BitSet bitmap = new BitSet();
-        
-        if (!f.exists() || f.length() < BITMAP_SIZE_BYTES) {
-            return bitmap;
+    private void writeBlankRecords(int fileIdx, int from, int to, boolean newGroup) throws IOException {
+        PackedFile packed = packedFiles[fileIdx];
+        byte[] blank = new byte[config.getPageSize()];
+        int count = to - from + (newGroup ? 1 : 0);
+
+        synchronized (packed) {
+            int[] keys = new int[count];
+            ByteBuffer[] records = new ByteBuffer[count];
+            int sectors = 0;
+            for (int i = 0; i < count; i++) {
+                keys[i] = newGroup ? (i == 0 ? PackedFile.bitmapKey(from / GROUP_PAGES) : from + i - 1) : from + i;
+                records[i] = packed.encode(keys[i], blank, blankChecksum);
+                sectors += records[i].remaining() / PackedFile.SECTOR_SIZE;
+            }
+
+            int start = packed.allocate(sectors);
+            ByteBuffer all = ByteBuffer.allocate(sectors * PackedFile.SECTOR_SIZE);
+            for (ByteBuffer record : records) {
+                all.put(record);
+            }
+            writeFully(fileIdx, all.flip(), packed.position(start));
+
+            for (int i = 0; i < count; i++) {
+                int recordSectors = records[i].limit() / PackedFile.SECTOR_SIZE;
+                packed.put(keys[i], start, recordSectors);
+                start += recordSectors;
+            }
         }
-        
-        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
-            raf.seek(0); // Début du fichier = bitmap
-            
-            byte[] bitmapBytes = new byte[BITMAP_SIZE_BYTES];
-            raf.readFully(bitmapBytes);
-            
-            // Convertir bytes en BitSet
-            for (int i = 0; i < bitmapBytes.length; i++) {
-                byte b = bitmapBytes[i];
-                for (int bit = 0; bit < 8; bit++) {
-                    if ((b & (1 << bit)) != 0) {
-                        bitmap.set(i * 8 + bit);
-                    }
-                }
+    }
+
+    /**
+     * Reconstruit la table des emplacements d'un fichier compressé en parcourant son tas
+     * par lots de SCAN_CHUNK_SECTORS secteurs, puis efface l'en-tête des enregistrements
+     * écartés (remplacés par une génération plus récente avant un arrêt brutal).
+     */
+    private void loadPackedFile(int fileIdx) throws IOException {
+        PackedFile packed = packedFiles[fileIdx];
+        long heapSize = getChannel(fileIdx).size() - config.getPageSize();
+        ByteBuffer chunk = ByteBuffer.allocate(SCAN_CHUNK_SECTORS * PackedFile.SECTOR_SIZE);
+
+        for (int sector = 0; (long) sector * PackedFile.SECTOR_SIZE < heapSize; ) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), heapSize - (long) sector * PackedFile.SECTOR_SIZE));
+            readFully(fileIdx, chunk, packed.position(sector));
+            chunk.flip();
+            sector = packed.scan(chunk, sector, heapSize);
+        }
+        for (int sector : packed.staleSectors()) {
+            writeFully(fileIdx, ByteBuffer.allocate(4), packed.position(sector));
+        }
+    }
+
+    /**
+     * Décode le contenu d'un emplacement de page compressée de l'ancien format 4
+     * (longueur stockée length), pour upgradeFile.
+     *
+     * @throws IOException si l'emplacement est invalide
+     */
+    private void decodeSlot(byte[] slots, int base, int length, byte[] page) throws IOException {
+        int pageSize = config.getPageSize();
+        if (length == 0) {
+            return; // page jamais écrite : zéros
+        }
+        if (length < 0) {
+            if (length != -pageSize) {
+                throw new IOException("Longueur de page stockée invalide : " + length);
+            }
+            System.arraycopy(slots, base + COMPRESSED_HEADER_SIZE, page, 0, pageSize);
+            return;
+        }
+        if (length >= pageSize) {
+            throw new IOException("Longueur de page compressée invalide : " + length);
+        }
+        PageCompressor.decompress(slots, base + COMPRESSED_HEADER_SIZE, length, page, 0, pageSize);
+    }
+
+    /**
+     * Somme de contrôle CRC32C des pageSize octets de buff à partir de start
+     * (sans modifier la position du buffer). Jamais nulle.
+     */
+    private int checksum(ByteBuffer buff, int start) {
+        CRC32C crc = new CRC32C();
+        crc.update(buff.duplicate().limit(start + config.getPageSize()).position(start));
+        int value = (int) crc.getValue();
+        return value == 0 ? 1 : value;
+    }
+
+    /**
+     * Vérifie la somme de contrôle d'une page lue, selon config.getChecksumMode() :
+     * ALWAYS à chaque lecture, SAMPLED une lecture sur config.getChecksumSample(),
+     * SCRUB jamais (la vérification en tâche de fond s'en charge).
+     * Une page déjà signalée corrompue est refusée dans tous les modes.
+     *
+     * @throws IOException si la somme de contrôle ne correspond pas au contenu
+     */
+    private void verifyChecksum(PageId pageId, ByteBuffer buff, int start, int stored) throws IOException {
+        if (!corruptPages.isEmpty() && corruptPages.contains(pageId)) {
+            throw corruptPageException(pageId);
+        }
+        if (stored == 0) {
+            if (!isPageUsed(pageId)) {
+                return; // page libre jamais écrite
             }
+            // Une page utilisée a toujours une somme : la sienne a été effacée
+            corruptPages.add(pageId);
+            throw corruptPageException(pageId);
+        }
+
+        switch (config.getChecksumMode()) {
+            case SCRUB:
+                return;
+            case SAMPLED:
+                if (readCount.incrementAndGet() % Math.max(1, config.getChecksumSample()) != 0) {
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (checksum(buff, start) != stored) {
+            corruptPages.add(pageId);
+            throw corruptPageException(pageId);
+        }
+    }
+
+    /**
+     * Indique si la page est utilisée d'après la bitmap (chargée si nécessaire).
+     */
+    private synchronized boolean isPageUsed(PageId pageId) throws IOException {
+        int fileIdx = pageId.getFileIdx();
+        int pageIdx = pageId.getPageIdx();
+        if (pageIdx >= pageCounts[fileIdx]) {
+            return false;
         }
-        
-        return bitmap;
+        ensureGroupLoaded(fileIdx, pageIdx / GROUP_PAGES);
+        return usedPages[fileIdx].get(pageIdx);
+    }
+
+    private static IOException corruptPageException(PageId pageId) {
+        return new IOException("Somme de contrôle invalide pour la page " + pageId.getPageIdx() +
+                " du fichier Data" + pageId.getFileIdx() + ".bin");
     }
 
     /**
-     * Écrit un BitSet dans le fichier Data.bin sous forme de bitmap.
+     * Vérifie les sommes de contrôle de toutes les pages de données utilisées,
+     * par lots d'au plus SCRUB_CHUNK_PAGES pages d'un même groupe. Une page fausse est relue une fois
+     * (elle pouvait être en cours d'écriture) avant d'être signalée corrompue.
+     * Chaque fichier est vérifié d'après un instantané de son index (taille, format, bitmap,
+     * segments projetés) pris sous le verrou : les pages ajoutées ou allouées ensuite
+     * le seront au passage suivant.
+     * Appelée périodiquement en mode SCRUB, ou directement.
+     *
+     * @return le nombre de pages corrompues trouvées pendant ce passage
+     * @throws IOException si la lecture d'un fichier échoue
      */
-    private void writeBitmapToFile(File f, BitSet bitmap) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
-            raf.seek(0); // Début du fichier
-            
-            byte[] bitmapBytes = new byte[BITMAP_SIZE_BYTES];
-            
-            // Convertir BitSet en bytes
-            for (int i = 0; i < MAX_PAGES_PER_FILE; i++) {
-                if (bitmap.get(i)) {
-                    int byteIndex = i / 8;
-                    int bitIndex = i % 8;
-                    bitmapBytes[byteIndex] |= (1 << bitIndex);
+    public int scrub() throws IOException {
+        int found = 0;
+
+        for (int fileIdx = 0; fileIdx < config.getMaxFileCount(); fileIdx++) {
+            int pageCount;
+            int slotSize;
+            boolean isCompressed;
+            BitSet used;
+            MappedByteBuffer[] segments;
+            synchronized (this) {
+                pageCount = pageCounts[fileIdx];
+                if (pageCount <= 0) {
+                    continue;
+                }
+                for (int g = 0; g * GROUP_PAGES < pageCount; g++) {
+                    ensureGroupLoaded(fileIdx, g);
+                }
+                slotSize = slotSizes[fileIdx];
+                isCompressed = packedFiles[fileIdx] != null;
+                used = usedPages[fileIdx].get(0, pageCount);
+                segments = mappings[fileIdx] == null ? null : mappings[fileIdx].clone();
+            }
+
+            if (isCompressed) {
+                // Fichier compressé : chaque page utilisée est lue et vérifiée sous le verrou de son PackedFile
+                for (int pageIdx = used.nextSetBit(0); pageIdx >= 0; pageIdx = used.nextSetBit(pageIdx + 1)) {
+                    if (scrubber != null && scrubber.isShutdown()) {
+                        return found;
+                    }
+                    if (!isRecordValid(fileIdx, pageIdx)) {
+                        PageId pageId = new PageId(fileIdx, pageIdx);
+                        if (corruptPages.add(pageId)) {
+                            System.err.println("Scrub : " + corruptPageException(pageId).getMessage());
+                        }
+                        found++;
+                    }
+                }
+                continue;
+            }
+
+            int count;
+            for (int start = used.nextSetBit(0); start >= 0; start = used.nextSetBit(start + count)) {
+                if (scrubber != null && scrubber.isShutdown()) {
+                    return found; // arrêt demandé par finish()
+                }
+                // Un lot s'arrête à la fin de son groupe : il ne contient jamais la page de bitmap suivante
+                count = Math.min(Math.min(SCRUB_CHUNK_PAGES, pageCount - start), GROUP_PAGES - start % GROUP_PAGES);
+                ByteBuffer chunk = readSlots(fileIdx, start, count, slotSize, segments);
+
+                for (int i = 0; i < count; i++) {
+                    if (!used.get(start + i) || isSlotValid(chunk, i * slotSize)) {
+                        continue;
+                    }
+                    if (!isSlotValid(readSlots(fileIdx, start + i, 1, slotSize, segments), 0)) {
+                        PageId pageId = new PageId(fileIdx, start + i);
+                        if (corruptPages.add(pageId)) {
+                            System.err.println("Scrub : " + corruptPageException(pageId).getMessage());
+                        }
+                        found++;
+                    }
                 }
             }
-            
-            raf.write(bitmapBytes);
         }
+        return found;
     }
 
     /**
-     * Retourne l'objet File correspondant au PageId fourni.
-     * Vérifie que le fichier existe sur le disque.
-     * 
-     * @param pageId identifiant de la page
-     * @return objet File correspondant au fichier contenant cette page
-     * @throws IOException si le fichier n'existe pas
+     * Vérifie l'emplacement d'une page utilisée lu par readSlots (à partir de base).
+     * Un emplacement jamais écrit (somme nulle) est invalide.
+     */
+    private boolean isSlotValid(ByteBuffer slots, int base) {
+        return checksum(slots, base) == slots.getInt(base + config.getPageSize());
+    }
+
+    /**
+     * Vérifie l'enregistrement d'une page utilisée d'un fichier compressé.
+     * Une page sans enregistrement est invalide.
      */
-    private File getFile(PageId pageId) throws IOException {
-        File f = new File(config.getPath(), "Data" + pageId.getFileIdx() + ".bin");
-        
-        if (!f.exists()) {
-            throw new IOException("Fichier inexistant : " + f.getAbsolutePath());
+    private boolean isRecordValid(int fileIdx, int pageIdx) throws IOException {
+        ByteBuffer record = readRecord(fileIdx, pageIdx);
+        if (record == null) {
+            return false;
+        }
+        byte[] page = new byte[config.getPageSize()];
+        try {
+            int stored = packedFiles[fileIdx].decode(record, pageIdx, page);
+            return checksum(ByteBuffer.wrap(page), 0) == stored;
+        } catch (IOException e) {
+            return false;
         }
-        
-        return f;
     }
 
     /**
-     * Calcule l'offset (position en octets) d'une page dans son fichier.
-     * Prend en compte la bitmap au début du fichier.
-     * Vérifie que la page existe réellement dans le fichier.
-     * 
-     * @param pageId identifiant de la page
-     * @param f fichier contenant la page
-     * @return position en octets du début de la page dans le fichier
-     * @throws IOException si la page dépasse la taille actuelle du fichier
+     * Retourne les pages actuellement signalées corrompues.
      */
-    private long getOffset(PageId pageId, File f) throws IOException {
-        long offset = BITMAP_SIZE_BYTES + 
-                     (long) pageId.getPageIdx() * config.getPageSize();
+    public Set<PageId> getCorruptPages() {
+        return Set.copyOf(corruptPages);
+    }
 
-        if (offset + config.getPageSize() > f.length()) {
-            throw new IOException("Page " + pageId.getPageIdx() + 
-                    " inexistante dans le fichier " + f.getName());
+    /**
+     * Lit count emplacements de pages consécutifs (contenu + somme) d'un même groupe :
+     * scrub() découpe ses lots aux limites des groupes, un lot ne traverse jamais une page de bitmap.
+     * slotSize et segments viennent de l'instantané pris par scrub().
+     */
+    private ByteBuffer readSlots(int fileIdx, int pageIdx, int count, int slotSize,
+            MappedByteBuffer[] segments) throws IOException {
+        ByteBuffer slots = ByteBuffer.allocate(count * slotSize);
+        if (config.getIOMode() == IOMode.MMAP) {
+            int offset = (pageIdx % MMAP_SEGMENT_PAGES) * slotSize;
+            slots.put(segments[pageIdx / MMAP_SEGMENT_PAGES].slice(offset, count * slotSize));
+        } else {
+            readFully(fileIdx, slots, getDataOffset(fileIdx, pageIdx));
         }
-        
-        return offset;
+        return slots;
     }
 
     /**
-     * Récupère (ou crée) la bitmap d'un fichier donné.
+     * Démarre la vérification périodique (toutes les config.getScrubInterval() secondes)
+     * dans un thread de fond.
      */
-    private BitSet getOrCreateBitmap(int fileIdx) {
-        BitSet bitmap = usedPages[fileIdx];
-        if (bitmap == null) {
-            bitmap = new BitSet();
-            usedPages[fileIdx] = bitmap;
+    private void startScrubber() {
+        scrubber = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bdda-scrub");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, config.getScrubInterval());
+        scrubber.scheduleWithFixedDelay(() -> {
+            try {
+                scrub();
+            } catch (IOException e) {
+                // canal fermé ou fichier en cours de création : le passage suivant reprendra
+            } catch (RuntimeException e) {
+                // Signalée et arrêtée ici : une exception qui sortait de la tâche annulait
+                // silencieusement toutes les vérifications suivantes
+                System.err.println("Scrub : passage interrompu (" + e + ")");
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Pool de threads d'entrée/sortie (créé au premier appel asynchrone).
+     */
+    private synchronized ExecutorService getIOExecutor() {
+        if (ioExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ioExecutor = Executors.newFixedThreadPool(Math.max(1, config.getIOThreads()), r -> {
+                Thread t = new Thread(r, "bdda-io-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return ioExecutor;
+    }
+
+    /**
+     * Attend la fin de toutes les écritures asynchrones en cours.
+     *
+     * @throws IOException si une de ces écritures a échoué
+     */
+    private void awaitPendingWrites() throws IOException {
+        for (CompletableFuture<Void> future : pendingWrites) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Écriture asynchrone échouée", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Vérifie une suite de pages pour ReadPages / WritePages :
+     * toutes les pages existent et chaque buffer a la taille d'une page.
+     */
+    private void checkRun(PageId first, int count, ByteBuffer[] buffs) throws IOException {
+        if (count < 1 || buffs.length < count) {
+            throw new IOException("Nombre de pages invalide (" + count + ") pour " + buffs.length + " buffers");
+        }
+        checkPageExists(first);
+        checkPageExists(new PageId(first.getFileIdx(), first.getPageIdx() + count - 1));
+        for (int i = 0; i < count; i++) {
+            if (buffs[i].remaining() != config.getPageSize()) {
+                throw new IOException("Taille du buffer (" + buffs[i].remaining() +
+                    ") différente de la taille d'une page (" + config.getPageSize() + ")");
+            }
+        }
+    }
+
+    /**
+     * Force l'écriture sur le support physique de toutes les pages modifiées :
+     * bitmaps et en-têtes en attente, segments projetés en mode MMAP, et canaux ouverts
+     * (bitmaps, pages en mode CHANNEL).
+     *
+     * @throws IOException si la synchronisation échoue
+     */
+    @Override
+    public void force() throws IOException {
+        awaitPendingWrites();
+        flushBitmaps();
+
+        for (MappedByteBuffer[] fileMappings : mappings) {
+            if (fileMappings == null) {
+                continue;
+            }
+            for (MappedByteBuffer segment : fileMappings) {
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+        }
+        synchronized (channels) {
+            for (FileChannel channel : channels.values()) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Finalise le DiskManager à l'arrêt du SGBD.
+     * Attend les entrées/sorties asynchrones en cours, synchronise toutes les bitmaps en mémoire vers les fichiers,
+     * puis ferme les canaux gardés ouverts.
+     *
+     * @throws IOException si impossible d'écrire les bitmaps
+     */
+    @Override
+    public void finish() throws IOException {
+        // Arrêter la vérification en tâche de fond (sans interruption : elle ferme les canaux)
+        if (scrubber != null) {
+            scrubber.shutdown();
+            try {
+                scrubber.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Terminer les écritures asynchrones, puis arrêter le pool d'entrée/sortie et attendre
+        // les lectures en cours : aucun transfert ne doit rouvrir un canal après closeChannels()
+        awaitPendingWrites();
+        ExecutorService executor;
+        synchronized (this) {
+            executor = ioExecutor;
+            ioExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Sauvegarder toutes les bitmaps modifiées dans les fichiers
+        flushBitmaps();
+
+        closeChannels();
+    }
+
+    /**
+     * Initialise le DiskManager au démarrage du SGBD.
+     * Crée le répertoire de données s'il n'existe pas et charge les en-têtes.
+     *
+     * @throws IOException si erreur lors de la lecture des fichiers
+     */
+    public void Init() throws IOException {
+        // Créer le répertoire de données s'il n'existe pas
+        File dbDir = new File(config.getPath());
+        if (!dbDir.exists()) {
+            if (!dbDir.mkdirs()) {
+                throw new IOException("Impossible de créer le répertoire de données : " + config.getPath());
+            }
+        }
+        LoadState();
+    }
+
+    /**
+     * Charge l'état des fichiers Data.bin depuis leur en-tête (niveau résumé).
+     * Les pages de bitmap ne sont lues qu'au premier besoin (ensureGroupLoaded).
+     */
+    private void LoadState() throws IOException {
+        int maxFiles = config.getMaxFileCount();
+
+        for (int fileIdx = 0; fileIdx < maxFiles; fileIdx++) {
+            File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
+
+            initFileIndex(fileIdx);
+
+            if (!f.exists()) {
+                pageCounts[fileIdx] = -1;
+                continue;
+            }
+
+            upgradeFile(fileIdx, f);
+            int pageCount = readHeader(fileIdx);
+            addPages(fileIdx, pageCount);
+            for (int g = groupsWithFree[fileIdx].nextSetBit(0); g >= 0; g = groupsWithFree[fileIdx].nextSetBit(g + 1)) {
+                if (groupFree[fileIdx][g] == 0) {
+                    groupsWithFree[fileIdx].clear(g);
+                }
+            }
+            if (freeCounts[fileIdx] == 0) {
+                filesWithFree.clear(fileIdx);
+            }
+
+            if (config.getIOMode() == IOMode.MMAP) {
+                // Projeter tous les segments couvrant les pages existantes
+                for (int s = 0; s * MMAP_SEGMENT_PAGES < pageCount; s++) {
+                    mapSegment(fileIdx, s);
+                }
+                addPages(fileIdx, roundUp(pageCount, MMAP_SEGMENT_PAGES));
+            }
+        }
+    }
+
+    /**
+     * Initialise les structures en mémoire d'un fichier (vide).
+     */
+    private void initFileIndex(int fileIdx) {
+        usedPages[fileIdx] = new BitSet();
+        loadedGroups[fileIdx] = new BitSet();
+        groupFree[fileIdx] = new int[MAX_GROUPS];
+        groupsWithFree[fileIdx] = new BitSet();
+        dirtyGroups[fileIdx] = new BitSet();
+        extentUsed[fileIdx] = new int[0];
+        emptyExtents[fileIdx] = new BitSet();
+        pageCounts[fileIdx] = 0;
+        packedFiles[fileIdx] = null;
+        slotSizes[fileIdx] = config.getPageSize() + CHECKSUM_SIZE;
+    }
+
+    /**
+     * Préalloue un extent de pages libres à la fin d'un fichier.
+     * Crée le fichier s'il n'existe pas encore. Si l'extent commence un nouveau groupe,
+     * la page de bitmap de ce groupe est créée en même temps (allocation à la demande).
+     * Mode CHANNEL : la bitmap éventuelle et les pages vides de l'extent, avec leur somme de contrôle,
+     * sont écrites en une fois (fichier compressé : seul le début de chaque emplacement est écrit,
+     * le reste est un trou).
+     * Mode MMAP : les segments couvrant l'extent sont projetés (MMAP_SEGMENT_PAGES pages chacun)
+     * et la somme de contrôle des pages vides y est écrite.
+     * L'en-tête et les bitmaps modifiées sont ensuite écrits (flushBitmaps).
+     */
+    private void growFile(int fileIdx) throws IOException {
+        if (pageCounts[fileIdx] < 0) {
+            createNewFile(fileIdx);
+        }
+
+        int pageCount = pageCounts[fileIdx];
+        // Compléter jusqu'à la fin de l'extent suivant (jamais à cheval sur deux groupes)
+        int target = Math.min(MAX_PAGES_PER_FILE, roundUp(pageCount + 1, extentPages));
+        boolean newGroup = pageCount % GROUP_PAGES == 0;
+        if (!newGroup) {
+            // Le groupe doit être en mémoire avant d'y prendre une page
+            ensureGroupLoaded(fileIdx, pageCount / GROUP_PAGES);
+        }
+
+        if (config.getIOMode() == IOMode.MMAP) {
+            if (newGroup) {
+                writeFully(fileIdx, ByteBuffer.allocate(config.getPageSize()),
+                        getBitmapOffset(fileIdx, pageCount / GROUP_PAGES));
+            }
+            // Projette les nouveaux segments : le fichier grandit de segments entiers de pages libres
+            // (pageCount est toujours un multiple de MMAP_SEGMENT_PAGES dans ce mode)
+            for (int s = pageCount / MMAP_SEGMENT_PAGES; s * MMAP_SEGMENT_PAGES < target; s++) {
+                mapSegment(fileIdx, s);
+            }
+            target = roundUp(target, MMAP_SEGMENT_PAGES);
+            for (int pageIdx = pageCount; pageIdx < target; pageIdx++) {
+                PageId pageId = new PageId(fileIdx, pageIdx);
+                mappings[fileIdx][pageIdx / MMAP_SEGMENT_PAGES]
+                        .putInt(getSegmentOffset(pageId) + config.getPageSize(), blankChecksum);
+            }
+        } else if (packedFiles[fileIdx] != null) {
+            // Fichier compressé : bitmap éventuelle et pages vides ajoutées au tas (un secteur chacune)
+            packedFiles[fileIdx].grow(target, roundUp(target, GROUP_PAGES) / GROUP_PAGES);
+            writeBlankRecords(fileIdx, pageCount, target, newGroup);
+        } else {
+            // Écrit la bitmap du nouveau groupe et les pages vides (avec leur somme) à la fin
+            int slotSize = slotSizes[fileIdx];
+            ByteBuffer slots = ByteBuffer.allocate((target - pageCount + (newGroup ? 1 : 0)) * slotSize);
+            for (int i = newGroup ? 1 : 0; i * slotSize < slots.capacity(); i++) {
+                slots.putInt(i * slotSize + config.getPageSize(), blankChecksum);
+            }
+            long position = newGroup ? getBitmapOffset(fileIdx, pageCount / GROUP_PAGES) : getDataOffset(fileIdx, pageCount);
+            writeFully(fileIdx, slots, position);
+        }
+
+        if (newGroup) {
+            loadedGroups[fileIdx].set(pageCount / GROUP_PAGES);
+        }
+        addPages(fileIdx, target);
+        dirtyHeaders.set(fileIdx);
+        // L'en-tête (avec les bitmaps en attente, que son résumé décrit) est écrit dès que
+        // le fichier grandit : après un arrêt brutal, il ne compte jamais moins de pages
+        // que le fichier n'en contient
+        flushBitmaps();
+    }
+
+    /**
+     * Met à jour l'index : le fichier compte désormais newPageCount pages,
+     * les pages ajoutées étant libres.
+     */
+    private void addPages(int fileIdx, int newPageCount) {
+        int oldPageCount = pageCounts[fileIdx];
+        if (newPageCount <= oldPageCount) {
+            return;
+        }
+
+        pageCounts[fileIdx] = newPageCount;
+        freeCounts[fileIdx] += newPageCount - oldPageCount;
+        freeHints[fileIdx] = Math.min(freeHints[fileIdx], oldPageCount);
+        filesWithFree.set(fileIdx);
+
+        for (int g = oldPageCount / GROUP_PAGES; g * GROUP_PAGES < newPageCount; g++) {
+            int start = Math.max(oldPageCount, g * GROUP_PAGES);
+            int end = Math.min(newPageCount, (g + 1) * GROUP_PAGES);
+            groupFree[fileIdx][g] += end - start;
+            groupsWithFree[fileIdx].set(g);
+        }
+
+        // Nouveaux extents : entièrement libres (dans les groupes déjà chargés)
+        int extents = roundUp(newPageCount, extentPages) / extentPages;
+        if (extentUsed[fileIdx].length < extents) {
+            extentUsed[fileIdx] = Arrays.copyOf(extentUsed[fileIdx],
+                    Math.max(extents, extentUsed[fileIdx].length * 2));
+        }
+        for (int e = roundUp(oldPageCount, extentPages) / extentPages; e < extents; e++) {
+            if (loadedGroups[fileIdx].get(e * extentPages / GROUP_PAGES)) {
+                emptyExtents[fileIdx].set(e);
+                filesWithEmptyExtent.set(fileIdx);
+            }
+        }
+    }
+
+    /**
+     * Prend la première page libre d'un fichier qui en a au moins une :
+     * premier groupe avec de la place (résumé), puis premier bit libre dans ce groupe.
+     */
+    private PageId takeFreePage(int fileIdx) throws IOException {
+        int group = groupsWithFree[fileIdx].nextSetBit(0);
+        ensureGroupLoaded(fileIdx, group);
+        int from = Math.max(group * GROUP_PAGES, freeHints[fileIdx]);
+        return takePage(fileIdx, usedPages[fileIdx].nextClearBit(from));
+    }
+
+    /**
+     * Marque une page libre existante comme utilisée et met l'index à jour.
+     * Le groupe de la page doit être chargé.
+     */
+    private PageId takePage(int fileIdx, int pageIdx) {
+        int group = pageIdx / GROUP_PAGES;
+
+        usedPages[fileIdx].set(pageIdx); // devient utilisée (1)
+        if (pageIdx == freeHints[fileIdx]) {
+            freeHints[fileIdx] = pageIdx + 1;
+        }
+        if (--freeCounts[fileIdx] == 0) {
+            filesWithFree.clear(fileIdx);
+        }
+        if (--groupFree[fileIdx][group] == 0) {
+            groupsWithFree[fileIdx].clear(group);
+        }
+        dirtyGroups[fileIdx].set(group);
+        dirtyHeaders.set(fileIdx);
+
+        int extent = pageIdx / extentPages;
+        if (extentUsed[fileIdx][extent]++ == 0) {
+            emptyExtents[fileIdx].clear(extent);
+            if (emptyExtents[fileIdx].isEmpty()) {
+                filesWithEmptyExtent.clear(fileIdx);
+            }
+        }
+
+        return new PageId(fileIdx, pageIdx);
+    }
+
+    /**
+     * Charge en mémoire la page de bitmap d'un groupe si ce n'est pas déjà fait,
+     * et calcule l'occupation de ses extents.
+     */
+    private void ensureGroupLoaded(int fileIdx, int group) throws IOException {
+        if (loadedGroups[fileIdx].get(group)) {
+            return;
+        }
+
+        byte[] bitmapBytes = new byte[config.getPageSize()];
+        if (packedFiles[fileIdx] != null) {
+            readBitmapRecord(fileIdx, group, bitmapBytes);
+        } else {
+            readFully(fileIdx, ByteBuffer.wrap(bitmapBytes), getBitmapOffset(fileIdx, group));
+        }
+
+        int start = group * GROUP_PAGES;
+        int end = Math.min(start + GROUP_PAGES, pageCounts[fileIdx]);
+        BitSet groupBits = BitSet.valueOf(bitmapBytes);
+        for (int i = groupBits.nextSetBit(0); i >= 0 && start + i < end; i = groupBits.nextSetBit(i + 1)) {
+            usedPages[fileIdx].set(start + i);
+        }
+        loadedGroups[fileIdx].set(group);
+
+        for (int e = start / extentPages; e * extentPages < end; e++) {
+            int extentStart = e * extentPages;
+            extentUsed[fileIdx][e] = usedPages[fileIdx]
+                    .get(extentStart, Math.min(extentStart + extentPages, end)).cardinality();
+            if (extentUsed[fileIdx][e] == 0) {
+                emptyExtents[fileIdx].set(e);
+                filesWithEmptyExtent.set(fileIdx);
+            }
+        }
+    }
+
+    /**
+     * Écrit dans leur fichier toutes les pages de bitmap et tous les en-têtes
+     * modifiés depuis la dernière écriture.
+     */
+    private synchronized void flushBitmaps() throws IOException {
+        for (int fileIdx = dirtyHeaders.nextSetBit(0); fileIdx >= 0; fileIdx = dirtyHeaders.nextSetBit(fileIdx + 1)) {
+            BitSet groups = dirtyGroups[fileIdx];
+            for (int g = groups.nextSetBit(0); g >= 0; g = groups.nextSetBit(g + 1)) {
+                writeBitmapPage(fileIdx, g);
+            }
+            groups.clear();
+            writeHeader(fileIdx);
+        }
+        dirtyHeaders.clear();
+    }
+
+    private static int roundUp(int pageCount, int multiple) {
+        return (pageCount + multiple - 1) / multiple * multiple;
+    }
+
+    /**
+     * Projette en mémoire le segment segmentIdx du fichier fileIdx.
+     * Si le fichier est trop court, il est d'abord étendu jusqu'à la fin du segment
+     * (les nouvelles pages sont libres dans la bitmap).
+     */
+    private void mapSegment(int fileIdx, int segmentIdx) throws IOException {
+        if (mappings[fileIdx] == null) {
+            mappings[fileIdx] = new MappedByteBuffer[16];
+        }
+        if (segmentIdx >= mappings[fileIdx].length) {
+            mappings[fileIdx] = Arrays.copyOf(mappings[fileIdx],
+                    Math.max(segmentIdx + 1, mappings[fileIdx].length * 2));
+        }
+
+        long segmentSize = (long) MMAP_SEGMENT_PAGES * slotSizes[fileIdx];
+        long start = getDataOffset(fileIdx, segmentIdx * MMAP_SEGMENT_PAGES);
+
+        if (getChannel(fileIdx).size() < start + segmentSize) {
+            writeFully(fileIdx, ByteBuffer.allocate(1), start + segmentSize - 1);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                mappings[fileIdx][segmentIdx] = getChannel(fileIdx).map(FileChannel.MapMode.READ_WRITE, start, segmentSize);
+                return;
+            } catch (ClosedChannelException e) {
+                if (attempt == MAX_IO_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Retourne le segment projeté contenant la page (mode MMAP).
+     *
+     * @throws IOException si la page n'existe pas dans le fichier
+     */
+    private MappedByteBuffer getSegment(PageId pageId) throws IOException {
+        checkPageExists(pageId);
+        return mappings[pageId.getFileIdx()][pageId.getPageIdx() / MMAP_SEGMENT_PAGES];
+    }
+
+    /**
+     * Position de la page à l'intérieur de son segment projeté.
+     */
+    private int getSegmentOffset(PageId pageId) {
+        return (pageId.getPageIdx() % MMAP_SEGMENT_PAGES) * slotSizes[pageId.getFileIdx()];
+    }
+
+    /**
+     * Crée un nouveau fichier Data.bin contenant seulement son en-tête,
+     * compressé si config.getCompression() le demande (mode CHANNEL seulement).
+     * Le canal ouvert pour la création est conservé dans le cache.
+     */
+    private void createNewFile(int fileIdx) throws IOException {
+        File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
+        FileChannel channel = FileChannel.open(f.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        synchronized (channels) {
+            channels.put(fileIdx, channel);
+        }
+
+        initFileIndex(fileIdx);
+        if (config.getCompression() == CompressionMode.LZ4 && config.getIOMode() == IOMode.CHANNEL) {
+            packedFiles[fileIdx] = new PackedFile(config.getPageSize(), config.getPageSize(), 0, 0);
+        }
+        writeHeader(fileIdx);
+    }
+
+    /**
+     * Convertit au format courant (FILE_VERSION) un fichier écrit par une version précédente :
+     * - format sans en-tête : bitmap de LEGACY_BITMAP_BYTES octets puis les pages, sans somme de contrôle ;
+     * - versions 2 et 3 : même structure qu'aujourd'hui, sans options dans l'en-tête,
+     *   avec des emplacements de pageSize octets (2) ou pageSize + CHECKSUM_SIZE octets (3) ;
+     * - version 4 : même structure qu'aujourd'hui (seul le numéro de version est réécrit),
+     *   sauf pour un fichier compressé, aux emplacements fixes de pageSize + COMPRESSED_HEADER_SIZE octets.
+     * Ne fait rien si le fichier est déjà au format courant.
+     */
+    private void upgradeFile(int fileIdx, File f) throws IOException {
+        Path path = f.toPath();
+
+        int version = 0;
+        int flags = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(12);
+            if (in.size() >= start.capacity()) {
+                readFully(in, start, 0);
+                if (start.getInt(0) == FILE_MAGIC) {
+                    version = start.getInt(4);
+                    flags = start.getInt(8);
+                    if (version < 2 || version > FILE_VERSION) {
+                        throw new IOException("Format de fichier non reconnu : Data" + fileIdx + ".bin");
+                    }
+                }
+            }
+        }
+        if (version == FILE_VERSION) {
+            return;
+        }
+
+        if (version == 4 && (flags & FLAG_COMPRESSED) == 0) {
+            try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                writeFully(out, ByteBuffer.allocate(4).putInt(0, FILE_VERSION), 4);
+                out.force(true);
+            }
+        } else {
+            convertFile(fileIdx, path, version, version == 4);
+        }
+        System.out.println("Fichier Data" + fileIdx + ".bin converti au format " + FILE_VERSION
+            + " (format précédent : " + (version == 0 ? "sans en-tête" : "version " + version) + ")");
+    }
+
+    /**
+     * Réécrit entièrement un fichier d'un format précédent (voir upgradeFile) : en-tête, bitmaps,
+     * puis chaque page avec sa somme de contrôle (la somme enregistrée si l'ancien format en avait une),
+     * en enregistrements compressés (PackedFile) si l'ancien fichier était compressé.
+     * Le fichier converti est écrit à côté puis remplace l'ancien. Les numéros de pages ne changent pas.
+     */
+    private void convertFile(int fileIdx, Path path, int version, boolean isCompressed) throws IOException {
+        int pageSize = config.getPageSize();
+        Path upgraded = path.resolveSibling(path.getFileName() + ".upgrade");
+
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = in.size();
+            int pageCount;
+            BitSet used;
+            if (version != 0) {
+                ByteBuffer header = ByteBuffer.allocate(pageSize);
+                readFully(in, header, 0);
+                int fields = version == 4 ? 12 : 8; // version 4 : options avant le nombre de pages
+                pageCount = header.getInt(fields);
+                int groupCount = header.getInt(fields + 4);
+                if (pageCount < 0 || pageCount > MAX_PAGES_PER_FILE
+                        || groupCount != roundUp(pageCount, GROUP_PAGES) / GROUP_PAGES) {
+                    throw new IOException("En-tête invalide dans le fichier Data" + fileIdx + ".bin");
+                }
+                used = new BitSet(pageCount);
+                ByteBuffer bitmap = ByteBuffer.allocate(pageSize);
+                for (int g = 0; g < groupCount; g++) {
+                    bitmap.clear();
+                    readFully(in, bitmap, legacyOffset(version, g * GROUP_PAGES) - legacySlotSize(version));
+                    BitSet bits = BitSet.valueOf(bitmap.flip());
+                    int groupPages = Math.min(GROUP_PAGES, pageCount - g * GROUP_PAGES);
+                    for (int i = bits.nextSetBit(0); i >= 0 && i < groupPages; i = bits.nextSetBit(i + 1)) {
+                        used.set(g * GROUP_PAGES + i);
+                    }
+                }
+            } else {
+                if (length < LEGACY_BITMAP_BYTES) {
+                    throw new IOException("En-tête invalide dans le fichier Data" + fileIdx + ".bin");
+                }
+                ByteBuffer bitmap = ByteBuffer.allocate(LEGACY_BITMAP_BYTES);
+                readFully(in, bitmap, 0);
+                pageCount = (int) Math.min((length - LEGACY_BITMAP_BYTES) / pageSize, LEGACY_BITMAP_BYTES * 8);
+                used = BitSet.valueOf(bitmap.flip()).get(0, pageCount);
+            }
+
+            int groupCount = roundUp(pageCount, GROUP_PAGES) / GROUP_PAGES;
+            if (groupCount > MAX_GROUPS) {
+                throw new IOException("Le fichier Data" + fileIdx + ".bin est trop grand pour pagesize = " + pageSize);
+            }
+            int slotSize = pageSize + CHECKSUM_SIZE;
+            int[] freeByGroup = new int[groupCount];
+            PackedFile packed = isCompressed ? new PackedFile(pageSize, pageSize, pageCount, groupCount) : null;
+
+            try (FileChannel out = FileChannel.open(upgraded, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer oldSlot = ByteBuffer.allocate(legacySlotSize(version));
+                byte[] page = new byte[pageSize];
+                for (int g = 0; g < groupCount; g++) {
+                    int first = g * GROUP_PAGES;
+                    int groupPages = Math.min(GROUP_PAGES, pageCount - first);
+                    BitSet groupBits = used.get(first, first + groupPages);
+                    freeByGroup[g] = groupPages - groupBits.cardinality();
+
+                    Arrays.fill(page, (byte) 0);
+                    byte[] bits = groupBits.toByteArray();
+                    System.arraycopy(bits, 0, page, 0, Math.min(bits.length, pageSize));
+                    ByteBuffer bitmap = ByteBuffer.wrap(page);
+                    if (packed != null) {
+                        ByteBuffer record = packed.encode(PackedFile.bitmapKey(g), page, checksum(bitmap, 0));
+                        writeFully(out, record, packed.position(packed.allocate(record.remaining() / PackedFile.SECTOR_SIZE)));
+                    } else {
+                        writeFully(out, bitmap, (long) (1 + g * (GROUP_PAGES + 1)) * slotSize);
+                    }
+
+                    for (int pageIdx = first; pageIdx < first + groupPages; pageIdx++) {
+                        // Ancien emplacement (absent à la fin d'un fichier tronqué : page vide)
+                        oldSlot.clear();
+                        Arrays.fill(oldSlot.array(), (byte) 0);
+                        long offset = legacyOffset(version, pageIdx);
+                        if (offset + oldSlot.capacity() <= length) {
+                            readFully(in, oldSlot, offset);
+                        }
+                        int stored;
+                        if (isCompressed) {
+                            int storedLength = oldSlot.getInt(0);
+                            Arrays.fill(page, (byte) 0);
+                            decodeSlot(oldSlot.array(), 0, storedLength, page);
+                            stored = storedLength == 0 ? 0 : oldSlot.getInt(4);
+                        } else {
+                            System.arraycopy(oldSlot.array(), 0, page, 0, pageSize);
+                            stored = version == 3 ? oldSlot.getInt(pageSize) : 0;
+                        }
+                        if (stored == 0) {
+                            stored = checksum(ByteBuffer.wrap(page), 0);
+                        }
+
+                        if (packed != null) {
+                            ByteBuffer record = packed.encode(pageIdx, page, stored);
+                            writeFully(out, record, packed.position(packed.allocate(record.remaining() / PackedFile.SECTOR_SIZE)));
+                        } else {
+                            ByteBuffer slot = ByteBuffer.allocate(slotSize);
+                            slot.put(page).putInt(stored).flip();
+                            writeFully(out, slot, (long) (1 + g + 1 + pageIdx) * slotSize);
+                        }
+                    }
+                }
+                writeFully(out, encodeHeader(isCompressed ? FLAG_COMPRESSED : 0, pageCount, freeByGroup), 0);
+                out.force(true);
+            }
+        }
+
+        Files.move(upgraded, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Taille d'un emplacement de page dans un fichier de l'ancien format version.
+     */
+    private int legacySlotSize(int version) {
+        switch (version) {
+            case 3:
+                return config.getPageSize() + CHECKSUM_SIZE;
+            case 4:
+                return config.getPageSize() + COMPRESSED_HEADER_SIZE;
+            default:
+                return config.getPageSize();
+        }
+    }
+
+    /**
+     * Position de la page de données pageIdx dans un fichier de l'ancien format version.
+     */
+    private long legacyOffset(int version, int pageIdx) {
+        if (version == 0) {
+            return LEGACY_BITMAP_BYTES + (long) pageIdx * config.getPageSize();
+        }
+        return (long) (1 + pageIdx / GROUP_PAGES + 1 + pageIdx) * legacySlotSize(version);
+    }
+
+    /**
+     * Lit l'en-tête d'un fichier Data.bin : nombre de pages et résumé des pages libres par groupe.
+     *
+     * @return le nombre de pages de données du fichier
+     * @throws IOException si le fichier n'est pas au format attendu
+     */
+    private int readHeader(int fileIdx) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(config.getPageSize());
+        if (getChannel(fileIdx).size() < config.getPageSize()) {
+            throw new IOException("En-tête invalide dans le fichier Data" + fileIdx + ".bin");
+        }
+        readFully(fileIdx, header, 0);
+        header.flip();
+
+        if (header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION) {
+            throw new IOException("Format de fichier non reconnu : Data" + fileIdx + ".bin");
+        }
+
+        int flags = header.getInt();
+        int pageCount = header.getInt();
+        int groupCount = header.getInt();
+        if (pageCount < 0 || pageCount > MAX_PAGES_PER_FILE
+                || groupCount != roundUp(pageCount, GROUP_PAGES) / GROUP_PAGES) {
+            throw new IOException("En-tête invalide dans le fichier Data" + fileIdx + ".bin");
+        }
+
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            if (config.getIOMode() == IOMode.MMAP) {
+                throw new IOException("Le fichier compressé Data" + fileIdx + ".bin ne peut pas être ouvert en mode MMAP");
+            }
+            packedFiles[fileIdx] = new PackedFile(config.getPageSize(), config.getPageSize(), pageCount, groupCount);
+            loadPackedFile(fileIdx);
+        }
+
+        // Le résumé donne l'espace libre de chaque groupe sans lire les bitmaps
+        int free = 0;
+        for (int g = 0; g < groupCount; g++) {
+            int groupPages = Math.min(GROUP_PAGES, pageCount - g * GROUP_PAGES);
+            int groupFreePages = header.getInt();
+            free += groupFreePages;
+            groupFree[fileIdx][g] = groupFreePages - groupPages; // addPages ajoute groupPages
+        }
+        freeCounts[fileIdx] = free - pageCount;
+
+        return pageCount;
+    }
+
+    /**
+     * Écrit l'en-tête d'un fichier Data.bin (magic, version, options, nombre de pages, résumé).
+     */
+    private void writeHeader(int fileIdx) throws IOException {
+        ByteBuffer header = encodeHeader(packedFiles[fileIdx] != null ? FLAG_COMPRESSED : 0,
+            Math.max(0, pageCounts[fileIdx]), groupFree[fileIdx]);
+        writeFully(fileIdx, header, 0);
+    }
+
+    /**
+     * Contenu de la page d'en-tête (voir la structure du fichier en tête de classe).
+     */
+    private ByteBuffer encodeHeader(int flags, int pageCount, int[] freeByGroup) {
+        int groupCount = roundUp(pageCount, GROUP_PAGES) / GROUP_PAGES;
+
+        ByteBuffer header = ByteBuffer.allocate(config.getPageSize());
+        header.putInt(FILE_MAGIC);
+        header.putInt(FILE_VERSION);
+        header.putInt(flags);
+        header.putInt(pageCount);
+        header.putInt(groupCount);
+        for (int g = 0; g < groupCount; g++) {
+            header.putInt(freeByGroup[g]);
+        }
+        header.clear();
+        return header;
+    }
+
+    /**
+     * Écrit la page de bitmap d'un groupe (groupe chargé en mémoire).
+     */
+    private void writeBitmapPage(int fileIdx, int group) throws IOException {
+        int start = group * GROUP_PAGES;
+        byte[] groupBytes = usedPages[fileIdx].get(start, start + GROUP_PAGES).toByteArray();
+
+        ByteBuffer page = ByteBuffer.allocate(config.getPageSize());
+        page.put(groupBytes);
+        page.clear();
+
+        if (packedFiles[fileIdx] != null) {
+            writeRecord(fileIdx, PackedFile.bitmapKey(group), page.array(), checksum(page, 0));
+            return;
+        }
+        writeFully(fileIdx, page, getBitmapOffset(fileIdx, group));
+    }
+
+    /**
+     * Lit la page de bitmap d'un groupe d'un fichier compressé (vide si jamais écrite).
+     *
+     * @throws IOException si son enregistrement ou sa somme de contrôle est invalide
+     */
+    private void readBitmapRecord(int fileIdx, int group, byte[] bitmapBytes) throws IOException {
+        ByteBuffer record = readRecord(fileIdx, PackedFile.bitmapKey(group));
+        if (record == null) {
+            return;
+        }
+        int stored = packedFiles[fileIdx].decode(record, PackedFile.bitmapKey(group), bitmapBytes);
+        if (checksum(ByteBuffer.wrap(bitmapBytes), 0) != stored) {
+            throw new IOException("Bitmap du groupe " + group + " corrompue dans le fichier Data" + fileIdx + ".bin");
+        }
+    }
+
+    /**
+     * Retourne le canal ouvert sur le fichier Data.bin d'indice fileIdx.
+     * Le canal est pris dans le cache, ou ouvert puis mis en cache.
+     *
+     * @param fileIdx indice du fichier
+     * @return canal en lecture/écriture sur le fichier
+     * @throws IOException si le fichier n'existe pas
+     */
+    private FileChannel getChannel(int fileIdx) throws IOException {
+        synchronized (channels) {
+            FileChannel channel = channels.get(fileIdx);
+            if (channel != null && channel.isOpen()) {
+                return channel;
+            }
+
+            File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
+
+            if (!f.exists()) {
+                throw new IOException("Fichier inexistant : " + f.getAbsolutePath());
+            }
+
+            channel = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channels.put(fileIdx, channel);
+            return channel;
+        }
+    }
+
+    /**
+     * Ferme tous les canaux du cache.
+     */
+    private void closeChannels() throws IOException {
+        IOException first = null;
+        synchronized (channels) {
+            Iterator<FileChannel> it = channels.values().iterator();
+            while (it.hasNext()) {
+                try {
+                    it.next().close();
+                } catch (IOException e) {
+                    if (first == null) {
+                        first = e;
+                    }
+                }
+                it.remove();
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // canal évincé du cache : rien à faire de plus
+        }
+    }
+
+    /**
+     * Lit exactement buff.remaining() octets à la position donnée (sans seek).
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buff, long position) throws IOException {
+        while (buff.hasRemaining()) {
+            int n = channel.read(buff, position);
+            if (n < 0) {
+                throw new IOException("Fin de fichier inattendue à la position " + position);
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Écrit tout le contenu de buff à la position donnée (sans seek).
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buff, long position) throws IOException {
+        while (buff.hasRemaining()) {
+            position += channel.write(buff, position);
+        }
+    }
+
+    /**
+     * Lit exactement buff.remaining() octets du fichier fileIdx à la position donnée.
+     * Si un autre thread ferme le canal pendant la lecture (éviction du cache),
+     * le canal est rouvert et la lecture recommencée, au plus MAX_IO_ATTEMPTS fois.
+     */
+    private void readFully(int fileIdx, ByteBuffer buff, long position) throws IOException {
+        int start = buff.position();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                readFully(getChannel(fileIdx), buff, position);
+                return;
+            } catch (ClosedChannelException e) {
+                if (attempt == MAX_IO_ATTEMPTS) {
+                    throw e;
+                }
+                buff.position(start);
+            }
+        }
+    }
+
+    /**
+     * Écrit tout le contenu de buff dans le fichier fileIdx à la position donnée
+     * (recommencée comme readFully si le canal est fermé pendant l'écriture).
+     */
+    private void writeFully(int fileIdx, ByteBuffer buff, long position) throws IOException {
+        int start = buff.position();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeFully(getChannel(fileIdx), buff, position);
+                return;
+            } catch (ClosedChannelException e) {
+                if (attempt == MAX_IO_ATTEMPTS) {
+                    throw e;
+                }
+                buff.position(start);
+            }
+        }
+    }
+
+    /**
+     * Position d'une page de données : en-tête, puis une page de bitmap
+     * avant chaque groupe de GROUP_PAGES pages.
+     */
+    private long getDataOffset(int fileIdx, int pageIdx) {
+        long group = pageIdx / GROUP_PAGES;
+        return (1 + group + 1 + pageIdx) * slotSizes[fileIdx];
+    }
+
+    /**
+     * Position de la page de bitmap d'un groupe.
+     */
+    private long getBitmapOffset(int fileIdx, int group) {
+        return (1 + (long) group * (GROUP_PAGES + 1)) * slotSizes[fileIdx];
+    }
+
+    /**
+     * Vérifie, à partir de l'index en mémoire, que la page existe dans son fichier.
+     *
+     * @throws IOException si le fichier n'existe pas ou si la page dépasse sa taille
+     */
+    private void checkPageExists(PageId pageId) throws IOException {
+        int fileIdx = pageId.getFileIdx();
+
+        if (fileIdx < 0 || fileIdx >= pageCounts.length || pageCounts[fileIdx] < 0) {
+            throw new IOException("Fichier inexistant : Data" + fileIdx + ".bin");
+        }
+        if (pageId.getPageIdx() < 0 || pageId.getPageIdx() >= pageCounts[fileIdx]) {
+            throw new IOException("Page " + pageId.getPageIdx() +
+                    " inexistante dans le fichier Data" + fileIdx + ".bin");
         }
-        return bitmap;
     }
 
-}
\ No newline at end of file
+}
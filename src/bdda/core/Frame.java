@@ -1,18 +1,138 @@
 package bdda.core;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.StampedLock;
+
 public class Frame {
 
-    PageId pageId;
-    byte[] buffer;
-    boolean dirty;
-    public int pinCount;
+    // pinCount d'une frame réservée par un remplacement ou un chargement en cours
+    static final int CLAIMED = -1;
+
+    private static final AtomicIntegerFieldUpdater<Frame> PIN_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(Frame.class, "pinCount");
+
+    // Position de la frame dans le buffer pool (valeur de la table des pages)
+    final int index;
+    // Position de la frame dans sa partition (indice des tableaux de la politique de remplacement)
+    final int slot;
+    volatile PageId pageId;
+    // Mémoire de la page (position 0, taille d'une page) : tableau du tas ou tranche hors tas
+    final ByteBuffer data;
+    // Tableau de data pour une frame du tas, null hors tas
+    final byte[] buffer;
+    // Vues de data rendues à chaque accès (view, readOnlyView), partagées par tous les épinglages
+    private final ByteBuffer sharedView;
+    private final ByteBuffer readOnlyView;
+    volatile boolean dirty;
+    // Nombre d'épinglages (modifié de façon atomique), CLAIMED pendant un remplacement
+    public volatile int pinCount;
+    // Numéro du dernier accès (horloge logique du BufferManager, indicatif)
     public long lastAccess;
+    // Début de l'épinglage en cours (System.nanoTime, statistiques du BufferManager)
+    volatile long pinnedSince;
+    // Remplacement ou lecture en cours (terminé quand la frame est de nouveau utilisable), null sinon
+    volatile CompletableFuture<Void> loading;
+    // Page préchargée pas encore demandée (lecture anticipée)
+    volatile boolean prefetched;
+    // Anneau d'une opération de masse qui a chargé la page, null si la page appartient au buffer pool
+    volatile BufferAccessStrategy strategy;
+    // Frame retirée par une réduction du buffer pool (BufferManager.SetBufferCount) :
+    // hors de la politique de remplacement et de la pile des frames libres
+    volatile boolean retired;
+    // Écriture en tâche de fond d'une copie de la page en cours, null sinon
+    volatile CompletableFuture<Void> writing;
+    // Verrou du contenu de la page (PageHandle) : partagé, exclusif ou lecture optimiste
+    final StampedLock latch = new StampedLock();
 
-    Frame(int pageSize) {
+    Frame(int index, int slot, ByteBuffer data) {
+        this.index = index;
+        this.slot = slot;
         this.pageId = null;
-        this.buffer = new byte[pageSize];
+        this.data = data;
+        this.buffer = data.hasArray() ? data.array() : null;
+        this.sharedView = data.duplicate();
+        this.readOnlyView = data.asReadOnlyBuffer();
         this.dirty = false;
         this.pinCount = 0;
-        this.lastAccess = System.currentTimeMillis();
+        this.lastAccess = 0;
+    }
+
+    /**
+     * Vue de la page rendue aux utilisateurs (GetPageBuffer, PageHandle), sans allocation :
+     * la même vue sert à tous les épinglages de la frame, remise à la position 0 et à la
+     * taille d'une page à chaque appel. Elle ne doit être lue et écrite qu'à des positions
+     * absolues (get(int), putInt(int, int)...), la position pouvant être remise à zéro
+     * par un autre thread.
+     */
+    ByteBuffer view() {
+        return sharedView.clear();
+    }
+
+    /**
+     * Comme view(), en lecture seule.
+     */
+    ByteBuffer readOnlyView() {
+        return readOnlyView.clear();
+    }
+
+    /**
+     * @return une vue indépendante de la page (position 0, limite = taille d'une page),
+     *         pour une lecture ou une écriture sur disque qui avance sa position
+     */
+    ByteBuffer ioView() {
+        return data.duplicate();
+    }
+
+    /**
+     * Remet la page à zéro.
+     */
+    void clear() {
+        for (int i = 0; i < data.capacity(); i++) {
+            data.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Épingle la frame, sauf si elle est réservée (CLAIMED).
+     */
+    boolean tryPin() {
+        while (true) {
+            int pins = pinCount;
+            if (pins < 0) {
+                return false;
+            }
+            if (PIN_COUNT.compareAndSet(this, pins, pins + 1)) {
+                if (pins == 0) {
+                    pinnedSince = System.nanoTime();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retire un épinglage.
+     *
+     * @return le nouveau nombre d'épinglages, ou -1 si la frame n'était pas épinglée
+     */
+    int unpin() {
+        while (true) {
+            int pins = pinCount;
+            if (pins <= 0) {
+                return -1;
+            }
+            if (PIN_COUNT.compareAndSet(this, pins, pins - 1)) {
+                return pins - 1;
+            }
+        }
+    }
+
+    /**
+     * Réserve la frame pour un remplacement si personne ne l'a épinglée.
+     */
+    boolean tryClaim() {
+        return PIN_COUNT.compareAndSet(this, 0, CLAIMED);
     }
 }
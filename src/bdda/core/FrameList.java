@@ -0,0 +1,112 @@
+package bdda.core;
+
+/**
+ * Liste doublement chaînée intrusive de frames, stockée dans deux tableaux d'indices
+ * (prev/next) : ajout, retrait et accès aux extrémités en O(1), sans allocation.
+ * Une frame appartient au plus une fois à une même liste.
+ */
+final class FrameList {
+
+    static final int NONE = -1;
+
+    private final int[] prev;
+    private final int[] next;
+    private final boolean[] linked;
+    private int head;
+    private int tail;
+    private int size;
+
+    FrameList(int frameCount) {
+        this.prev = new int[frameCount];
+        this.next = new int[frameCount];
+        this.linked = new boolean[frameCount];
+        this.head = NONE;
+        this.tail = NONE;
+        this.size = 0;
+    }
+
+    /**
+     * @return la frame en tête (la plus ancienne), ou NONE
+     */
+    int head() {
+        return head;
+    }
+
+    /**
+     * @return la frame en queue (la plus récente), ou NONE
+     */
+    int tail() {
+        return tail;
+    }
+
+    /**
+     * @return la frame suivante (plus récente), ou NONE
+     */
+    int next(int idx) {
+        return next[idx];
+    }
+
+    /**
+     * @return la frame précédente (plus ancienne), ou NONE
+     */
+    int prev(int idx) {
+        return prev[idx];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int idx) {
+        return linked[idx];
+    }
+
+    /**
+     * Place la frame en queue (la retire d'abord si elle est déjà dans la liste).
+     */
+    void moveToTail(int idx) {
+        remove(idx);
+        prev[idx] = tail;
+        next[idx] = NONE;
+        if (tail != NONE) {
+            next[tail] = idx;
+        } else {
+            head = idx;
+        }
+        tail = idx;
+        linked[idx] = true;
+        size++;
+    }
+
+    void remove(int idx) {
+        if (!linked[idx]) {
+            return;
+        }
+        if (prev[idx] != NONE) {
+            next[prev[idx]] = next[idx];
+        } else {
+            head = next[idx];
+        }
+        if (next[idx] != NONE) {
+            prev[next[idx]] = prev[idx];
+        } else {
+            tail = prev[idx];
+        }
+        linked[idx] = false;
+        size--;
+    }
+
+    /**
+     * Réserve (Frame.tryClaim) la plus ancienne frame non épinglée de la liste.
+     * La frame reste dans la liste.
+     *
+     * @return la frame réservée, ou NONE
+     */
+    int claimOldest(Frame[] frames) {
+        int idx = head;
+        while (idx != NONE && !frames[idx].tryClaim()) {
+            idx = next[idx];
+        }
+        return idx;
+    }
+}
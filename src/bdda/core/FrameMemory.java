@@ -0,0 +1,13 @@
+package bdda.core;
+
+/**
+ * Mémoire des frames du BufferManager :
+ * HEAP   -> un tableau d'octets par frame, dans le tas Java
+ * DIRECT -> mémoire hors tas (ByteBuffer direct) découpée en frames : un grand buffer pool
+ *           n'alourdit pas le tas ni le GC, et les lectures/écritures se font sans copie.
+ *           Limité par -XX:MaxDirectMemorySize ; GetPage y retourne une copie de la page
+ *           (modifications par GetPageBuffer ou pin).
+ */
+enum FrameMemory {
+    HEAP, DIRECT
+}
@@ -0,0 +1,116 @@
+package bdda.core;
+
+/**
+ * Historique borné de pages qui ne sont plus en mémoire (clés PageTable.key), rangé
+ * de la plus ancienne à la plus récente, avec une valeur long par page.
+ * Recherche et retrait par clé, ajout en queue et retrait de la tête en O(1) :
+ * table PageTable clé -> case, cases chaînées par des tableaux d'indices.
+ */
+final class GhostList {
+
+    private static final int NONE = -1;
+
+    private final long[] keys;
+    private final long[] values;
+    private final int[] prev;
+    private final int[] next;
+    private final PageTable index;
+    private final int[] freeSlots;
+    private int freeCount;
+    private int head;
+    private int tail;
+
+    GhostList(int capacity) {
+        int slots = Math.max(1, capacity);
+        this.keys = new long[slots];
+        this.values = new long[slots];
+        this.prev = new int[slots];
+        this.next = new int[slots];
+        this.index = new PageTable(slots);
+        this.freeSlots = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            freeSlots[i] = slots - 1 - i;
+        }
+        this.freeCount = slots;
+        this.head = NONE;
+        this.tail = NONE;
+    }
+
+    int size() {
+        return keys.length - freeCount;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean contains(long key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Retire la page de l'historique.
+     *
+     * @return sa valeur, ou -1 si elle n'y était pas
+     */
+    long remove(long key) {
+        int slot = index.get(key);
+        if (slot == PageTable.NOT_FOUND) {
+            return -1;
+        }
+        long value = values[slot];
+        unlink(slot);
+        return value;
+    }
+
+    /**
+     * Ajoute la page en queue. Si l'historique est plein, la plus ancienne page est oubliée.
+     *
+     * @return true si une page a été oubliée pour faire de la place
+     */
+    boolean add(long key, long value) {
+        remove(key);
+        boolean dropped = false;
+        if (freeCount == 0) {
+            removeOldest();
+            dropped = true;
+        }
+        int slot = freeSlots[--freeCount];
+        keys[slot] = key;
+        values[slot] = value;
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail != NONE) {
+            next[tail] = slot;
+        } else {
+            head = slot;
+        }
+        tail = slot;
+        index.put(key, slot);
+        return dropped;
+    }
+
+    /**
+     * Oublie la plus ancienne page de l'historique (sans effet s'il est vide).
+     */
+    void removeOldest() {
+        if (head != NONE) {
+            unlink(head);
+        }
+    }
+
+    private void unlink(int slot) {
+        index.remove(keys[slot]);
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            head = next[slot];
+        }
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
+        } else {
+            tail = prev[slot];
+        }
+        freeSlots[freeCount++] = slot;
+    }
+}
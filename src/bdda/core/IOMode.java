@@ -0,0 +1,10 @@
+package bdda.core;
+
+/**
+ * Mode d'accès aux fichiers Data.bin du DiskManager :
+ * CHANNEL -> lectures/écritures positionnelles sur un FileChannel
+ * MMAP    -> fichiers projetés en mémoire (FileChannel.map), copies mémoire
+ */
+enum IOMode {
+    CHANNEL, MMAP
+}
@@ -0,0 +1,172 @@
+package bdda.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Stockage des pages en mémoire hors tas (dm_backend = 'MEMORY').
+ *
+ * Les pages sont rangées dans des blocs de CHUNK_PAGES pages alloués par
+ * ByteBuffer.allocateDirect, hors du tas Java : le ramasse-miettes ne les parcourt pas.
+ * Toutes les pages sont dans le "fichier" 0. Rien n'est écrit sur disque :
+ * le contenu est perdu à finish() (bases temporaires, mesures du buffer pool sans disque).
+ */
+public class InMemoryBackend implements StorageBackend {
+
+    private static final int CHUNK_PAGES = 256;
+
+    private DBConfig config;
+    private int pageSize;
+
+    /**
+     * chunks        -> blocs de pages hors tas
+     * usedPages     -> bit à 1 si la page est allouée
+     * pageCount     -> nombre de pages existantes (CHUNK_PAGES par bloc)
+     * freeHint      -> aucune page libre d'indice inférieur
+     */
+    private List<ByteBuffer> chunks;
+    private BitSet usedPages;
+    private int pageCount;
+    private int freeHint;
+
+    public InMemoryBackend(DBConfig config) {
+        this.config = config;
+        this.pageSize = config.getPageSize();
+        this.chunks = new ArrayList<>();
+        this.usedPages = new BitSet();
+        this.pageCount = 0;
+        this.freeHint = 0;
+    }
+
+    @Override
+    public DBConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public synchronized PageId allocPage() throws IOException {
+        int pageIdx = usedPages.nextClearBit(freeHint);
+        if (pageIdx >= pageCount) {
+            if (pageCount > Integer.MAX_VALUE - CHUNK_PAGES) {
+                throw new IOException("Limite de pages en mémoire atteinte");
+            }
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_PAGES * pageSize));
+            pageCount += CHUNK_PAGES;
+        }
+        usedPages.set(pageIdx);
+        freeHint = pageIdx + 1;
+        return new PageId(0, pageIdx);
+    }
+
+    /**
+     * Privilégie la page qui suit near si elle est libre.
+     */
+    @Override
+    public synchronized PageId allocPage(PageId near) throws IOException {
+        if (near != null && near.getFileIdx() == 0) {
+            int next = near.getPageIdx() + 1;
+            if (next >= 0 && next < pageCount && !usedPages.get(next)) {
+                usedPages.set(next);
+                if (next == freeHint) {
+                    freeHint = next + 1;
+                }
+                return new PageId(0, next);
+            }
+        }
+        return allocPage();
+    }
+
+    @Override
+    public synchronized void DeallocPage(PageId pageId) throws IOException {
+        checkPageExists(pageId);
+        usedPages.clear(pageId.getPageIdx());
+        freeHint = Math.min(freeHint, pageId.getPageIdx());
+    }
+
+    @Override
+    public int getPageCount(int fileIdx) {
+        return fileIdx == 0 ? pageCount : 0;
+    }
+
+    @Override
+    public void ReadPage(PageId pageId, byte[] buff) throws IOException {
+        checkBuffer(buff.length);
+        chunkOf(pageId).get(offsetOf(pageId), buff);
+    }
+
+    @Override
+    public void WritePage(PageId pageId, byte[] buff) throws IOException {
+        checkBuffer(buff.length);
+        chunkOf(pageId).put(offsetOf(pageId), buff);
+    }
+
+    @Override
+    public void ReadPages(PageId first, int count, ByteBuffer[] dests) throws IOException {
+        for (int i = 0; i < count; i++) {
+            PageId pageId = new PageId(first.getFileIdx(), first.getPageIdx() + i);
+            checkBuffer(dests[i].remaining());
+            dests[i].put(chunkOf(pageId).slice(offsetOf(pageId), pageSize));
+        }
+    }
+
+    @Override
+    public void WritePages(PageId first, int count, ByteBuffer[] srcs) throws IOException {
+        for (int i = 0; i < count; i++) {
+            PageId pageId = new PageId(first.getFileIdx(), first.getPageIdx() + i);
+            checkBuffer(srcs[i].remaining());
+            chunkOf(pageId).put(offsetOf(pageId), srcs[i], srcs[i].position(), pageSize);
+            srcs[i].position(srcs[i].limit());
+        }
+    }
+
+    /**
+     * Rien à rendre durable : les pages ne sont qu'en mémoire.
+     */
+    @Override
+    public void force() {
+    }
+
+    /**
+     * Libère les blocs de pages (leur mémoire est rendue quand ils sont collectés).
+     */
+    @Override
+    public synchronized void finish() {
+        chunks.clear();
+        usedPages.clear();
+        pageCount = 0;
+        freeHint = 0;
+    }
+
+    private void checkBuffer(int length) throws IOException {
+        if (length != pageSize) {
+            throw new IOException("Taille du buffer (" + length +
+                ") différente de la taille d'une page (" + pageSize + ")");
+        }
+    }
+
+    private synchronized ByteBuffer chunkOf(PageId pageId) throws IOException {
+        checkPageExists(pageId);
+        return chunks.get(pageId.getPageIdx() / CHUNK_PAGES);
+    }
+
+    private int offsetOf(PageId pageId) {
+        return (pageId.getPageIdx() % CHUNK_PAGES) * pageSize;
+    }
+
+    private void checkPageExists(PageId pageId) throws IOException {
+        if (pageId.getFileIdx() != 0) {
+            throw new IOException("Fichier inexistant : Data" + pageId.getFileIdx() + ".bin");
+        }
+        if (pageId.getPageIdx() < 0 || pageId.getPageIdx() >= pageCount) {
+            throw new IOException("Page " + pageId.getPageIdx() + " inexistante en mémoire");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package bdda.core;
+
+/**
+ * Verrou pris sur le contenu d'une page épinglée par BufferManager.pin :
+ * SHARED     -> lecture, plusieurs lecteurs à la fois
+ * EXCLUSIVE  -> lecture et écriture, un seul thread
+ * OPTIMISTIC -> lecture sans verrou, à valider après coup (PageHandle.validate)
+ */
+public enum LatchMode {
+    SHARED, EXCLUSIVE, OPTIMISTIC
+}
@@ -0,0 +1,195 @@
+package bdda.core;
+
+import java.util.Arrays;
+
+/**
+ * LRU-2 (LRU-K avec K = 2, O'Neil, O'Neil, Weikum, SIGMOD 1993).
+ *
+ * La victime est la page dont l'avant-dernier accès est le plus ancien (plus grande
+ * distance arrière d'ordre 2). Les pages accédées une seule fois ont une distance
+ * infinie : elles partent en premier, de la plus ancienne à la plus récente. Une page
+ * lue une fois par un parcours ne déloge donc jamais une page réutilisée.
+ *
+ * Les dates sont celles d'une horloge logique. Les pages non épinglées vues une fois
+ * sont dans une liste (FrameList, ordre du premier accès) ; les autres dans un tas
+ * binaire indexé sur la date de l'avant-dernier accès (tableaux d'entiers, O(log n)).
+ * La date du dernier accès des pages évincées est gardée dans un historique borné :
+ * une page relue peu après son éviction retrouve son avant-dernier accès.
+ */
+final class Lru2Policy implements ReplacementPolicy {
+
+    private final Frame[] frames;
+    private final long[] last;
+    private final long[] penultimate;
+    private final FrameList once;
+    private final int[] heap;
+    private final int[] heapPos;
+    private int heapSize;
+    private final GhostList history;
+    private long clock;
+
+    Lru2Policy(Frame[] frames) {
+        this.frames = frames;
+        int n = frames.length;
+        this.last = new long[n];
+        this.penultimate = new long[n];
+        this.once = new FrameList(n);
+        this.heap = new int[n];
+        this.heapPos = new int[n];
+        Arrays.fill(heapPos, -1);
+        this.heapSize = 0;
+        this.history = new GhostList(n);
+        this.clock = 0;
+    }
+
+    @Override
+    public void loaded(Frame frame) {
+        int idx = frame.slot;
+        long previous = history.remove(PageTable.key(frame.pageId));
+        penultimate[idx] = previous > 0 ? previous : 0;
+        last[idx] = ++clock;
+        if (frame.pinCount == 0) {
+            insert(idx);
+        }
+    }
+
+    /**
+     * Aucun accès compté : la page est parmi les pages vues une fois (évincées en premier).
+     * La date de son dernier accès avant éviction (historique) est gardée dans last,
+     * et devient son avant-dernier accès à sa première demande (accessed).
+     */
+    @Override
+    public void prefetched(Frame frame) {
+        int idx = frame.slot;
+        long previous = history.remove(PageTable.key(frame.pageId));
+        penultimate[idx] = 0;
+        last[idx] = previous > 0 ? previous : 0;
+        if (frame.pinCount == 0) {
+            insert(idx);
+        }
+    }
+
+    @Override
+    public void accessed(Frame frame) {
+        int idx = frame.slot;
+        penultimate[idx] = last[idx];
+        last[idx] = ++clock;
+        detach(idx);
+    }
+
+    @Override
+    public void unpinned(Frame frame) {
+        if (frame.pinCount == 0) {
+            detach(frame.slot);
+            insert(frame.slot);
+        }
+    }
+
+    @Override
+    public void removed(Frame frame) {
+        detach(frame.slot);
+    }
+
+    @Override
+    public Frame victim() {
+        while (true) {
+            int idx = once.head();
+            if (idx != FrameList.NONE) {
+                once.remove(idx);
+            } else if (heapSize > 0) {
+                idx = heap[0];
+                heapRemove(idx);
+            } else {
+                return null;
+            }
+            // Épinglée entre-temps : elle reviendra à sa libération
+            if (frames[idx].tryClaim()) {
+                history.add(PageTable.key(frames[idx].pageId), last[idx]);
+                return frames[idx];
+            }
+        }
+    }
+
+    private void insert(int idx) {
+        if (penultimate[idx] == 0) {
+            once.moveToTail(idx);
+        } else {
+            heapInsert(idx);
+        }
+    }
+
+    private void detach(int idx) {
+        once.remove(idx);
+        if (heapPos[idx] >= 0) {
+            heapRemove(idx);
+        }
+    }
+
+    private void heapInsert(int idx) {
+        heap[heapSize] = idx;
+        heapPos[idx] = heapSize;
+        heapSize++;
+        siftUp(heapPos[idx]);
+    }
+
+    private void heapRemove(int idx) {
+        int pos = heapPos[idx];
+        heapPos[idx] = -1;
+        heapSize--;
+        if (pos == heapSize) {
+            return;
+        }
+        int moved = heap[heapSize];
+        heap[pos] = moved;
+        heapPos[moved] = pos;
+        siftDown(pos);
+        siftUp(heapPos[moved]);
+    }
+
+    private void siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (!before(heap[pos], heap[parent])) {
+                return;
+            }
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int pos) {
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) {
+                return;
+            }
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], heap[pos])) {
+                return;
+            }
+            swap(pos, child);
+            pos = child;
+        }
+    }
+
+    /**
+     * a doit être évincée avant b : avant-dernier accès plus ancien (puis dernier accès)
+     */
+    private boolean before(int a, int b) {
+        if (penultimate[a] != penultimate[b]) {
+            return penultimate[a] < penultimate[b];
+        }
+        return last[a] < last[b];
+    }
+
+    private void swap(int i, int j) {
+        int a = heap[i];
+        int b = heap[j];
+        heap[i] = b;
+        heap[j] = a;
+        heapPos[b] = i;
+        heapPos[a] = j;
+    }
+}
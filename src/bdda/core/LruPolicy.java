@@ -0,0 +1,62 @@
+package bdda.core;
+
+/**
+ * LRU et MRU en O(1).
+ *
+ * Les frames non épinglées qui contiennent une page forment une liste doublement
+ * chaînée (FrameList), rangée par ordre de libération (FreePage) : la tête est la page
+ * libérée il y a le plus longtemps, la queue la plus récente. Ni nœud alloué, ni date.
+ * Une page épinglée sort de la liste, et y revient en queue quand elle n'est plus épinglée.
+ * LRU évince la tête, MRU la queue.
+ */
+final class LruPolicy implements ReplacementPolicy {
+
+    private final Frame[] frames;
+    private final boolean mostRecent;
+    private final FrameList unpinned;
+
+    LruPolicy(Frame[] frames, boolean mostRecent) {
+        this.frames = frames;
+        this.mostRecent = mostRecent;
+        this.unpinned = new FrameList(frames.length);
+    }
+
+    @Override
+    public void loaded(Frame frame) {
+        if (frame.pinCount == 0) {
+            unpinned.moveToTail(frame.slot);
+        }
+    }
+
+    @Override
+    public void accessed(Frame frame) {
+        unpinned.remove(frame.slot);
+    }
+
+    @Override
+    public void unpinned(Frame frame) {
+        if (frame.pinCount == 0) {
+            unpinned.moveToTail(frame.slot);
+        }
+    }
+
+    @Override
+    public void removed(Frame frame) {
+        unpinned.remove(frame.slot);
+    }
+
+    @Override
+    public Frame victim() {
+        while (true) {
+            int idx = mostRecent ? unpinned.tail() : unpinned.head();
+            if (idx == FrameList.NONE) {
+                return null;
+            }
+            unpinned.remove(idx);
+            // Épinglée entre-temps : elle reviendra dans la liste à sa libération
+            if (frames[idx].tryClaim()) {
+                return frames[idx];
+            }
+        }
+    }
+}
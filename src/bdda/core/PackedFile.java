@@ -0,0 +1,303 @@
+package bdda.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Emplacements des pages d'un fichier compressé (DiskManager).
+ *
+ * Après la page d'en-tête, le fichier est un tas de secteurs de SECTOR_SIZE octets.
+ * Chaque page de données, et chaque bitmap de groupe, y est un enregistrement de longueur
+ * variable occupant des secteurs contigus :
+ *
+ * magic, clé (numéro de page, ou -1 - g pour la bitmap du groupe g), longueur stockée
+ * (négative = page stockée sans compression), somme de contrôle de la page non compressée,
+ * génération, somme de contrôle de l'en-tête, puis la page compressée (PageCompressor).
+ *
+ * La table des emplacements (clé -> premier secteur et nombre de secteurs) est en mémoire
+ * seulement : elle est reconstruite à l'ouverture en parcourant les en-têtes d'enregistrements
+ * (scan). Une page réécrite garde sa place si elle y tient ; sinon elle est écrite ailleurs
+ * avec une génération plus grande, puis l'en-tête de l'ancien enregistrement est effacé.
+ * Après un arrêt brutal entre les deux, l'enregistrement de plus grande génération l'emporte.
+ *
+ * Aucune entrée/sortie ici : DiskManager lit et écrit les secteurs, sous le verrou de l'objet.
+ */
+final class PackedFile {
+
+    static final int SECTOR_SIZE = 512;
+    static final int RECORD_HEADER_SIZE = 28; // magic + clé + longueur + somme + génération + somme de l'en-tête
+    private static final int RECORD_MAGIC = 0x50414745; // "PAGE"
+    private static final long NONE = -1;
+
+    private final int pageSize;
+    private final long heapStart;
+    private final int pageCount;
+    private final int groupCount;
+
+    /**
+     * pageLocations[pageIdx] / bitmapLocations[g] -> (premier secteur << 32) | nombre de secteurs,
+     * NONE si la page n'a jamais été écrite.
+     * usedSectors -> secteurs occupés par un enregistrement de la table
+     * sectorCount -> fin du tas (en secteurs)
+     * freeHint    -> aucun secteur libre avant celui-ci
+     */
+    private long[] pageLocations;
+    private long[] bitmapLocations;
+    private final BitSet usedSectors = new BitSet();
+    private int sectorCount;
+    private int freeHint;
+    private long nextGeneration = 1;
+
+    /**
+     * Pendant scan() : génération de l'enregistrement retenu pour chaque clé,
+     * et premiers secteurs des enregistrements écartés (à effacer, voir staleSectors).
+     */
+    private long[] pageGenerations;
+    private long[] bitmapGenerations;
+    private final List<Integer> stale = new ArrayList<>();
+
+    PackedFile(int pageSize, long heapStart, int pageCount, int groupCount) {
+        this.pageSize = pageSize;
+        this.heapStart = heapStart;
+        this.pageCount = pageCount;
+        this.groupCount = groupCount;
+        this.pageLocations = new long[pageCount];
+        this.bitmapLocations = new long[groupCount];
+        Arrays.fill(pageLocations, NONE);
+        Arrays.fill(bitmapLocations, NONE);
+    }
+
+    /**
+     * Clé de la bitmap du groupe g.
+     */
+    static int bitmapKey(int group) {
+        return -1 - group;
+    }
+
+    /**
+     * Position dans le fichier du secteur sector.
+     */
+    long position(int sector) {
+        return heapStart + (long) sector * SECTOR_SIZE;
+    }
+
+    /**
+     * Premier secteur de l'enregistrement de key, -1 si key n'a jamais été écrite.
+     */
+    int startOf(int key) {
+        long location = location(key);
+        return location == NONE ? -1 : (int) (location >>> 32);
+    }
+
+    /**
+     * Nombre de secteurs de l'enregistrement de key (0 si key n'a jamais été écrite).
+     */
+    int sectorsOf(int key) {
+        long location = location(key);
+        return location == NONE ? 0 : (int) location;
+    }
+
+    private long location(int key) {
+        if (key >= 0) {
+            return key < pageLocations.length ? pageLocations[key] : NONE;
+        }
+        int group = -1 - key;
+        return group < bitmapLocations.length ? bitmapLocations[group] : NONE;
+    }
+
+    /**
+     * Le fichier grandit : il compte désormais newPageCount pages et newGroupCount groupes.
+     */
+    void grow(int newPageCount, int newGroupCount) {
+        if (newPageCount > pageLocations.length) {
+            int old = pageLocations.length;
+            pageLocations = Arrays.copyOf(pageLocations, Math.max(newPageCount, old * 2));
+            Arrays.fill(pageLocations, old, pageLocations.length, NONE);
+        }
+        if (newGroupCount > bitmapLocations.length) {
+            int old = bitmapLocations.length;
+            bitmapLocations = Arrays.copyOf(bitmapLocations, newGroupCount);
+            Arrays.fill(bitmapLocations, old, newGroupCount, NONE);
+        }
+    }
+
+    /**
+     * Réserve sectors secteurs contigus : premier trou assez grand, sinon à la fin du tas.
+     *
+     * @return le premier secteur réservé
+     */
+    int allocate(int sectors) {
+        int start = usedSectors.nextClearBit(freeHint);
+        while (start < sectorCount) {
+            int end = usedSectors.nextSetBit(start);
+            if (end < 0 || end - start >= sectors) {
+                break;
+            }
+            start = usedSectors.nextClearBit(end);
+        }
+        usedSectors.set(start, start + sectors);
+        sectorCount = Math.max(sectorCount, start + sectors);
+        if (start == freeHint) {
+            freeHint = start + sectors;
+        }
+        return start;
+    }
+
+    /**
+     * Enregistre l'emplacement de key (secteurs déjà réservés par allocate, ou son ancien
+     * emplacement) et libère ce qui n'est plus utilisé de l'ancien.
+     */
+    void put(int key, int start, int sectors) {
+        int oldStart = startOf(key);
+        int oldSectors = sectorsOf(key);
+        if (oldStart >= 0) {
+            int from = oldStart == start ? oldStart + sectors : oldStart;
+            if (from < oldStart + oldSectors) {
+                usedSectors.clear(from, oldStart + oldSectors);
+                freeHint = Math.min(freeHint, from);
+            }
+        }
+        usedSectors.set(start, start + sectors);
+        long location = ((long) start << 32) | sectors;
+        if (key >= 0) {
+            pageLocations[key] = location;
+        } else {
+            bitmapLocations[-1 - key] = location;
+        }
+    }
+
+    /**
+     * Construit l'enregistrement de key (secteurs entiers, complétés par des zéros).
+     * La page n'est gardée compressée que si la compression fait gagner de la place.
+     */
+    ByteBuffer encode(int key, byte[] page, int checksum) {
+        byte[] record = new byte[RECORD_HEADER_SIZE + pageSize + SECTOR_SIZE];
+        int length = PageCompressor.compress(page, 0, pageSize, record, RECORD_HEADER_SIZE, pageSize - 1);
+        if (length < 0) {
+            System.arraycopy(page, 0, record, RECORD_HEADER_SIZE, pageSize);
+            length = -pageSize;
+        }
+
+        ByteBuffer buff = ByteBuffer.wrap(record, 0, sectorsFor(Math.abs(length)) * SECTOR_SIZE);
+        buff.putInt(0, RECORD_MAGIC);
+        buff.putInt(4, key);
+        buff.putInt(8, length);
+        buff.putInt(12, checksum);
+        buff.putLong(16, nextGeneration++);
+        buff.putInt(24, headerChecksum(buff, 0));
+        return buff;
+    }
+
+    /**
+     * Décode l'enregistrement de key lu dans record (à partir de la position 0) dans page.
+     *
+     * @return la somme de contrôle enregistrée de la page
+     * @throws IOException si l'enregistrement n'est pas celui de key ou s'il est invalide
+     */
+    int decode(ByteBuffer record, int key, byte[] page) throws IOException {
+        int length = record.getInt(8);
+        if (!isValidHeader(record, 0) || record.getInt(4) != key
+                || RECORD_HEADER_SIZE + Math.abs(length) > record.limit()) {
+            throw new IOException("Enregistrement de page invalide");
+        }
+        if (length < 0) {
+            System.arraycopy(record.array(), record.arrayOffset() + RECORD_HEADER_SIZE, page, 0, pageSize);
+        } else {
+            PageCompressor.decompress(record.array(), record.arrayOffset() + RECORD_HEADER_SIZE, length,
+                    page, 0, pageSize);
+        }
+        return record.getInt(12);
+    }
+
+    /**
+     * Parcourt les secteurs lus dans chunk (à partir du secteur firstSector, taille multiple
+     * de SECTOR_SIZE sauf à la fin du fichier) et enregistre les enregistrements valides.
+     * Un enregistrement est valide si son en-tête l'est et s'il tient dans le fichier
+     * (heapSize octets après l'en-tête du fichier) ; sinon le secteur suivant est examiné.
+     *
+     * @return le premier secteur à examiner ensuite (au-delà de chunk si un enregistrement le déborde)
+     */
+    int scan(ByteBuffer chunk, int firstSector, long heapSize) {
+        int sector = firstSector;
+        int offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= chunk.limit()) {
+            int sectors = 1;
+            if (isValidHeader(chunk, offset)) {
+                int key = chunk.getInt(offset + 4);
+                int length = Math.abs(chunk.getInt(offset + 8));
+                long end = (long) sector * SECTOR_SIZE + RECORD_HEADER_SIZE + length;
+                boolean known = key >= 0 ? key < pageCount : -1 - key < groupCount;
+                if (known && end <= heapSize) {
+                    sectors = sectorsFor(length);
+                    found(key, sector, sectors, chunk.getLong(offset + 16));
+                }
+            }
+            sector += sectors;
+            offset += sectors * SECTOR_SIZE;
+        }
+        sectorCount = (int) ((heapSize + SECTOR_SIZE - 1) / SECTOR_SIZE);
+        return Math.max(sector, firstSector + chunk.limit() / SECTOR_SIZE);
+    }
+
+    /**
+     * Garde, pour chaque clé, l'enregistrement de plus grande génération.
+     */
+    private void found(int key, int sector, int sectors, long generation) {
+        if (pageGenerations == null) {
+            pageGenerations = new long[pageCount];
+            bitmapGenerations = new long[groupCount];
+        }
+        long[] generations = key >= 0 ? pageGenerations : bitmapGenerations;
+        int index = key >= 0 ? key : -1 - key;
+
+        if (generations[index] >= generation) {
+            stale.add(sector);
+            return;
+        }
+        if (generations[index] != 0) {
+            stale.add(startOf(key)); // put() libère ses secteurs
+        }
+        generations[index] = generation;
+        nextGeneration = Math.max(nextGeneration, generation + 1);
+        put(key, sector, sectors);
+    }
+
+    /**
+     * Fin du parcours : retourne les premiers secteurs des enregistrements écartés,
+     * dont l'en-tête doit être effacé avant que leurs secteurs soient réutilisés.
+     */
+    List<Integer> staleSectors() {
+        pageGenerations = null;
+        bitmapGenerations = null;
+        freeHint = 0;
+        List<Integer> sectors = new ArrayList<>(stale);
+        stale.clear();
+        return sectors;
+    }
+
+    /**
+     * Nombre de secteurs d'un enregistrement dont la page stockée fait length octets.
+     */
+    private static int sectorsFor(int length) {
+        return (RECORD_HEADER_SIZE + length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+
+    private boolean isValidHeader(ByteBuffer buff, int offset) {
+        if (buff.getInt(offset) != RECORD_MAGIC || buff.getInt(offset + 24) != headerChecksum(buff, offset)) {
+            return false;
+        }
+        int length = buff.getInt(offset + 8);
+        return (length > 0 && length < pageSize) || length == -pageSize;
+    }
+
+    private static int headerChecksum(ByteBuffer buff, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buff.duplicate().limit(offset + 24).position(offset));
+        return (int) crc.getValue();
+    }
+}
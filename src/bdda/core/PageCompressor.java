@@ -0,0 +1,191 @@
+package bdda.core;
+
+import java.io.IOException;
+
+/**
+ * Compression des pages au format de bloc LZ4 (implémentation Java pure).
+ *
+ * Une séquence est : un jeton (longueur des littéraux sur 4 bits, longueur de la copie - 4
+ * sur 4 bits), les octets supplémentaires de longueur des littéraux, les littéraux,
+ * la distance de la copie (2 octets, petit-boutiste), puis les octets supplémentaires
+ * de longueur de la copie. La dernière séquence ne contient que des littéraux.
+ *
+ * Les pages sont petites (quelques Ko) : une seule table de hachage de 4096 entrées suffit,
+ * et les colonnes CHAR/VARCHAR complétées par des espaces se compressent très bien.
+ */
+final class PageCompressor {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MF_LIMIT = 12;      // aucune copie ne commence dans les 12 derniers octets
+    private static final int LAST_LITERALS = 5;  // les 5 derniers octets sont toujours des littéraux
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 12;
+
+    private PageCompressor() {
+    }
+
+    /**
+     * Compresse src[srcOff, srcOff + srcLen) dans dst à partir de dstOff.
+     *
+     * @param dstMax nombre maximal d'octets à écrire dans dst
+     * @return la taille compressée, ou -1 si elle dépasserait dstMax
+     */
+    static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstMax) {
+        int end = srcOff + srcLen;
+        int dstEnd = dstOff + dstMax;
+        int anchor = srcOff;
+        int op = dstOff;
+
+        if (srcLen > MF_LIMIT) {
+            int[] table = new int[1 << HASH_LOG]; // position + 1 (0 = vide)
+            int matchLimit = end - MF_LIMIT;
+            int literalsLimit = end - LAST_LITERALS;
+            int ip = srcOff;
+            int misses = 0;
+
+            while (ip < matchLimit) {
+                int sequence = readInt(src, ip);
+                int h = hash(sequence);
+                int ref = table[h] - 1;
+                table[h] = ip + 1;
+
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    ip += 1 + (misses++ >> 6); // accélère sur les données incompressibles
+                    continue;
+                }
+                misses = 0;
+
+                // Étendre la copie vers l'arrière puis vers l'avant
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLen = MIN_MATCH;
+                while (ip + matchLen < literalsLimit && src[ip + matchLen] == src[ref + matchLen]) {
+                    matchLen++;
+                }
+
+                int literalLen = ip - anchor;
+                if (op + 1 + literalLen + literalLen / 255 + 1 + 2 + matchLen / 255 + 1 > dstEnd) {
+                    return -1;
+                }
+                int token = op++;
+                dst[token] = 0;
+                op = writeLength(dst, op, token, literalLen, 4);
+                System.arraycopy(src, anchor, dst, op, literalLen);
+                op += literalLen;
+                int distance = ip - ref;
+                dst[op++] = (byte) distance;
+                dst[op++] = (byte) (distance >>> 8);
+                op = writeLength(dst, op, token, matchLen - MIN_MATCH, 0);
+
+                ip += matchLen;
+                anchor = ip;
+            }
+        }
+
+        // Derniers littéraux
+        int literalLen = end - anchor;
+        if (op + 1 + literalLen + literalLen / 255 + 1 > dstEnd) {
+            return -1;
+        }
+        int token = op++;
+        dst[token] = 0;
+        op = writeLength(dst, op, token, literalLen, 4);
+        System.arraycopy(src, anchor, dst, op, literalLen);
+        op += literalLen;
+
+        return op - dstOff;
+    }
+
+    /**
+     * Décompresse src[srcOff, srcOff + srcLen) dans dst[dstOff, dstOff + dstLen).
+     *
+     * @throws IOException si les données compressées sont invalides
+     *                     ou ne redonnent pas exactement dstLen octets
+     */
+    static void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException {
+        int ip = srcOff;
+        int end = srcOff + srcLen;
+        int op = dstOff;
+        int dstEnd = dstOff + dstLen;
+
+        try {
+            while (ip < end) {
+                int token = src[ip++] & 0xFF;
+
+                int literalLen = token >>> 4;
+                if (literalLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLen += b;
+                    } while (b == 255);
+                }
+                if (ip + literalLen > end || op + literalLen > dstEnd) {
+                    throw new IOException("Page compressée invalide (littéraux)");
+                }
+                System.arraycopy(src, ip, dst, op, literalLen);
+                ip += literalLen;
+                op += literalLen;
+
+                if (ip >= end) {
+                    break; // dernière séquence : littéraux seulement
+                }
+
+                int distance = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLen = token & 0x0F;
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+
+                int ref = op - distance;
+                if (distance == 0 || ref < dstOff || op + matchLen > dstEnd) {
+                    throw new IOException("Page compressée invalide (copie)");
+                }
+                // Copie octet par octet : la source peut chevaucher la destination
+                for (int i = 0; i < matchLen; i++) {
+                    dst[op++] = dst[ref++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Page compressée invalide (tronquée)");
+        }
+
+        if (op != dstEnd) {
+            throw new IOException("Page compressée invalide (" + (op - dstOff) + " octets au lieu de " + dstLen + ")");
+        }
+    }
+
+    /**
+     * Écrit une longueur : les 4 bits du jeton (décalés de shift), puis des octets 255... si besoin.
+     */
+    private static int writeLength(byte[] dst, int op, int token, int length, int shift) {
+        if (length < 15) {
+            dst[token] |= (byte) (length << shift);
+            return op;
+        }
+        dst[token] |= (byte) (15 << shift);
+        length -= 15;
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
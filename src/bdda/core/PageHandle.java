@@ -0,0 +1,107 @@
+package bdda.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Page épinglée et verrouillée par BufferManager.pin, à fermer après usage
+ * (try-with-resources) : close() relâche le verrou puis l'épinglage, une seule fois
+ * même si close() est rappelé.
+ *
+ * En mode OPTIMISTIC, aucun verrou n'est pris : la page est lue telle quelle, puis
+ * validate() indique si un écrivain (verrou EXCLUSIVE) l'a modifiée entre-temps.
+ * Les valeurs lues ne doivent être utilisées qu'après une validation réussie ;
+ * sinon restart() permet de relire la page.
+ *
+ * Un handle appartient au thread qui l'a obtenu. Les verrous ne sont pas réentrants :
+ * un thread ne doit pas demander deux fois la même page si l'un des modes est EXCLUSIVE.
+ */
+public final class PageHandle implements AutoCloseable {
+
+    private final BufferManager bufferManager;
+    private final Frame frame;
+    private final PageId pageId;
+    private final LatchMode mode;
+    private long stamp;
+    private boolean dirty;
+    private boolean closed;
+
+    PageHandle(BufferManager bufferManager, Frame frame, PageId pageId, LatchMode mode, long stamp) {
+        this.bufferManager = bufferManager;
+        this.frame = frame;
+        this.pageId = pageId;
+        this.mode = mode;
+        this.stamp = stamp;
+        this.dirty = false;
+        this.closed = false;
+    }
+
+    public PageId getPageId() {
+        return pageId;
+    }
+
+    public LatchMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return une vue de la page (position 0), en lecture seule sauf en mode EXCLUSIVE
+     */
+    public ByteBuffer getBuffer() {
+        checkOpen();
+        return mode == LatchMode.EXCLUSIVE ? frame.view() : frame.readOnlyView();
+    }
+
+    /**
+     * Signale que la page a été modifiée : elle sera écrite sur disque avant d'être remplacée.
+     *
+     * @throws IllegalStateException si la page n'est pas verrouillée en mode EXCLUSIVE
+     */
+    public void markDirty() {
+        checkOpen();
+        if (mode != LatchMode.EXCLUSIVE) {
+            throw new IllegalStateException("Page (" + pageId.getFileIdx() + "," + pageId.getPageIdx()
+                    + ") modifiée sans verrou exclusif");
+        }
+        dirty = true;
+    }
+
+    /**
+     * @return true si la page n'a pas été modifiée par un écrivain depuis pin() ou restart()
+     *         (toujours true en mode SHARED ou EXCLUSIVE)
+     */
+    public boolean validate() {
+        checkOpen();
+        return mode != LatchMode.OPTIMISTIC || frame.latch.validate(stamp);
+    }
+
+    /**
+     * Mode OPTIMISTIC : reprend une lecture après un échec de validate()
+     * (attend qu'aucun écrivain ne tienne la page).
+     */
+    public void restart() {
+        checkOpen();
+        if (mode == LatchMode.OPTIMISTIC) {
+            stamp = BufferManager.optimisticStamp(frame);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (mode == LatchMode.SHARED) {
+            frame.latch.unlockRead(stamp);
+        } else if (mode == LatchMode.EXCLUSIVE) {
+            frame.latch.unlockWrite(stamp);
+        }
+        bufferManager.unpin(frame, dirty);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Page (" + pageId.getFileIdx() + "," + pageId.getPageIdx() + ") déjà libérée");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package bdda.core;
+
+import java.util.Arrays;
+
+/**
+ * Table des pages du BufferManager : page en mémoire -> indice de sa frame.
+ *
+ * Table de hachage à adressage ouvert (sondage linéaire) sur des tableaux primitifs :
+ * la clé est le PageId compacté en long (fileIdx << 32 | pageIdx), la valeur l'indice
+ * de la frame. Aucune allocation par accès (pas de String ni d'Integer), contrairement
+ * à une HashMap. La table n'est jamais remplie à plus de 50 % : sa capacité double
+ * si besoin (jamais si elle ne dépasse pas le nombre d'entrées donné à la création).
+ * Non synchronisée : le BufferManager protège chacune de ses tables par un verrou.
+ */
+public final class PageTable {
+
+    /**
+     * Parcours des entrées sans allocation (voir forEach).
+     */
+    public interface Visitor {
+        void visit(int fileIdx, int pageIdx, int frameIdx);
+    }
+
+    // Les indices de fichier et de page sont positifs : une clé n'est jamais négative
+    private static final long EMPTY = -1L;
+    static final int NOT_FOUND = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * @param expectedEntries nombre d'entrées prévu (par exemple le nombre de frames)
+     */
+    PageTable(int expectedEntries) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedEntries) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        clear();
+    }
+
+    static long key(PageId pageId) {
+        return key(pageId.getFileIdx(), pageId.getPageIdx());
+    }
+
+    static long key(int fileIdx, int pageIdx) {
+        return ((long) fileIdx << 32) | (pageIdx & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return l'indice de la frame contenant la page, ou NOT_FOUND
+     */
+    int get(long key) {
+        int slot = slotOf(key);
+        long k;
+        while ((k = keys[slot]) != EMPTY) {
+            if (k == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != NOT_FOUND;
+    }
+
+    void put(long key, int frameIdx) {
+        int slot = slotOf(key);
+        long k;
+        while ((k = keys[slot]) != EMPTY) {
+            if (k == key) {
+                values[slot] = frameIdx;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+            put(key, frameIdx);
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = frameIdx;
+        size++;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    /**
+     * Retire la page. Les entrées suivantes de la même suite sont recalées
+     * (suppression par décalage arrière) : aucune marque de suppression.
+     */
+    void remove(long key) {
+        int slot = slotOf(key);
+        long k;
+        while ((k = keys[slot]) != key) {
+            if (k == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size--;
+
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while ((k = keys[next]) != EMPTY) {
+            int home = slotOf(k);
+            // L'entrée peut combler le trou si son emplacement d'origine
+            // n'est pas strictement entre le trou et sa position actuelle
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = k;
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            long k = keys[slot];
+            if (k != EMPTY) {
+                visitor.visit((int) (k >>> 32), (int) k, values[slot]);
+            }
+        }
+    }
+
+    private int slotOf(long key) {
+        // Mélange (constante de Fibonacci) : les pages consécutives ne se suivent pas dans la table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,83 @@
+package bdda.core;
+
+/**
+ * Politique de remplacement du BufferManager.
+ *
+ * Une politique gère les frames d'une partition du BufferManager, repérées par
+ * Frame.slot (de 0 au nombre de frames données à create). Ses méthodes sont appelées
+ * sous le verrou de la partition : une politique n'a pas à être synchronisée. Seul pinCount peut changer pendant un appel
+ * (épinglages sans verrou) : la victime est réservée par Frame.tryClaim.
+ *
+ * Le BufferManager prévient la politique de chaque événement sur une frame
+ * (page chargée, page épinglée, page libérée, page retirée) et lui demande une
+ * victime quand il n'a plus de frame libre. Les frames libres (sans page) sont
+ * gérées par le BufferManager lui-même et ne sont jamais proposées comme victimes.
+ */
+interface ReplacementPolicy {
+
+    /**
+     * Crée la politique choisie pour les frames données (LRU si aucune n'est configurée).
+     */
+    static ReplacementPolicy create(BufferPolicy policy, Frame[] frames) {
+        if (policy == null) {
+            return new LruPolicy(frames, false);
+        }
+        switch (policy) {
+            case MRU:
+                return new LruPolicy(frames, true);
+            case CLOCK:
+                return new ClockPolicy(frames);
+            case CLOCK_PRO:
+                return new ClockProPolicy(frames);
+            case TWO_Q:
+                return new TwoQPolicy(frames);
+            case LRU_2:
+                return new Lru2Policy(frames);
+            case ARC:
+                return new ArcPolicy(frames);
+            case LRU:
+            default:
+                return new LruPolicy(frames, false);
+        }
+    }
+
+    /**
+     * Une page vient d'être chargée dans la frame (défaut de page ou préchargement).
+     */
+    void loaded(Frame frame);
+
+    /**
+     * Une page vient d'être préchargée dans la frame (Prefetch, lecture anticipée) :
+     * elle n'a pas encore été demandée. Elle doit entrer avec une priorité basse, sans
+     * compter comme une réutilisation ; son premier accès compte comme un chargement.
+     * Par défaut, comme loaded.
+     */
+    default void prefetched(Frame frame) {
+        loaded(frame);
+    }
+
+    /**
+     * La page de la frame, déjà en mémoire, vient d'être épinglée (GetPage).
+     */
+    void accessed(Frame frame);
+
+    /**
+     * La page de la frame vient d'être libérée (FreePage).
+     */
+    default void unpinned(Frame frame) {
+    }
+
+    /**
+     * La frame a perdu sa page sans passer par victim() (lecture échouée, FlushBuffers, discardPage).
+     */
+    void removed(Frame frame);
+
+    /**
+     * Choisit une frame non épinglée contenant une page à remplacer, et la réserve
+     * (Frame.tryClaim ; une frame épinglée entre-temps est sautée).
+     * La frame choisie est considérée comme retirée de la politique.
+     *
+     * @return la victime, ou null si toutes les pages en mémoire sont épinglées
+     */
+    Frame victim();
+}
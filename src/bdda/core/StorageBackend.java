@@ -0,0 +1,147 @@
+package bdda.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stockage des pages utilisé par le BufferManager, les relations et le DBManager.
+ *
+ * Deux implémentations, choisies au démarrage par dm_backend (voir open) :
+ * FILE   -> DiskManager, fichiers Data.bin persistants
+ * MEMORY -> InMemoryBackend, pages hors tas (off-heap) perdues à l'arrêt
+ *
+ * Les lectures/écritures groupées et asynchrones ont une version par défaut
+ * page par page, qu'une implémentation peut remplacer.
+ */
+public interface StorageBackend {
+
+    /**
+     * Crée le stockage choisi par la configuration (dm_backend).
+     *
+     * @param config configuration de la base de données
+     * @return le stockage initialisé
+     * @throws IOException si le stockage ne peut pas être ouvert
+     */
+    static StorageBackend open(DBConfig config) throws IOException {
+        if (config.getBackend() == BackendType.MEMORY) {
+            return new InMemoryBackend(config);
+        }
+        return new DiskManager(config);
+    }
+
+    /**
+     * @return la configuration utilisée par ce stockage
+     */
+    DBConfig getConfig();
+
+    /**
+     * Indique si les pages survivent à finish() (et donc si l'état du DBManager
+     * doit être sauvegardé).
+     */
+    boolean isPersistent();
+
+    /**
+     * Alloue une page.
+     *
+     * @return identifiant de la page allouée
+     * @throws IOException si plus aucune page ne peut être allouée
+     */
+    PageId allocPage() throws IOException;
+
+    /**
+     * Alloue une page en privilégiant la proximité avec near (peut être ignoré).
+     */
+    default PageId allocPage(PageId near) throws IOException {
+        return allocPage();
+    }
+
+    /**
+     * Libère une page, qui pourra être réutilisée par une allocation suivante.
+     *
+     * @throws IOException si la page n'existe pas
+     */
+    void DeallocPage(PageId pageId) throws IOException;
+
+    /**
+     * Nombre de pages existantes du fichier fileIdx (0 s'il n'existe pas) : les pages
+     * d'indice inférieur peuvent être lues. Sans verrou, indicatif en concurrence.
+     */
+    int getPageCount(int fileIdx);
+
+    /**
+     * Copie le contenu de la page dans buff (config.getPageSize() octets).
+     */
+    void ReadPage(PageId pageId, byte[] buff) throws IOException;
+
+    /**
+     * Écrit buff (config.getPageSize() octets) dans la page.
+     */
+    void WritePage(PageId pageId, byte[] buff) throws IOException;
+
+    /**
+     * Lit count pages consécutives à partir de first, un buffer par page
+     * (config.getPageSize() octets restants ; leur position est avancée).
+     */
+    default void ReadPages(PageId first, int count, ByteBuffer[] dests) throws IOException {
+        byte[] page = new byte[getConfig().getPageSize()];
+        for (int i = 0; i < count; i++) {
+            ReadPage(new PageId(first.getFileIdx(), first.getPageIdx() + i), page);
+            dests[i].put(page);
+        }
+    }
+
+    /**
+     * Écrit count pages consécutives à partir de first, un buffer par page.
+     */
+    default void WritePages(PageId first, int count, ByteBuffer[] srcs) throws IOException {
+        byte[] page = new byte[getConfig().getPageSize()];
+        for (int i = 0; i < count; i++) {
+            srcs[i].get(page);
+            WritePage(new PageId(first.getFileIdx(), first.getPageIdx() + i), page);
+        }
+    }
+
+    /**
+     * Lecture asynchrone d'une suite de pages. Par défaut, la lecture est faite
+     * tout de suite et le futur rendu est déjà terminé.
+     */
+    default CompletableFuture<Void> readPagesAsync(PageId first, int count, ByteBuffer[] dests) {
+        try {
+            ReadPages(first, count, dests);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Écriture asynchrone d'une suite de pages (voir readPagesAsync).
+     */
+    default CompletableFuture<Void> writePagesAsync(PageId first, int count, ByteBuffer[] srcs) {
+        try {
+            WritePages(first, count, srcs);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    default CompletableFuture<Void> readPageAsync(PageId pageId, ByteBuffer dest) {
+        return readPagesAsync(pageId, 1, new ByteBuffer[] { dest });
+    }
+
+    default CompletableFuture<Void> writePageAsync(PageId pageId, ByteBuffer src) {
+        return writePagesAsync(pageId, 1, new ByteBuffer[] { src });
+    }
+
+    /**
+     * Rend durables toutes les écritures faites jusqu'ici.
+     */
+    void force() throws IOException;
+
+    /**
+     * Ferme le stockage à l'arrêt du SGBD.
+     */
+    void finish() throws IOException;
+}
@@ -7,9 +7,10 @@ import java.util.List;
 import java.util.Map;
 
 import bdda.core.BufferManager;
+import bdda.core.BufferPoolName;
 import bdda.core.DBConfig;
-import bdda.core.DiskManager;
 import bdda.core.PageId;
+import bdda.core.StorageBackend;
 import bdda.storage.ColumnInfo;
 import bdda.storage.Relation;
 
@@ -20,7 +21,7 @@ import bdda.storage.Relation;
 public class DBManager {
     
     private DBConfig config;
-    private DiskManager diskManager;
+    private StorageBackend diskManager;
     private BufferManager bufferManager;
     
     // Structure pour stocker les relations (nom -> Relation)
@@ -35,7 +36,7 @@ public class DBManager {
      */
     public DBManager(DBConfig config) throws IOException {
         this.config = config;
-        this.diskManager = new DiskManager(config);
+        this.diskManager = StorageBackend.open(config);
         this.bufferManager = new BufferManager(config, diskManager);
         this.tables = new HashMap<>();
     }
@@ -43,10 +44,10 @@ public class DBManager {
     /**
      * Constructeur - utilise les instances fournies
      * @param config configuration de la base de donnees
-     * @param diskManager instance de DiskManager
+     * @param diskManager stockage des pages (DiskManager ou InMemoryBackend)
      * @param bufferManager instance de BufferManager
      */
-    public DBManager(DBConfig config, DiskManager diskManager, BufferManager bufferManager) {
+    public DBManager(DBConfig config, StorageBackend diskManager, BufferManager bufferManager) {
         this.config = config;
         this.diskManager = diskManager;
         this.bufferManager = bufferManager;
@@ -54,9 +55,9 @@ public class DBManager {
     }
     
     /**
-     * Retourne le DiskManager
+     * Retourne le stockage des pages
      */
-    public DiskManager getDiskManager() {
+    public StorageBackend getDiskManager() {
         return diskManager;
     }
     
@@ -103,17 +104,35 @@ public class DBManager {
             // Supprimer toutes les pages de donnees de la relation
             List<PageId> dataPages = table.getDataPages();
             for (PageId pageId : dataPages) {
+                bufferManager.discardPage(pageId);
                 diskManager.DeallocPage(pageId);
             }
             
             // Supprimer la header page
+            bufferManager.discardPage(table.getHeaderPageId());
             diskManager.DeallocPage(table.getHeaderPageId());
             
             // Retirer de la map
             tables.remove(nomTable);
+            table.getBufferManager().removeAccessCounters(nomTable);
         }
     }
     
+    /**
+     * Change le buffer pool des pages de donnees d'une table (voir Relation.setBufferPool)
+     * @param nomTable le nom de la table
+     * @param pool le buffer pool (KEEP, DEFAULT ou RECYCLE)
+     * @return false si la table n'existe pas
+     */
+    public boolean SetTablePool(String nomTable, BufferPoolName pool) throws IOException {
+        Relation table = tables.get(nomTable);
+        if (table == null) {
+            return false;
+        }
+        table.setBufferPool(pool);
+        return true;
+    }
+    
     /**
      * Supprime toutes les tables de la base de donnees
      */
@@ -183,10 +202,22 @@ public class DBManager {
      *   - Pour chaque colonne :
      *     - Nom de la colonne (String)
      *     - Type de la colonne (String)
+     * - Pour chaque table, dans le meme ordre : son buffer pool (String)
+     *   (absent des sauvegardes anterieures aux buffer pools nommes : pool DEFAULT)
      */
     public void SaveState() throws IOException {
-        // Flush les buffers avant de sauvegarder
-        bufferManager.FlushBuffers();
+        // Écrire les pages modifiées avant de sauvegarder (les buffer pools restent chauds),
+        // puis rendre durables en une fois les pages, bitmaps et en-tetes (StorageBackend.force) :
+        // apres un arret brutal, la carte d'espace ne doit pas redonner des pages des tables sauvegardees
+        for (BufferManager pool : bufferManager.getPools()) {
+            pool.checkpoint(false);
+        }
+        diskManager.force();
+        
+        // Stockage en mémoire : les pages disparaissent à l'arrêt, rien à sauvegarder
+        if (!diskManager.isPersistent()) {
+            return;
+        }
         
         String savePath = config.getPath() + File.separator + SAVE_FILE;
         
@@ -195,7 +226,8 @@ public class DBManager {
             dos.writeInt(tables.size());
             
             // Pour chaque table
-            for (Relation table : tables.values()) {
+            List<Relation> ordered = new ArrayList<>(tables.values());
+            for (Relation table : ordered) {
                 // Nom de la table
                 dos.writeUTF(table.getName());
                 
@@ -212,6 +244,11 @@ public class DBManager {
                     dos.writeUTF(col.getType());
                 }
             }
+            
+            // Buffer pools
+            for (Relation table : ordered) {
+                dos.writeUTF(table.getBufferPool().name());
+            }
         }
     }
     
@@ -222,14 +259,17 @@ public class DBManager {
         String savePath = config.getPath() + File.separator + SAVE_FILE;
         File saveFile = new File(savePath);
         
-        // Si le fichier n'existe pas, rien a charger
-        if (!saveFile.exists()) {
+        // Si le fichier n'existe pas (ou si le stockage est en memoire), rien a charger
+        if (!saveFile.exists() || !diskManager.isPersistent()) {
             return;
         }
         
         try (DataInputStream dis = new DataInputStream(new FileInputStream(savePath))) {
             // Nombre de tables
             int nbTables = dis.readInt();
+            List<String> names = new ArrayList<>();
+            List<List<ColumnInfo>> schemas = new ArrayList<>();
+            List<PageId> headerPageIds = new ArrayList<>();
             
             // Pour chaque table
             for (int i = 0; i < nbTables; i++) {
@@ -251,9 +291,17 @@ public class DBManager {
                     columns.add(new ColumnInfo(colName, colType));
                 }
                 
-                // Recreer la relation avec le constructeur pour relation existante
-                Relation table = new Relation(name, columns, headerPageId, diskManager, bufferManager);
-                tables.put(name, table);
+                names.add(name);
+                schemas.add(columns);
+                headerPageIds.add(headerPageId);
+            }
+            
+            // Recreer les relations avec le constructeur pour relation existante, dans leur buffer pool
+            for (int i = 0; i < nbTables; i++) {
+                BufferPoolName pool = dis.available() > 0 ? BufferPoolName.parse(dis.readUTF()) : BufferPoolName.DEFAULT;
+                Relation table = new Relation(names.get(i), schemas.get(i), headerPageIds.get(i),
+                        diskManager, bufferManager, pool);
+                tables.put(names.get(i), table);
             }
         }
     }
@@ -285,7 +333,11 @@ public class DBManager {
      */
     public void Finish() throws IOException {
         SaveState();
-        bufferManager.FlushBuffers();
+        for (BufferManager pool : bufferManager.getPools()) {
+            pool.finish();
+            pool.FlushBuffers();
+        }
+        diskManager.force();
         diskManager.finish();
     }
 }
\ No newline at end of file
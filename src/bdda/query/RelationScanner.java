@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import bdda.core.BufferAccessStrategy;
 import bdda.core.BufferManager;
 import bdda.core.PageId;
 import bdda.storage.Record;
@@ -17,6 +18,10 @@ public class RelationScanner implements IRecordIterator {
     
     private Relation relation;
     private BufferManager bufferManager;
+    // Anneau de frames du parcours (null : pages prises dans tout le buffer pool)
+    private BufferAccessStrategy strategy;
+    // Nombre de pages prechargees a la fois (au plus le quart de l'anneau)
+    private int prefetchPages;
     
     // Liste des pages de donnees
     private List<PageId> dataPages;
@@ -25,15 +30,29 @@ public class RelationScanner implements IRecordIterator {
     
     // Page courante en memoire
     private PageId currentPageId;
-    private byte[] currentBuffer;
+    private ByteBuffer currentBuffer;
     
     // Constantes
     private static final int DATA_PAGE_HEADER_SIZE = 16;
+    // Nombre de pages prechargees a la fois (lecture groupee des pages contigues).
+    // Le prechargement est asynchrone : la fenetre suivante est demandee des le debut
+    // de la fenetre courante, pour que sa lecture se fasse pendant le traitement.
+    private static final int PREFETCH_PAGES = 8;
     
     public RelationScanner(Relation relation, BufferManager bufferManager) throws IOException {
+        this(relation, bufferManager, null);
+    }
+    
+    /**
+     * Parcours qui charge ses pages dans un anneau de frames (BufferAccessType.BULK_READ) :
+     * un parcours complet ne chasse pas les pages des autres sessions
+     */
+    public RelationScanner(Relation relation, BufferManager bufferManager, BufferAccessStrategy strategy) throws IOException {
         this.relation = relation;
         this.bufferManager = bufferManager;
-        this.dataPages = relation.getDataPages();
+        this.strategy = strategy;
+        this.prefetchPages = strategy == null ? PREFETCH_PAGES : Math.min(PREFETCH_PAGES, strategy.size() / 4);
+        this.dataPages = relation.getDataPages(strategy);
         this.currentPageIndex = 0;
         this.currentSlotIndex = 0;
         this.currentPageId = null;
@@ -53,11 +72,16 @@ public class RelationScanner implements IRecordIterator {
                     bufferManager.FreePage(currentPageId, false);
                 }
                 
+                if (prefetchPages > 0 && currentPageIndex % prefetchPages == 0) {
+                    bufferManager.Prefetch(dataPages.subList(currentPageIndex,
+                            Math.min(currentPageIndex + 2 * prefetchPages, dataPages.size())), strategy);
+                }
+                
                 currentPageId = dataPages.get(currentPageIndex);
-                currentBuffer = bufferManager.GetPage(currentPageId);
+                currentBuffer = bufferManager.GetPageBuffer(currentPageId, strategy, relation.getAccessCounters());
             }
             
-            ByteBuffer bb = ByteBuffer.wrap(currentBuffer);
+            ByteBuffer bb = currentBuffer;
             
             // Chercher le prochain slot occupe
             while (currentSlotIndex < slotCount) {
@@ -93,7 +117,7 @@ public class RelationScanner implements IRecordIterator {
     @Override
     public void Reset() throws IOException {
         Close();
-        this.dataPages = relation.getDataPages();
+        this.dataPages = relation.getDataPages(strategy);
         this.currentPageIndex = 0;
         this.currentSlotIndex = 0;
     }
@@ -8,10 +8,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
+import bdda.core.BufferAccessStrategy;
+import bdda.core.BufferAccessType;
 import bdda.core.BufferManager;
+import bdda.core.BufferPoolName;
 import bdda.core.DBConfig;
-import bdda.core.DiskManager;
 import bdda.core.PageId;
+import bdda.core.StorageBackend;
 import bdda.manager.DBManager;
 import bdda.query.Condition;
 import bdda.query.IRecordIterator;
@@ -32,7 +35,7 @@ import bdda.storage.Relation;
 public class SGBD {
     
     private DBConfig config;
-    private DiskManager diskManager;
+    private StorageBackend diskManager;
     private BufferManager bufferManager;
     private DBManager dbManager;
     
@@ -45,10 +48,15 @@ public class SGBD {
      */
     public SGBD(DBConfig config) throws IOException {
         this.config = config;
-        this.diskManager = new DiskManager(config);
+        this.diskManager = StorageBackend.open(config);
         this.bufferManager = new BufferManager(config, diskManager);
         this.dbManager = new DBManager(config, diskManager, bufferManager);
         this.running = true;
+        
+        // Statistiques des buffer pools consultables par JMX (jconsole : bdda:type=BufferPool)
+        for (BufferManager pool : bufferManager.getPools()) {
+            pool.registerMBean();
+        }
     }
 
     public DBConfig getConfig() {
@@ -123,6 +131,12 @@ public class SGBD {
         else if (command.startsWith("UPDATE ")) {
             ProcessUpdateCommand(command);
         }
+        else if (command.startsWith("SET BUFFERCOUNT ")) {
+            ProcessSetBufferCountCommand(command);
+        }
+        else if (command.startsWith("SET POOL ")) {
+            ProcessSetPoolCommand(command);
+        }
         else if (command.equals("EXIT")) {
             ProcessExitCommand(command);
         }
@@ -225,6 +239,56 @@ public class SGBD {
         dbManager.DescribeAllTables();
     }
     
+    /**
+     * Traite la commande SET BUFFERCOUNT
+     * Format : SET BUFFERCOUNT n
+     * Change le nombre de frames du buffer pool sans redemarrer
+     */
+    private void ProcessSetBufferCountCommand(String command) throws IOException {
+        // Enlever "SET BUFFERCOUNT "
+        String value = command.substring(16).trim();
+        
+        int count;
+        try {
+            count = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Nombre de frames invalide : " + value);
+            return;
+        }
+        if (count < 1) {
+            System.out.println("Nombre de frames invalide : " + value);
+            return;
+        }
+        
+        bufferManager.SetBufferCount(count);
+    }
+    
+    /**
+     * Traite la commande SET POOL
+     * Format : SET POOL NomTable KEEP|DEFAULT|RECYCLE
+     * Place les pages de donnees de la table dans le buffer pool donne
+     */
+    private void ProcessSetPoolCommand(String command) throws IOException {
+        // Enlever "SET POOL "
+        String[] parts = command.substring(9).trim().split("\\s+");
+        if (parts.length != 2) {
+            System.out.println("Erreur de syntaxe : SET POOL NomTable KEEP|DEFAULT|RECYCLE");
+            return;
+        }
+        
+        BufferPoolName pool;
+        try {
+            pool = BufferPoolName.parse(parts[1]);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Buffer pool inconnu : " + parts[1]);
+            return;
+        }
+        
+        if (!dbManager.SetTablePool(parts[0], pool)) {
+            System.out.println("Table inexistante : " + parts[0]);
+        }
+    }
+    
     /**
      * Traite la commande EXIT
      * Sauvegarde et quitte
@@ -233,10 +297,16 @@ public class SGBD {
         // Sauvegarder l'etat
         dbManager.SaveState();
         
-        // Flush les buffers
-        bufferManager.FlushBuffers();
+        // Arreter l'ecriture en tache de fond, puis flush les buffers (tous les pools)
+        for (BufferManager pool : bufferManager.getPools()) {
+            pool.finish();
+            pool.FlushBuffers();
+        }
+        
+        // Forcer l'écriture sur disque (segments projetés en mode MMAP)
+        diskManager.force();
         
-        // Fermer le DiskManager
+        // Fermer le stockage des pages
         diskManager.finish();
         
         // Arreter la boucle
@@ -367,6 +437,8 @@ public class SGBD {
             return;
         }
 
+        // Chargement de masse : les pages de la relation passent par un anneau de frames
+        BufferAccessStrategy strategy = relation.getBufferManager().getAccessStrategy(BufferAccessType.BULK_WRITE);
         try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -376,7 +448,7 @@ public class SGBD {
                 
                 List<Object> values = parseValues(line, relation.getColumns());
                 Record record = new Record(values);
-                relation.InsertRecord(record);
+                relation.InsertRecord(record, strategy);
             }
         }
     }
@@ -423,7 +495,9 @@ public class SGBD {
         }
         
         // Creer la chaine d'iterateurs
-        IRecordIterator scanner = new RelationScanner(relation, bufferManager);
+        // Parcours complet : pages chargées dans un anneau de frames
+        BufferAccessStrategy strategy = relation.getBufferManager().getAccessStrategy(BufferAccessType.BULK_READ);
+        IRecordIterator scanner = new RelationScanner(relation, relation.getBufferManager(), strategy);
         IRecordIterator selector = new SelectOperator(scanner, conditions, relation.getColumns());
         IRecordIterator projector = new ProjectOperator(selector, projectIndices);
         
@@ -650,14 +724,15 @@ public class SGBD {
         int deleteCount = 0;
         List<RecordId> toDelete = new ArrayList<>();
         
-        // D'abord, collecter les RecordIds a supprimer
-        List<PageId> dataPages = relation.getDataPages();
+        // D'abord, collecter les RecordIds a supprimer (parcours complet dans un anneau de frames)
+        BufferManager pool = relation.getBufferManager();
+        BufferAccessStrategy strategy = pool.getAccessStrategy(BufferAccessType.BULK_WRITE);
+        List<PageId> dataPages = relation.getDataPages(strategy);
         int slotCount = relation.getSlotCount();
         int bytemapOffset = 16 + (slotCount * relation.getRecordSize());
         
         for (PageId pageId : dataPages) {
-            byte[] buffer = bufferManager.GetPage(pageId);
-            java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(buffer);
+            java.nio.ByteBuffer bb = pool.GetPageBuffer(pageId, strategy, relation.getAccessCounters());
             
             for (int slotIdx = 0; slotIdx < slotCount; slotIdx++) {
                 if (bb.get(bytemapOffset + slotIdx) == 1) {
@@ -680,12 +755,12 @@ public class SGBD {
                 }
             }
             
-            bufferManager.FreePage(pageId, false);
+            pool.FreePage(pageId, false);
         }
         
         // Supprimer les records
         for (RecordId rid : toDelete) {
-            relation.DeleteRecord(rid);
+            relation.DeleteRecord(rid, strategy);
             deleteCount++;
         }
         
@@ -752,13 +827,15 @@ public class SGBD {
         
         // Parcourir et modifier les records qui matchent
         int updateCount = 0;
-        List<PageId> dataPages = relation.getDataPages();
+        // Parcours complet qui modifie ses pages : anneau de frames réécrites par l'UPDATE lui-même
+        BufferManager pool = relation.getBufferManager();
+        BufferAccessStrategy strategy = pool.getAccessStrategy(BufferAccessType.BULK_WRITE);
+        List<PageId> dataPages = relation.getDataPages(strategy);
         int slotCount = relation.getSlotCount();
         int bytemapOffset = 16 + (slotCount * relation.getRecordSize());
         
         for (PageId pageId : dataPages) {
-            byte[] buffer = bufferManager.GetPage(pageId);
-            java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(buffer);
+            java.nio.ByteBuffer bb = pool.GetPageBuffer(pageId, strategy, relation.getAccessCounters());
             boolean pageModified = false;
             
             for (int slotIdx = 0; slotIdx < slotCount; slotIdx++) {
@@ -791,7 +868,7 @@ public class SGBD {
                 }
             }
             
-            bufferManager.FreePage(pageId, pageModified);
+            pool.FreePage(pageId, pageModified);
         }
         
         System.out.println("Total updated records=" + updateCount);
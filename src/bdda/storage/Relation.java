@@ -5,9 +5,14 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import bdda.core.AccessCounters;
+import bdda.core.BufferAccessStrategy;
 import bdda.core.BufferManager;
-import bdda.core.DiskManager;
+import bdda.core.BufferPoolName;
+import bdda.core.LatchMode;
+import bdda.core.PageHandle;
 import bdda.core.PageId;
+import bdda.core.StorageBackend;
 
 /**
  * Représente une relation (table) avec son schéma et son Heap File
@@ -20,8 +25,13 @@ public class Relation {
     // TP5 : Nouveaux attributs
     private PageId headerPageId;
     private int slotCount;  // Nombre de slots par page de données
-    private DiskManager diskManager;
+    private StorageBackend diskManager;
+    // Pool des pages de données (voir setBufferPool) ; la Header Page est dans le pool KEEP
+    private BufferPoolName pool;
     private BufferManager bufferManager;
+    private BufferManager headerPool;
+    // Succès et défauts des accès aux pages de données (statistiques du buffer pool)
+    private AccessCounters accessCounters;
     
     // Constantes pour la structure des pages
     private static final int DATA_PAGE_HEADER_SIZE = 16;  // prevPage + nextPage
@@ -33,11 +43,14 @@ public class Relation {
      * Constructeur pour créer une nouvelle relation
      */
     public Relation(String name, List<ColumnInfo> columns, 
-                    DiskManager diskManager, BufferManager bufferManager) throws IOException {
+                    StorageBackend diskManager, BufferManager bufferManager) throws IOException {
         this.name = name;
         this.columns = new ArrayList<>(columns);
         this.diskManager = diskManager;
+        this.pool = bufferManager.getPoolName();
         this.bufferManager = bufferManager;
+        this.headerPool = bufferManager.getPool(BufferPoolName.KEEP);
+        this.accessCounters = bufferManager.getAccessCounters(name);
         
         // Calculer le nombre de slots par page
         this.slotCount = calculateSlotCount();
@@ -54,12 +67,24 @@ public class Relation {
      */
     public Relation(String name, List<ColumnInfo> columns,
                     PageId headerPageId,
-                    DiskManager diskManager, BufferManager bufferManager) {
+                    StorageBackend diskManager, BufferManager bufferManager) {
+        this(name, columns, headerPageId, diskManager, bufferManager, bufferManager.getPoolName());
+    }
+    
+    /**
+     * Constructeur pour charger une relation existante, dont les pages de données sont dans le pool donné
+     */
+    public Relation(String name, List<ColumnInfo> columns,
+                    PageId headerPageId,
+                    StorageBackend diskManager, BufferManager bufferManager, BufferPoolName pool) {
         this.name = name;
         this.columns = new ArrayList<>(columns);
         this.headerPageId = headerPageId;
         this.diskManager = diskManager;
-        this.bufferManager = bufferManager;
+        this.pool = pool;
+        this.bufferManager = bufferManager.getPool(pool);
+        this.headerPool = bufferManager.getPool(BufferPoolName.KEEP);
+        this.accessCounters = this.bufferManager.getAccessCounters(name);
         this.slotCount = calculateSlotCount();
     }
     
@@ -68,6 +93,45 @@ public class Relation {
         return name;
     }
     
+    /**
+     * Compteurs d'accès de la relation, à passer à BufferManager.GetPageBuffer
+     * par les parcours de ses pages de données
+     */
+    public AccessCounters getAccessCounters() {
+        return accessCounters;
+    }
+    
+    public BufferPoolName getBufferPool() {
+        return pool;
+    }
+    
+    /**
+     * BufferManager du pool des pages de données, à utiliser pour les parcours
+     * (RelationScanner) et les anneaux de frames (getAccessStrategy)
+     */
+    public BufferManager getBufferManager() {
+        return bufferManager;
+    }
+    
+    /**
+     * Change le pool des pages de données. Leurs versions modifiées sont écrites par
+     * l'ancien pool, puis oubliées : le nouveau pool les relit à leur prochain accès.
+     * À appeler sans accès en cours à la relation.
+     */
+    public void setBufferPool(BufferPoolName pool) throws IOException {
+        BufferManager target = bufferManager.getPool(pool);
+        if (target != bufferManager) {
+            bufferManager.checkpoint();
+            for (PageId pageId : getDataPages()) {
+                bufferManager.discardPage(pageId);
+            }
+            bufferManager.removeAccessCounters(name);
+            bufferManager = target;
+            accessCounters = target.getAccessCounters(name);
+        }
+        this.pool = pool;
+    }
+    
     public List<ColumnInfo> getColumns() {
         return columns;
     }
@@ -115,100 +179,92 @@ public class Relation {
 
     // XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX HEADER PAGE XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX
     
+    // La Header Page est lue à chaque insertion : lectures optimistes (sans verrou),
+    // validées par le verrou exclusif que prennent ses écritures.
+
     /**
      * Initialise la Header Page avec des listes vides
      */
     private void initHeaderPage() throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        // fullPages = (-1, -1) -> liste vide
-        bb.putInt(INVALID_PAGE_ID);
-        bb.putInt(INVALID_PAGE_ID);
-        
-        // freePages = (-1, -1) -> liste vide
-        bb.putInt(INVALID_PAGE_ID);
-        bb.putInt(INVALID_PAGE_ID);
-        
-        bufferManager.FreePage(headerPageId, true);
+        try (PageHandle handle = headerPool.pin(headerPageId, LatchMode.EXCLUSIVE)) {
+            ByteBuffer bb = handle.getBuffer();
+            
+            // fullPages = (-1, -1) -> liste vide
+            bb.putInt(0, INVALID_PAGE_ID);
+            bb.putInt(4, INVALID_PAGE_ID);
+            
+            // freePages = (-1, -1) -> liste vide
+            bb.putInt(8, INVALID_PAGE_ID);
+            bb.putInt(12, INVALID_PAGE_ID);
+            
+            handle.markDirty();
+        }
     }
 
     /**
      * Lit le PageId de la première page pleine depuis la Header Page
      */
     private PageId getFullPagesHead() throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
-        
-        bufferManager.FreePage(headerPageId, false);
-        
-        if (fileIdx == INVALID_PAGE_ID) {
-            return null;
-        }
-        return new PageId(fileIdx, pageIdx);
+        return headerPool.readOptimistic(headerPageId, bb -> readPageId(bb, 0));
     }
     
     /**
      * Lit le PageId de la première page libre depuis la Header Page
      */
     private PageId getFreePagesHead() throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
         // Skip fullPages
-        bb.position(8);
-        
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
-        
-        bufferManager.FreePage(headerPageId, false);
-        
-        if (fileIdx == INVALID_PAGE_ID) {
-            return null;
-        }
-        return new PageId(fileIdx, pageIdx);
+        return headerPool.readOptimistic(headerPageId, bb -> readPageId(bb, 8));
     }
     
     /**
      * Met à jour le pointeur fullPages dans la Header Page
      */
     private void setFullPagesHead(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
-        } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
-        }
-        
-        bufferManager.FreePage(headerPageId, true);
+        writeHeaderPageId(0, pageId);
     }
     
     /**
      * Met à jour le pointeur freePages dans la Header Page
      */
     private void setFreePagesHead(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
         // Skip fullPages
-        bb.position(8);
-        
+        writeHeaderPageId(8, pageId);
+    }
+
+    /**
+     * Écrit un PageId (ou (-1, -1) si null) à la position donnée de la Header Page
+     */
+    private void writeHeaderPageId(int offset, PageId pageId) throws IOException {
+        try (PageHandle handle = headerPool.pin(headerPageId, LatchMode.EXCLUSIVE)) {
+            writePageId(handle.getBuffer(), offset, pageId);
+            handle.markDirty();
+        }
+    }
+
+    /**
+     * Écrit un PageId (ou (-1, -1) si null) à la position donnée
+     */
+    private static void writePageId(ByteBuffer bb, int offset, PageId pageId) {
         if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
+            bb.putInt(offset, INVALID_PAGE_ID);
+            bb.putInt(offset + 4, INVALID_PAGE_ID);
         } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
+            bb.putInt(offset, pageId.getFileIdx());
+            bb.putInt(offset + 4, pageId.getPageIdx());
         }
+    }
+
+    /**
+     * Lit un PageId à la position donnée (null si (-1, -1))
+     */
+    private static PageId readPageId(ByteBuffer bb, int offset) {
+        int fileIdx = bb.getInt(offset);
+        int pageIdx = bb.getInt(offset + 4);
         
-        bufferManager.FreePage(headerPageId, true);
+        if (fileIdx == INVALID_PAGE_ID) {
+            return null;
+        }
+        return new PageId(fileIdx, pageIdx);
     }
 
     // XXXXXXXXXXXXXXXXXXXXXXXXXXXXXX DATA PAGE STRUCTURE XXXXXXXXXXXXXXXXXXXXXXXXXXXXX
@@ -242,56 +298,28 @@ public class Relation {
      * Lit le prevPage d'une Data Page
      */
     private PageId getPrevPage(ByteBuffer bb) {
-        bb.position(0);
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
-        
-        if (fileIdx == INVALID_PAGE_ID) {
-            return null;
-        }
-        return new PageId(fileIdx, pageIdx);
+        return readPageId(bb, 0);
     }
     
     /**
      * Lit le nextPage d'une Data Page
      */
     private PageId getNextPage(ByteBuffer bb) {
-        bb.position(8);
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
-        
-        if (fileIdx == INVALID_PAGE_ID) {
-            return null;
-        }
-        return new PageId(fileIdx, pageIdx);
+        return readPageId(bb, 8);
     }
     
     /**
      * Écrit le prevPage dans une Data Page
      */
     private void setPrevPage(ByteBuffer bb, PageId pageId) {
-        bb.position(0);
-        if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
-        } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
-        }
+        writePageId(bb, 0, pageId);
     }
     
     /**
      * Écrit le nextPage dans une Data Page
      */
     private void setNextPage(ByteBuffer bb, PageId pageId) {
-        bb.position(8);
-        if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
-        } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
-        }
+        writePageId(bb, 8, pageId);
     }
     
     /**
@@ -342,17 +370,28 @@ public class Relation {
     
     /**
      * Ajoute une nouvelle page de données au Heap File
+     * La page est allouée de préférence dans l'extent de la dernière page ajoutée
+     * (tête de freePages ou de fullPages, sinon Header Page) pour garder le Heap File contigu.
      */
     public void addDataPage() throws IOException {
-        // Allouer une nouvelle page
-        PageId newPageId = diskManager.allocPage();
-        
+        addDataPage(null);
+    }
+
+    /**
+     * Comme addDataPage(), pour une opération de masse : les pages de données passent par l'anneau.
+     *
+     * @param strategy anneau de l'opération (BufferManager.getAccessStrategy), ou null
+     */
+    public void addDataPage(BufferAccessStrategy strategy) throws IOException {
         // Récupérer l'ancienne tête de freePages
         PageId oldHead = getFreePagesHead();
         
+        // Allouer une nouvelle page près de la dernière page de la relation
+        PageId near = oldHead != null ? oldHead : getFullPagesHead();
+        PageId newPageId = diskManager.allocPage(near != null ? near : headerPageId);
+        
         // Initialiser la nouvelle page
-        byte[] buffer = bufferManager.GetPage(newPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        ByteBuffer bb = bufferManager.GetPageBuffer(newPageId, strategy, accessCounters);
         
         // prevPage = null (c'est la nouvelle tête)
         setPrevPage(bb, null);
@@ -370,8 +409,7 @@ public class Relation {
         
         // Si l'ancienne tête existe, mettre à jour son prevPage
         if (oldHead != null) {
-            byte[] oldBuffer = bufferManager.GetPage(oldHead);
-            ByteBuffer oldBb = ByteBuffer.wrap(oldBuffer);
+            ByteBuffer oldBb = bufferManager.GetPageBuffer(oldHead, strategy, accessCounters);
             setPrevPage(oldBb, newPageId);
             bufferManager.FreePage(oldHead, true);
         }
@@ -387,11 +425,19 @@ public class Relation {
      * Retourne null si aucune page disponible
      */
     public PageId getFreeDataPageId(int sizeRecord) throws IOException {
+        return getFreeDataPageId(sizeRecord, null);
+    }
+
+    /**
+     * Comme getFreeDataPageId(int), pour une opération de masse : les pages de données passent par l'anneau.
+     *
+     * @param strategy anneau de l'opération (BufferManager.getAccessStrategy), ou null
+     */
+    public PageId getFreeDataPageId(int sizeRecord, BufferAccessStrategy strategy) throws IOException {
         PageId current = getFreePagesHead();
         
         while (current != null) {
-            byte[] buffer = bufferManager.GetPage(current);
-            ByteBuffer bb = ByteBuffer.wrap(buffer);
+            ByteBuffer bb = bufferManager.GetPageBuffer(current, strategy, accessCounters);
             
             // Vérifier s'il y a un slot libre
             if (!isPageFull(bb)) {
@@ -415,8 +461,16 @@ public class Relation {
      * Retourne le RecordId du record écrit
      */
     public RecordId writeRecordToDataPage(Record record, PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        return writeRecordToDataPage(record, pageId, null);
+    }
+
+    /**
+     * Comme writeRecordToDataPage(Record, PageId), pour une opération de masse : les pages de données passent par l'anneau.
+     *
+     * @param strategy anneau de l'opération (BufferManager.getAccessStrategy), ou null
+     */
+    public RecordId writeRecordToDataPage(Record record, PageId pageId, BufferAccessStrategy strategy) throws IOException {
+        ByteBuffer bb = bufferManager.GetPageBuffer(pageId, strategy, accessCounters);
         
         // Trouver un slot libre
         int slotIdx = findFreeSlot(bb);
@@ -432,7 +486,7 @@ public class Relation {
         // Si la page devient pleine, la déplacer vers fullPages
         if (isPageFull(bb)) {
             bufferManager.FreePage(pageId, true);
-            movePageToFullList(pageId);
+            movePageToFullList(pageId, strategy);
         } else {
             bufferManager.FreePage(pageId, true);
         }
@@ -443,31 +497,30 @@ public class Relation {
     /**
      * Déplace une page de freePages vers fullPages
      */
-    private void movePageToFullList(PageId pageId) throws IOException {
+    private void movePageToFullList(PageId pageId, BufferAccessStrategy strategy) throws IOException {
         // Retirer de freePages
-        removeFromFreeList(pageId);
+        removeFromFreeList(pageId, strategy);
         
         // Ajouter à fullPages
-        addToFullList(pageId);
+        addToFullList(pageId, strategy);
     }
     
     /**
      * Déplace une page de fullPages vers freePages
      */
-    private void movePageToFreeList(PageId pageId) throws IOException {
+    private void movePageToFreeList(PageId pageId, BufferAccessStrategy strategy) throws IOException {
         // Retirer de fullPages
-        removeFromFullList(pageId);
+        removeFromFullList(pageId, strategy);
         
         // Ajouter à freePages
-        addToFreeList(pageId);
+        addToFreeList(pageId, strategy);
     }
     
     /**
      * Retire une page de la liste freePages
      */
-    private void removeFromFreeList(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+    private void removeFromFreeList(PageId pageId, BufferAccessStrategy strategy) throws IOException {
+        ByteBuffer bb = bufferManager.GetPageBuffer(pageId, strategy, accessCounters);
         
         PageId prev = getPrevPage(bb);
         PageId next = getNextPage(bb);
@@ -476,8 +529,7 @@ public class Relation {
         
         // Mettre à jour le lien prev -> next
         if (prev != null) {
-            byte[] prevBuffer = bufferManager.GetPage(prev);
-            ByteBuffer prevBb = ByteBuffer.wrap(prevBuffer);
+            ByteBuffer prevBb = bufferManager.GetPageBuffer(prev, strategy, accessCounters);
             setNextPage(prevBb, next);
             bufferManager.FreePage(prev, true);
         } else {
@@ -487,8 +539,7 @@ public class Relation {
         
         // Mettre à jour le lien next -> prev
         if (next != null) {
-            byte[] nextBuffer = bufferManager.GetPage(next);
-            ByteBuffer nextBb = ByteBuffer.wrap(nextBuffer);
+            ByteBuffer nextBb = bufferManager.GetPageBuffer(next, strategy, accessCounters);
             setPrevPage(nextBb, prev);
             bufferManager.FreePage(next, true);
         }
@@ -497,9 +548,8 @@ public class Relation {
     /**
      * Retire une page de la liste fullPages
      */
-    private void removeFromFullList(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+    private void removeFromFullList(PageId pageId, BufferAccessStrategy strategy) throws IOException {
+        ByteBuffer bb = bufferManager.GetPageBuffer(pageId, strategy, accessCounters);
         
         PageId prev = getPrevPage(bb);
         PageId next = getNextPage(bb);
@@ -508,8 +558,7 @@ public class Relation {
         
         // Mettre à jour le lien prev -> next
         if (prev != null) {
-            byte[] prevBuffer = bufferManager.GetPage(prev);
-            ByteBuffer prevBb = ByteBuffer.wrap(prevBuffer);
+            ByteBuffer prevBb = bufferManager.GetPageBuffer(prev, strategy, accessCounters);
             setNextPage(prevBb, next);
             bufferManager.FreePage(prev, true);
         } else {
@@ -519,8 +568,7 @@ public class Relation {
         
         // Mettre à jour le lien next -> prev
         if (next != null) {
-            byte[] nextBuffer = bufferManager.GetPage(next);
-            ByteBuffer nextBb = ByteBuffer.wrap(nextBuffer);
+            ByteBuffer nextBb = bufferManager.GetPageBuffer(next, strategy, accessCounters);
             setPrevPage(nextBb, prev);
             bufferManager.FreePage(next, true);
         }
@@ -529,11 +577,10 @@ public class Relation {
     /**
      * Ajoute une page en tête de freePages
      */
-    private void addToFreeList(PageId pageId) throws IOException {
+    private void addToFreeList(PageId pageId, BufferAccessStrategy strategy) throws IOException {
         PageId oldHead = getFreePagesHead();
         
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        ByteBuffer bb = bufferManager.GetPageBuffer(pageId, strategy, accessCounters);
         
         setPrevPage(bb, null);
         setNextPage(bb, oldHead);
@@ -541,8 +588,7 @@ public class Relation {
         bufferManager.FreePage(pageId, true);
         
         if (oldHead != null) {
-            byte[] oldBuffer = bufferManager.GetPage(oldHead);
-            ByteBuffer oldBb = ByteBuffer.wrap(oldBuffer);
+            ByteBuffer oldBb = bufferManager.GetPageBuffer(oldHead, strategy, accessCounters);
             setPrevPage(oldBb, pageId);
             bufferManager.FreePage(oldHead, true);
         }
@@ -553,11 +599,10 @@ public class Relation {
     /**
      * Ajoute une page en tête de fullPages
      */
-    private void addToFullList(PageId pageId) throws IOException {
+    private void addToFullList(PageId pageId, BufferAccessStrategy strategy) throws IOException {
         PageId oldHead = getFullPagesHead();
         
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        ByteBuffer bb = bufferManager.GetPageBuffer(pageId, strategy, accessCounters);
         
         setPrevPage(bb, null);
         setNextPage(bb, oldHead);
@@ -565,8 +610,7 @@ public class Relation {
         bufferManager.FreePage(pageId, true);
         
         if (oldHead != null) {
-            byte[] oldBuffer = bufferManager.GetPage(oldHead);
-            ByteBuffer oldBb = ByteBuffer.wrap(oldBuffer);
+            ByteBuffer oldBb = bufferManager.GetPageBuffer(oldHead, strategy, accessCounters);
             setPrevPage(oldBb, pageId);
             bufferManager.FreePage(oldHead, true);
         }
@@ -582,8 +626,7 @@ public class Relation {
     public List<Record> getRecordsInDataPage(PageId pageId) throws IOException {
         List<Record> records = new ArrayList<>();
         
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        ByteBuffer bb = bufferManager.GetPageBuffer(pageId, null, accessCounters);
         
         int bytemapOffset = getBytemapOffset();
         
@@ -608,6 +651,15 @@ public class Relation {
      * Retourne la liste de toutes les pages de données
      */
     public List<PageId> getDataPages() throws IOException {
+        return getDataPages(null);
+    }
+
+    /**
+     * Comme getDataPages(), pour une opération de masse : les pages de données passent par l'anneau.
+     *
+     * @param strategy anneau de l'opération (BufferManager.getAccessStrategy), ou null
+     */
+    public List<PageId> getDataPages(BufferAccessStrategy strategy) throws IOException {
         List<PageId> pages = new ArrayList<>();
         
         // Parcourir freePages
@@ -615,8 +667,7 @@ public class Relation {
         while (current != null) {
             pages.add(current);
             
-            byte[] buffer = bufferManager.GetPage(current);
-            ByteBuffer bb = ByteBuffer.wrap(buffer);
+            ByteBuffer bb = bufferManager.GetPageBuffer(current, strategy, accessCounters);
             current = getNextPage(bb);
             bufferManager.FreePage(pages.get(pages.size() - 1), false);
         }
@@ -626,8 +677,7 @@ public class Relation {
         while (current != null) {
             pages.add(current);
             
-            byte[] buffer = bufferManager.GetPage(current);
-            ByteBuffer bb = ByteBuffer.wrap(buffer);
+            ByteBuffer bb = bufferManager.GetPageBuffer(current, strategy, accessCounters);
             current = getNextPage(bb);
             bufferManager.FreePage(pages.get(pages.size() - 1), false);
         }
@@ -642,17 +692,26 @@ public class Relation {
      * Retourne le RecordId du record inséré
      */
     public RecordId InsertRecord(Record record) throws IOException {
+        return InsertRecord(record, null);
+    }
+
+    /**
+     * Comme InsertRecord(Record) (APPEND), pour une opération de masse : les pages de données passent par l'anneau.
+     *
+     * @param strategy anneau de l'opération (BufferManager.getAccessStrategy), ou null
+     */
+    public RecordId InsertRecord(Record record, BufferAccessStrategy strategy) throws IOException {
         // Chercher une page avec de l'espace
-        PageId pageId = getFreeDataPageId(getRecordSize());
+        PageId pageId = getFreeDataPageId(getRecordSize(), strategy);
         
         // Si aucune page disponible, en créer une
         if (pageId == null) {
-            addDataPage();
-            pageId = getFreeDataPageId(getRecordSize());
+            addDataPage(strategy);
+            pageId = getFreeDataPageId(getRecordSize(), strategy);
         }
         
         // Écrire le record
-        return writeRecordToDataPage(record, pageId);
+        return writeRecordToDataPage(record, pageId, strategy);
     }
     
     /**
@@ -675,11 +734,19 @@ public class Relation {
      * Supprime un record de la relation
      */
     public void DeleteRecord(RecordId rid) throws IOException {
+        DeleteRecord(rid, null);
+    }
+
+    /**
+     * Comme DeleteRecord(RecordId), pour une opération de masse : les pages de données passent par l'anneau.
+     *
+     * @param strategy anneau de l'opération (BufferManager.getAccessStrategy), ou null
+     */
+    public void DeleteRecord(RecordId rid, BufferAccessStrategy strategy) throws IOException {
         PageId pageId = rid.getPageId();
         int slotIdx = rid.getSlotIdx();
         
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        ByteBuffer bb = bufferManager.GetPageBuffer(pageId, strategy, accessCounters);
         
         // Vérifier si la page était pleine avant suppression
         boolean wasFull = isPageFull(bb);
@@ -694,18 +761,19 @@ public class Relation {
             
             // Retirer de la liste appropriée
             if (wasFull) {
-                removeFromFullList(pageId);
+                removeFromFullList(pageId, strategy);
             } else {
-                removeFromFreeList(pageId);
+                removeFromFreeList(pageId, strategy);
             }
             
             // Désallouer la page
+            bufferManager.discardPage(pageId);
             diskManager.DeallocPage(pageId);
             
         } else if (wasFull) {
             // La page était pleine et ne l'est plus
             bufferManager.FreePage(pageId, true);
-            movePageToFreeList(pageId);
+            movePageToFreeList(pageId, strategy);
             
         } else {
             bufferManager.FreePage(pageId, true);
@@ -728,38 +796,37 @@ public class Relation {
                 "Le record a " + record.size() + " valeurs mais la relation a " + columns.size() + " colonnes");
         }
         
-        // Positionner le curseur
-        buff.position(pos);
-        
-        // Écrire chaque valeur selon son type
+        // Écrire chaque valeur selon son type, aux positions absolues du record
+        // (le buffer peut être la vue d'une frame partagée par d'autres threads)
         for (int i = 0; i < columns.size(); i++) {
             ColumnInfo col = columns.get(i);
             Object value = record.getValue(i);
-            writeValue(buff, col, value);
+            writeValue(buff, pos, col, value);
+            pos += col.getSizeInBytes();
         }
     }
     
     /**
-     * Écrit une valeur dans le buffer selon son type
+     * Écrit une valeur dans le buffer à la position donnée selon son type
      */
-    private void writeValue(ByteBuffer buff, ColumnInfo col, Object value) {
+    private void writeValue(ByteBuffer buff, int pos, ColumnInfo col, Object value) {
         if (col.isInt()) {
             int intValue = convertToInt(value);
-            buff.putInt(intValue);
+            buff.putInt(pos, intValue);
             
         } else if (col.isFloat()) {
             float floatValue = convertToFloat(value);
-            buff.putFloat(floatValue);
+            buff.putFloat(pos, floatValue);
             
         } else if (col.isChar()) {
             int maxLen = col.getMaxLength();
             String strValue = convertToString(value);
-            writeFixedString(buff, strValue, maxLen);
+            writeFixedString(buff, pos, strValue, maxLen);
             
         } else if (col.isVarchar()) {
             int maxLen = col.getMaxLength();
             String strValue = convertToString(value);
-            writeVarcharString(buff, strValue, maxLen);
+            writeVarcharString(buff, pos, strValue, maxLen);
         }
     }
     
@@ -768,7 +835,7 @@ public class Relation {
      * Remplit avec des espaces si la chaîne est plus courte que T
      * Tronque si la chaîne est plus longue que T
      */
-    private void writeFixedString(ByteBuffer buff, String str, int maxLen) {
+    private void writeFixedString(ByteBuffer buff, int pos, String str, int maxLen) {
         // Tronquer si trop long
         if (str.length() > maxLen) {
             str = str.substring(0, maxLen);
@@ -776,12 +843,12 @@ public class Relation {
         
         // Écrire les caractères
         for (int i = 0; i < str.length(); i++) {
-            buff.put((byte) str.charAt(i));
+            buff.put(pos + i, (byte) str.charAt(i));
         }
         
         // Remplir avec des espaces (padding)
         for (int i = str.length(); i < maxLen; i++) {
-            buff.put((byte) ' ');
+            buff.put(pos + i, (byte) ' ');
         }
     }
     
@@ -790,23 +857,23 @@ public class Relation {
      * Format : 4 bytes pour la longueur réelle + T bytes pour les caractères
      * Les caractères non utilisés sont remplis avec des espaces
      */
-    private void writeVarcharString(ByteBuffer buff, String str, int maxLen) {
+    private void writeVarcharString(ByteBuffer buff, int pos, String str, int maxLen) {
         // Tronquer si trop long
         if (str.length() > maxLen) {
             str = str.substring(0, maxLen);
         }
         
         // Écrire la longueur réelle (4 bytes)
-        buff.putInt(str.length());
+        buff.putInt(pos, str.length());
         
         // Écrire les caractères
         for (int i = 0; i < str.length(); i++) {
-            buff.put((byte) str.charAt(i));
+            buff.put(pos + 4 + i, (byte) str.charAt(i));
         }
         
         // Remplir avec des espaces jusqu'à maxLen (padding)
         for (int i = str.length(); i < maxLen; i++) {
-            buff.put((byte) ' ');
+            buff.put(pos + 4 + i, (byte) ' ');
         }
     }
         
@@ -822,34 +889,32 @@ public class Relation {
         // Vider le record au cas où
         record.clear();
         
-        // Positionner le curseur
-        buff.position(pos);
-        
-        // Lire chaque valeur selon son type
+        // Lire chaque valeur selon son type, aux positions absolues du record
         for (int i = 0; i < columns.size(); i++) {
             ColumnInfo col = columns.get(i);
-            Object value = readValue(buff, col);
+            Object value = readValue(buff, pos, col);
             record.addValue(value);
+            pos += col.getSizeInBytes();
         }
     }
     
     /**
-     * Lit une valeur depuis le buffer selon son type
+     * Lit une valeur depuis le buffer à la position donnée selon son type
      */
-    private Object readValue(ByteBuffer buff, ColumnInfo col) {
+    private Object readValue(ByteBuffer buff, int pos, ColumnInfo col) {
         if (col.isInt()) {
-            return buff.getInt();
+            return buff.getInt(pos);
             
         } else if (col.isFloat()) {
-            return buff.getFloat();
+            return buff.getFloat(pos);
             
         } else if (col.isChar()) {
             int maxLen = col.getMaxLength();
-            return readFixedString(buff, maxLen);
+            return readFixedString(buff, pos, maxLen);
             
         } else if (col.isVarchar()) {
             int maxLen = col.getMaxLength();
-            return readVarcharString(buff, maxLen);
+            return readVarcharString(buff, pos, maxLen);
         }
         
         return null;
@@ -859,11 +924,11 @@ public class Relation {
      * Lit une chaîne de taille fixe (CHAR(T))
      * Supprime les espaces de fin (trailing spaces)
      */
-    private String readFixedString(ByteBuffer buff, int maxLen) {
+    private String readFixedString(ByteBuffer buff, int pos, int maxLen) {
         StringBuilder sb = new StringBuilder();
         
         for (int i = 0; i < maxLen; i++) {
-            char c = (char) buff.get();
+            char c = (char) buff.get(pos + i);
             sb.append(c);
         }
         
@@ -875,23 +940,18 @@ public class Relation {
      * Lit une chaîne de taille variable (VARCHAR(T))
      * Lit d'abord la longueur, puis les caractères
      */
-    private String readVarcharString(ByteBuffer buff, int maxLen) {
+    private String readVarcharString(ByteBuffer buff, int pos, int maxLen) {
         // Lire la longueur réelle (4 bytes)
-        int realLength = buff.getInt();
+        int realLength = buff.getInt(pos);
         
         StringBuilder sb = new StringBuilder();
         
-        // Lire uniquement les caractères réels
+        // Lire uniquement les caractères réels (les espaces de padding sont ignorés)
         for (int i = 0; i < realLength; i++) {
-            char c = (char) buff.get();
+            char c = (char) buff.get(pos + 4 + i);
             sb.append(c);
         }
         
-        // Sauter les espaces de padding
-        for (int i = realLength; i < maxLen; i++) {
-            buff.get(); // ignorer
-        }
-        
         return sb.toString();
     }
         
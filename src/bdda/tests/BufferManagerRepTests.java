@@ -2,7 +2,6 @@ package bdda.tests;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
 
 import bdda.core.*;
 
@@ -93,16 +92,16 @@ public class BufferManagerRepTests {
     }
     
     private static void afficherEtatBuffer(BufferManager bm) {
-        Map<String, Frame> pageTable = bm.getPageTable();
+        PageTable pageTable = bm.getPageTable();
         
         System.out.println("Pages en mémoire (" + pageTable.size() + "/8):");
         if(pageTable.isEmpty()) {
             System.out.println("  (Aucune page en mémoire)");
         } else {
-            for(String key : pageTable.keySet()) {
-                Frame frame = pageTable.get(key);
-                System.out.println("  " + key + " (pinCount=" + frame.pinCount + ", lastAccess=" + frame.lastAccess + ")");
-            }
+            pageTable.forEach((fileIdx, pageIdx, frameIdx) -> {
+                Frame frame = bm.getFrame(frameIdx);
+                System.out.println("  " + fileIdx + ":" + pageIdx + " (pinCount=" + frame.pinCount + ", lastAccess=" + frame.lastAccess + ")");
+            });
         }
     }
     
@@ -2,10 +2,33 @@ package bdda.tests;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import bdda.core.AccessCounters;
+import bdda.core.BufferAccessStrategy;
+import bdda.core.BufferAccessType;
 import bdda.core.BufferManager;
+import bdda.core.BufferPoolName;
+import bdda.core.BufferPoolStats;
 import bdda.core.DBConfig;
 import bdda.core.DiskManager;
+import bdda.core.LatchMode;
+import bdda.core.PageHandle;
 import bdda.core.PageId;
 
 public class BufferManagerTests {
@@ -16,6 +39,22 @@ public class BufferManagerTests {
         
         try {
             testCycleComplet();
+            testTableDesPages();
+            testPolitiquesClock();
+            testOrdreLRUetMRU();
+            testPolitiquesResistantes();
+            testAccesConcurrents();
+            testVerrousDePage();
+            testFramesHorsTas();
+            testEcritureEnTacheDeFond();
+            testLectureAnticipee();
+            testPointDeControle();
+            testAnneauDeFrames();
+            testTailleVariable();
+            testStatistiques();
+            testPoolsNommes();
+            testPartitions();
+            testErreurDeLecture();
             System.out.println("TOUS LES TESTS PASSÉS !");
         } catch (Exception e) {
             System.out.println("ERREUR : " + e.getMessage());
@@ -103,4 +142,1163 @@ public class BufferManagerTests {
         
         System.out.println("\nTest cycle complet terminé !");
     }
+
+    public static void testTableDesPages() throws IOException {
+        System.out.println("\n\nTest table des pages (accès aléatoires, remplacements)...");
+        
+        DBConfig config = DBConfig.LoadDBConfig(new File("config/config.txt"));
+        accesAleatoires(config);
+        System.out.println("Test table des pages terminé !");
+    }
+    
+    /**
+     * Accès aléatoires à 5 fois plus de pages que de frames : vérifie que chaque
+     * GetPage retourne la bonne page et que la table des pages reste cohérente.
+     */
+    private static void accesAleatoires(DBConfig config) throws IOException {
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        
+        // Beaucoup plus de pages que de frames : la table subit ajouts et retraits
+        int nbPages = config.getBufferCount() * 5;
+        PageId[] pages = new PageId[nbPages];
+        for(int i = 0; i < nbPages; i++) {
+            pages[i] = dm.allocPage();
+            byte[] data = new byte[config.getPageSize()];
+            ByteBuffer.wrap(data).putInt(pages[i].getFileIdx()).putInt(pages[i].getPageIdx());
+            dm.WritePage(pages[i], data);
+        }
+        
+        Random random = new Random(42);
+        for(int n = 0; n < 5000; n++) {
+            PageId pageId = pages[random.nextInt(nbPages)];
+            ByteBuffer buffer = bm.GetPageBuffer(pageId);
+            if(buffer.getInt() != pageId.getFileIdx() || buffer.getInt() != pageId.getPageIdx()) {
+                throw new IOException("Mauvaise page retournée pour (" + pageId.getFileIdx() + "," + pageId.getPageIdx() + ")");
+            }
+            bm.FreePage(pageId, false);
+            
+            if(bm.getPageTable().size() > config.getBufferCount()) {
+                throw new IOException("Table des pages plus grande que le buffer pool : " + bm.getPageTable().size());
+            }
+        }
+        System.out.println("5000 accès cohérents, " + bm.getPageTable().size() + " pages en mémoire");
+        
+        bm.FlushBuffers();
+        if(!bm.getPageTable().isEmpty()) {
+            throw new IOException("Table des pages non vidée par FlushBuffers");
+        }
+    }
+    
+    public static void testPolitiquesClock() throws IOException {
+        System.out.println("\n\nTest politiques CLOCK et CLOCK-PRO...");
+        
+        for(String policy : new String[] { "CLOCK", "CLOCK-PRO" }) {
+            accesAleatoires(loadConfig(policy));
+            System.out.println("  " + policy + " : accès cohérents");
+        }
+        
+        // Résistance aux parcours : des pages réutilisées plusieurs fois restent en mémoire
+        // pendant un long parcours de pages lues une seule fois (CLOCK-PRO), alors que LRU les évince
+        int resteesLRU = pagesChaudesApresParcours(loadConfig("LRU"));
+        int resteesClockPro = pagesChaudesApresParcours(loadConfig("CLOCK-PRO"));
+        System.out.println("  Pages chaudes restées après le parcours : LRU " + resteesLRU + ", CLOCK-PRO " + resteesClockPro);
+        
+        DBConfig config = loadConfig("CLOCK-PRO");
+        if(resteesClockPro < config.getBufferCount() / 4) {
+            throw new IOException("CLOCK-PRO n'a pas protégé les pages chaudes du parcours");
+        }
+        System.out.println("Test politiques CLOCK terminé !");
+    }
+    
+    public static void testOrdreLRUetMRU() throws IOException {
+        System.out.println("\n\nTest ordre d'éviction LRU et MRU...");
+        
+        // LRU : la page libérée il y a le plus longtemps part en premier
+        if(!pageEvincee("LRU", 1)) {
+            throw new IOException("LRU n'a pas évincé la page libérée il y a le plus longtemps");
+        }
+        System.out.println("  LRU : page la moins récemment libérée évincée");
+        
+        // MRU : la page libérée en dernier part en premier
+        if(!pageEvincee("MRU", 0)) {
+            throw new IOException("MRU n'a pas évincé la page libérée en dernier");
+        }
+        System.out.println("  MRU : page la plus récemment libérée évincée");
+        System.out.println("Test ordre d'éviction terminé !");
+    }
+    
+    public static void testPolitiquesResistantes() throws IOException {
+        System.out.println("\n\nTest politiques 2Q, LRU-2 et ARC...");
+        
+        for(String policy : new String[] { "2Q", "LRU-2", "ARC" }) {
+            DBConfig config = loadConfig(policy);
+            accesAleatoires(config);
+            
+            // Comme CLOCK-PRO : les pages réutilisées survivent à un long parcours
+            int restees = pagesChaudesApresParcours(config);
+            System.out.println("  " + policy + " : accès cohérents, " + restees + " pages chaudes restées après le parcours");
+            if(restees < config.getBufferCount() / 4) {
+                throw new IOException(policy + " n'a pas protégé les pages chaudes du parcours");
+            }
+        }
+        System.out.println("Test politiques 2Q, LRU-2 et ARC terminé !");
+    }
+    
+    public static void testAccesConcurrents() throws Exception {
+        System.out.println("\n\nTest accès concurrents (plusieurs sessions)...");
+        
+        DBConfig config = DBConfig.LoadDBConfig(new File("config/config.txt"));
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        
+        // Chaque thread lit toutes les pages et n'en modifie que quelques-unes (les siennes)
+        int nbThreads = 4;
+        int pagesParThread = config.getBufferCount();
+        PageId[] pages = new PageId[nbThreads * pagesParThread];
+        for(int i = 0; i < pages.length; i++) {
+            pages[i] = dm.allocPage();
+            byte[] data = new byte[config.getPageSize()];
+            ByteBuffer.wrap(data).putInt(pages[i].getFileIdx()).putInt(pages[i].getPageIdx()).putInt(0);
+            dm.WritePage(pages[i], data);
+        }
+        
+        int[][] attendus = new int[nbThreads][pagesParThread];
+        AtomicReference<Exception> erreur = new AtomicReference<>();
+        Thread[] threads = new Thread[nbThreads];
+        for(int t = 0; t < nbThreads; t++) {
+            int numero = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(numero);
+                try {
+                    for(int n = 0; n < 5000; n++) {
+                        boolean ecriture = random.nextInt(4) == 0;
+                        int k = ecriture ? numero * pagesParThread + random.nextInt(pagesParThread) : random.nextInt(pages.length);
+                        ByteBuffer buffer = ByteBuffer.wrap(bm.GetPage(pages[k]));
+                        if(buffer.getInt(0) != pages[k].getFileIdx() || buffer.getInt(4) != pages[k].getPageIdx()) {
+                            throw new IOException("Mauvaise page retournée pour (" + pages[k].getFileIdx() + "," + pages[k].getPageIdx() + ")");
+                        }
+                        if(ecriture) {
+                            buffer.putInt(8, buffer.getInt(8) + 1);
+                            attendus[numero][k - numero * pagesParThread]++;
+                        }
+                        bm.FreePage(pages[k], ecriture);
+                    }
+                } catch(Exception e) {
+                    erreur.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        if(erreur.get() != null) {
+            throw erreur.get();
+        }
+        System.out.println(nbThreads + " threads x 5000 accès cohérents");
+        
+        // Toutes les modifications doivent être sur disque, même celles des pages évincées
+        bm.FlushBuffers();
+        byte[] data = new byte[config.getPageSize()];
+        for(int t = 0; t < nbThreads; t++) {
+            for(int i = 0; i < pagesParThread; i++) {
+                dm.ReadPage(pages[t * pagesParThread + i], data);
+                if(ByteBuffer.wrap(data).getInt(8) != attendus[t][i]) {
+                    throw new IOException("Modification perdue sur la page (" + pages[t * pagesParThread + i].getFileIdx()
+                            + "," + pages[t * pagesParThread + i].getPageIdx() + ")");
+                }
+            }
+        }
+        System.out.println("Toutes les modifications sont sur disque");
+        System.out.println("Test accès concurrents terminé !");
+    }
+
+    public static void testVerrousDePage() throws Exception {
+        System.out.println("\n\nTest verrous de page (PageHandle)...");
+        
+        DBConfig config = DBConfig.LoadDBConfig(new File("config/config.txt"));
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        PageId page = dm.allocPage();
+        
+        // EXCLUSIVE : vue modifiable, markDirty ; close() deux fois ne retire qu'un épinglage
+        PageHandle ecriture = bm.pin(page, LatchMode.EXCLUSIVE);
+        ecriture.getBuffer().putInt(0, 7).putInt(4, 7);
+        ecriture.markDirty();
+        ecriture.close();
+        ecriture.close();
+        bm.FlushBuffers();
+        byte[] data = new byte[config.getPageSize()];
+        dm.ReadPage(page, data);
+        if(ByteBuffer.wrap(data).getInt(0) != 7) {
+            throw new IOException("Modification sous verrou exclusif perdue");
+        }
+        System.out.println("Écriture exclusive sur disque, double close sans effet");
+        
+        // SHARED : lecture seule, pas de markDirty
+        try(PageHandle lecture = bm.pin(page, LatchMode.SHARED)) {
+            if(!lecture.getBuffer().isReadOnly() || lecture.getBuffer().getInt(0) != 7) {
+                throw new IOException("Vue partagée incorrecte");
+            }
+            try {
+                lecture.markDirty();
+                throw new IOException("markDirty accepté sans verrou exclusif");
+            } catch(IllegalStateException e) {
+                System.out.println("markDirty refusé en mode SHARED");
+            }
+        }
+        
+        // OPTIMISTIC : la lecture n'est plus valide après une écriture exclusive
+        try(PageHandle optimiste = bm.pin(page, LatchMode.OPTIMISTIC)) {
+            if(!optimiste.validate()) {
+                throw new IOException("Lecture optimiste invalide sans écrivain");
+            }
+            try(PageHandle ecrivain = bm.pin(page, LatchMode.EXCLUSIVE)) {
+                ecrivain.getBuffer().putInt(0, 8).putInt(4, 8);
+                ecrivain.markDirty();
+            }
+            if(optimiste.validate()) {
+                throw new IOException("Lecture optimiste validée malgré une écriture");
+            }
+            optimiste.restart();
+            if(!optimiste.validate() || optimiste.getBuffer().getInt(0) != 8) {
+                throw new IOException("Relecture optimiste incorrecte");
+            }
+        }
+        System.out.println("Lecture optimiste invalidée par une écriture, puis relue");
+        
+        // readOptimistic ne voit jamais une écriture à moitié faite (les deux entiers restent égaux)
+        AtomicBoolean fini = new AtomicBoolean(false);
+        AtomicReference<Exception> erreur = new AtomicReference<>();
+        Thread ecrivain = new Thread(() -> {
+            try {
+                for(int n = 0; n < 20000; n++) {
+                    try(PageHandle handle = bm.pin(page, LatchMode.EXCLUSIVE)) {
+                        ByteBuffer buffer = handle.getBuffer();
+                        buffer.putInt(0, n);
+                        Thread.yield();
+                        buffer.putInt(4, n);
+                        handle.markDirty();
+                    }
+                }
+            } catch(Exception e) {
+                erreur.compareAndSet(null, e);
+            } finally {
+                fini.set(true);
+            }
+        });
+        ecrivain.start();
+        int lectures = 0;
+        while(!fini.get()) {
+            long[] valeurs = bm.readOptimistic(page, bb -> new long[] { bb.getInt(0), bb.getInt(4) });
+            if(valeurs[0] != valeurs[1]) {
+                throw new IOException("Lecture optimiste incohérente : " + valeurs[0] + " / " + valeurs[1]);
+            }
+            lectures++;
+        }
+        ecrivain.join();
+        if(erreur.get() != null) {
+            throw erreur.get();
+        }
+        System.out.println(lectures + " lectures optimistes cohérentes pendant les écritures");
+        
+        // Un lecteur optimiste attend un écrivain lent sans occuper le processeur
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        AtomicReference<Long> tempsCpu = new AtomicReference<>();
+        Thread lecteur;
+        try(PageHandle lent = bm.pin(page, LatchMode.EXCLUSIVE)) {
+            lecteur = new Thread(() -> {
+                try {
+                    long debut = threads.getCurrentThreadCpuTime();
+                    try(PageHandle handle = bm.pin(page, LatchMode.OPTIMISTIC)) {
+                        if(!handle.validate()) {
+                            erreur.compareAndSet(null, new IOException("Lecture optimiste invalide après l'écrivain"));
+                        }
+                    }
+                    tempsCpu.set(threads.getCurrentThreadCpuTime() - debut);
+                } catch(Exception e) {
+                    erreur.compareAndSet(null, e);
+                }
+            });
+            lecteur.start();
+            Thread.sleep(300);
+        }
+        lecteur.join();
+        if(erreur.get() != null) {
+            throw erreur.get();
+        }
+        if(tempsCpu.get() > 150_000_000L) {
+            throw new IOException("Lecteur optimiste en attente active (" + tempsCpu.get() / 1_000_000 + " ms CPU)");
+        }
+        bm.FlushBuffers();
+        System.out.println("Lecteur optimiste en attente d'un écrivain : " + tempsCpu.get() / 1_000_000 + " ms CPU");
+        System.out.println("Test verrous de page terminé !");
+    }
+
+    public static void testFramesHorsTas() throws IOException {
+        System.out.println("\n\nTest frames hors tas (bm_memory = 'DIRECT')...");
+        
+        DBConfig config = loadConfigAvec("bm_memory = 'DIRECT'");
+        accesAleatoires(config);
+        
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        PageId page = dm.allocPage();
+        
+        ByteBuffer buffer = bm.GetPageBuffer(page);
+        if(!buffer.isDirect() || buffer.remaining() != config.getPageSize()) {
+            throw new IOException("Frame hors tas attendue (" + config.getPageSize() + " octets)");
+        }
+        buffer.putInt(0, 42);
+        if(bm.GetPageBuffer(page) != buffer) {
+            throw new IOException("Nouvelle vue allouée pour une page déjà en mémoire");
+        }
+        bm.FreePage(page, false);
+        bm.FreePage(page, true);
+        byte[] copie = bm.GetPage(page);
+        if(copie.length != config.getPageSize() || ByteBuffer.wrap(copie).getInt(0) != 42) {
+            throw new IOException("Copie de GetPage incorrecte avec des frames hors tas");
+        }
+        bm.FreePage(page, false);
+        System.out.println("GetPage : copie de la frame hors tas, vue de la frame réutilisée");
+        
+        // La modification doit aller sur disque directement depuis la mémoire de la frame
+        bm.FlushBuffers();
+        byte[] data = new byte[config.getPageSize()];
+        dm.ReadPage(page, data);
+        if(ByteBuffer.wrap(data).getInt(0) != 42) {
+            throw new IOException("Modification d'une frame hors tas perdue");
+        }
+        System.out.println("Modification écrite depuis la frame hors tas");
+        System.out.println("Test frames hors tas terminé !");
+    }
+
+    public static void testEcritureEnTacheDeFond() throws Exception {
+        System.out.println("\n\nTest écriture en tâche de fond des pages modifiées...");
+        
+        // Seuil 0 : pas de thread, writeDirtyPages appelée directement écrit toutes les pages modifiées
+        DBConfig config = loadConfigAvec("bm_writer_dirty_ratio = 0");
+        AtomicInteger ecrituresAuRemplacement = new AtomicInteger();
+        DiskManager dm = new DiskManager(config) {
+            @Override
+            public void WritePages(PageId first, int count, ByteBuffer[] srcs) throws IOException {
+                ecrituresAuRemplacement.addAndGet(count);
+                super.WritePages(first, count, srcs);
+            }
+        };
+        BufferManager bm = new BufferManager(config, dm);
+        
+        int n = config.getBufferCount();
+        PageId[] pages = new PageId[2 * n];
+        for(int i = 0; i < pages.length; i++) {
+            pages[i] = dm.allocPage();
+        }
+        for(int i = 0; i < n; i++) {
+            bm.GetPageBuffer(pages[i]).putInt(0, 100 + i);
+            bm.FreePage(pages[i], true);
+        }
+        
+        int ecrites = bm.writeDirtyPages();
+        if(ecrites != n) {
+            throw new IOException(ecrites + " pages écrites au lieu de " + n);
+        }
+        byte[] data = new byte[config.getPageSize()];
+        dm.ReadPage(pages[0], data);
+        if(ByteBuffer.wrap(data).getInt(0) != 100) {
+            throw new IOException("Page modifiée pas encore sur disque après writeDirtyPages");
+        }
+        
+        // Les pages sont propres : les remplacements n'ont plus rien à écrire
+        for(int i = n; i < 2 * n; i++) {
+            bm.GetPageBuffer(pages[i]);
+            bm.FreePage(pages[i], false);
+        }
+        if(ecrituresAuRemplacement.get() != 0) {
+            throw new IOException(ecrituresAuRemplacement.get() + " écritures pendant les remplacements");
+        }
+        System.out.println(n + " pages écrites en tâche de fond, aucune écriture au remplacement");
+        
+        // Avec le thread : les pages modifiées au-delà du seuil finissent sur disque sans FlushBuffers
+        bm = new BufferManager(loadConfigAvec("bm_writer_interval = 10"), dm);
+        for(int i = 0; i < n; i++) {
+            bm.GetPageBuffer(pages[i]).putInt(0, 200 + i);
+            bm.FreePage(pages[i], true);
+        }
+        boolean surDisque = false;
+        for(int essai = 0; essai < 500 && !surDisque; essai++) {
+            Thread.sleep(10);
+            dm.ReadPage(pages[n - 1], data);
+            surDisque = ByteBuffer.wrap(data).getInt(0) == 200 + n - 1;
+        }
+        bm.finish();
+        if(!surDisque) {
+            throw new IOException("Le thread d'écriture n'a pas écrit les pages modifiées");
+        }
+        bm.FlushBuffers();
+        for(int i = 0; i < n; i++) {
+            dm.ReadPage(pages[i], data);
+            if(ByteBuffer.wrap(data).getInt(0) != 200 + i) {
+                throw new IOException("Modification perdue sur la page " + i);
+            }
+        }
+        System.out.println("Pages modifiées écrites par le thread bdda-bgwriter");
+        System.out.println("Test écriture en tâche de fond terminé !");
+    }
+    
+    public static void testLectureAnticipee() throws Exception {
+        System.out.println("\n\nTest lecture anticipée d'un parcours séquentiel...");
+        
+        int sansAnticipation = lecturesDuParcours(loadConfigAvec("bm_buffercount = 64", "bm_readahead_pages = 0"));
+        int avecAnticipation = lecturesDuParcours(loadConfigAvec("bm_buffercount = 64", "bm_readahead_pages = 8"));
+        System.out.println("Lectures synchrones : " + sansAnticipation + " sans, " + avecAnticipation + " avec lecture anticipée");
+        if(sansAnticipation != 200) {
+            throw new IOException(sansAnticipation + " lectures synchrones au lieu de 200 sans lecture anticipée");
+        }
+        // Seules les premières pages (avant la détection) et les pages pas encore arrivées sont lues à la demande
+        if(avecAnticipation > 200 / 4) {
+            throw new IOException("La lecture anticipée n'a pas évité les lectures synchrones");
+        }
+        
+        // Un parcours qui précharge lui-même ses pages (RelationScanner) ne déclenche pas
+        // de lecture anticipée vers les pages suivantes du fichier (d'une autre relation)
+        int horsParcours = pagesHorsParcours(loadConfigAvec("bm_buffercount = 64", "bm_readahead_pages = 8"));
+        if(horsParcours != 0) {
+            throw new IOException(horsParcours + " pages hors du parcours préchargées");
+        }
+        System.out.println("Aucune lecture anticipée au-delà de la fin du fichier ni des pages préchargées par l'appelant");
+        System.out.println("Test lecture anticipée terminé !");
+    }
+    
+    public static void testPointDeControle() throws Exception {
+        System.out.println("\n\nTest point de contrôle sans vidage du buffer pool...");
+        
+        DBConfig config = loadConfigAvec("bm_writer_dirty_ratio = 0", "bm_readahead_pages = 0");
+        AtomicInteger lectures = new AtomicInteger();
+        AtomicInteger ecritures = new AtomicInteger();
+        DiskManager dm = new DiskManager(config) {
+            @Override
+            public void ReadPages(PageId first, int count, ByteBuffer[] dests) throws IOException {
+                lectures.addAndGet(count);
+                super.ReadPages(first, count, dests);
+            }
+            
+            @Override
+            public void WritePages(PageId first, int count, ByteBuffer[] srcs) throws IOException {
+                ecritures.addAndGet(count);
+                super.WritePages(first, count, srcs);
+            }
+        };
+        BufferManager bm = new BufferManager(config, dm);
+        
+        int n = config.getBufferCount();
+        PageId[] pages = new PageId[n];
+        for(int i = 0; i < n; i++) {
+            pages[i] = dm.allocPage();
+            bm.GetPageBuffer(pages[i]).putInt(0, 300 + i);
+            bm.FreePage(pages[i], true);
+        }
+        // Une page modifiée reste épinglée pendant le point de contrôle : elle reste modifiée
+        bm.GetPageBuffer(pages[n - 1]);
+        
+        int ecrites = bm.checkpoint();
+        if(ecrites != n - 1) {
+            throw new IOException(ecrites + " pages écrites par le point de contrôle au lieu de " + (n - 1));
+        }
+        byte[] data = new byte[config.getPageSize()];
+        for(int i = 0; i < n - 1; i++) {
+            dm.ReadPage(pages[i], data);
+            if(ByteBuffer.wrap(data).getInt(0) != 300 + i) {
+                throw new IOException("Page " + i + " pas sur disque après le point de contrôle");
+            }
+        }
+        dm.ReadPage(pages[n - 1], data);
+        if(ByteBuffer.wrap(data).getInt(0) != 0) {
+            throw new IOException("Page épinglée écrite par le point de contrôle");
+        }
+        bm.FreePage(pages[n - 1], false);
+        if(bm.checkpoint() != 1) {
+            throw new IOException("Page libérée non écrite par le point de contrôle suivant");
+        }
+        dm.ReadPage(pages[n - 1], data);
+        if(ByteBuffer.wrap(data).getInt(0) != 300 + n - 1) {
+            throw new IOException("Page " + (n - 1) + " pas sur disque après le point de contrôle");
+        }
+        
+        // Les pages sont restées en mémoire, propres : ni lecture ni écriture pour les relire
+        lectures.set(0);
+        for(int i = 0; i < n; i++) {
+            if(bm.GetPageBuffer(pages[i]).getInt(0) != 300 + i) {
+                throw new IOException("Contenu perdu en mémoire pour la page " + i);
+            }
+            bm.FreePage(pages[i], false);
+        }
+        if(lectures.get() != 0) {
+            throw new IOException(lectures.get() + " lectures après le point de contrôle : buffer pool vidé");
+        }
+        if(bm.checkpoint() != 0) {
+            throw new IOException("Pages encore modifiées après le point de contrôle");
+        }
+        
+        // Une page en cours de modification (verrou EXCLUSIVE) n'est pas copiée à moitié
+        bm.GetPageBuffer(pages[0]).putInt(0, 400);
+        bm.FreePage(pages[0], true);
+        try(PageHandle handle = bm.pin(pages[0], LatchMode.EXCLUSIVE)) {
+            handle.getBuffer().putInt(0, 401);
+            if(bm.checkpoint() != 0) {
+                throw new IOException("Page verrouillée en écriture copiée par le point de contrôle");
+            }
+            dm.ReadPage(pages[0], data);
+            if(ByteBuffer.wrap(data).getInt(0) != 300) {
+                throw new IOException("Modification en cours écrite par le point de contrôle");
+            }
+            handle.getBuffer().putInt(4, 401);
+            handle.markDirty();
+        }
+        if(bm.checkpoint() != 1) {
+            throw new IOException("Page modifiée non écrite après la libération de son verrou");
+        }
+        dm.ReadPage(pages[0], data);
+        if(ByteBuffer.wrap(data).getInt(0) != 401 || ByteBuffer.wrap(data).getInt(4) != 401) {
+            throw new IOException("Modification perdue après le point de contrôle");
+        }
+        
+        // Une page modifiée sans verrou (GetPageBuffer) n'est pas copiée à moitié non plus
+        ByteBuffer enCours = bm.GetPageBuffer(pages[1]);
+        enCours.putInt(0, 500);
+        if(bm.checkpoint() != 0) {
+            throw new IOException("Page épinglée par GetPageBuffer copiée par le point de contrôle");
+        }
+        dm.ReadPage(pages[1], data);
+        if(ByteBuffer.wrap(data).getInt(0) != 301) {
+            throw new IOException("Modification en cours (sans verrou) écrite par le point de contrôle");
+        }
+        enCours.putInt(4, 500);
+        bm.FreePage(pages[1], true);
+        if(bm.checkpoint() != 1) {
+            throw new IOException("Page modifiée sans verrou non écrite après sa libération");
+        }
+        
+        // Points de contrôle pendant qu'un autre thread modifie une page sans verrou :
+        // le disque ne voit jamais une modification à moitié faite
+        AtomicBoolean fini = new AtomicBoolean(false);
+        AtomicReference<Exception> erreur = new AtomicReference<>();
+        Thread ecrivain = new Thread(() -> {
+            try {
+                for(int v = 1000; v < 3000; v++) {
+                    ByteBuffer bb = bm.GetPageBuffer(pages[2]);
+                    bb.putInt(0, v);
+                    Thread.yield();
+                    bb.putInt(4, v);
+                    bm.FreePage(pages[2], true);
+                }
+            } catch(Exception e) {
+                erreur.compareAndSet(null, e);
+            } finally {
+                fini.set(true);
+            }
+        });
+        ecrivain.start();
+        int points = 0;
+        while(!fini.get()) {
+            bm.checkpoint(false);
+            dm.ReadPage(pages[2], data);
+            ByteBuffer disque = ByteBuffer.wrap(data);
+            boolean initiale = disque.getInt(0) == 302 && disque.getInt(4) == 0;
+            if(disque.getInt(0) != disque.getInt(4) && !initiale) {
+                throw new IOException("Page à moitié modifiée sur disque : " + disque.getInt(0) + " / " + disque.getInt(4));
+            }
+            points++;
+        }
+        ecrivain.join();
+        if(erreur.get() != null) {
+            throw erreur.get();
+        }
+        bm.checkpoint();
+        dm.ReadPage(pages[2], data);
+        if(ByteBuffer.wrap(data).getInt(0) != 2999 || ByteBuffer.wrap(data).getInt(4) != 2999) {
+            throw new IOException("Dernière modification perdue après le point de contrôle");
+        }
+        
+        ecritures.set(0);
+        bm.FlushBuffers();
+        if(ecritures.get() != 0) {
+            throw new IOException(ecritures.get() + " écritures par FlushBuffers après le point de contrôle");
+        }
+        System.out.println(points + " points de contrôle pendant des modifications sans verrou, aucune page à moitié écrite");
+        System.out.println(n + " pages écrites dans l'ordre du disque, toujours en mémoire et propres");
+        System.out.println("Test point de contrôle terminé !");
+    }
+    
+    public static void testAnneauDeFrames() throws Exception {
+        System.out.println("\n\nTest anneau de frames des opérations de masse...");
+        
+        DBConfig config = loadConfigAvec("bm_buffercount = 64", "bm_ring_pages = 4", "bm_writer_dirty_ratio = 0");
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        int n = config.getBufferCount();
+        
+        PageId[] chaudes = new PageId[n / 2];
+        for(int i = 0; i < chaudes.length; i++) {
+            chaudes[i] = dm.allocPage();
+        }
+        PageId[] parcours = new PageId[4 * n];
+        for(int i = 0; i < parcours.length; i++) {
+            parcours[i] = dm.allocPage();
+        }
+        // Pages chaudes lues à rebours : pas de lecture anticipée vers les pages du parcours
+        for(int tour = 0; tour < 2; tour++) {
+            for(int i = chaudes.length - 1; i >= 0; i--) {
+                bm.GetPageBuffer(chaudes[i]);
+                bm.FreePage(chaudes[i], false);
+            }
+        }
+        
+        // Parcours en lecture puis modification de toutes les pages : chacun dans son anneau
+        BufferAccessStrategy lecture = bm.getAccessStrategy(BufferAccessType.BULK_READ);
+        for(PageId pageId : parcours) {
+            bm.GetPageBuffer(pageId, lecture);
+            bm.FreePage(pageId, false);
+        }
+        BufferAccessStrategy ecriture = bm.getAccessStrategy(BufferAccessType.BULK_WRITE);
+        for(int i = 0; i < parcours.length; i++) {
+            bm.GetPageBuffer(parcours[i], ecriture).putInt(0, 400 + i);
+            bm.FreePage(parcours[i], true);
+        }
+        
+        Set<String> enMemoire = new HashSet<>();
+        bm.getPageTable().forEach((fileIdx, pageIdx, frameIdx) -> enMemoire.add(fileIdx + ":" + pageIdx));
+        for(PageId pageId : chaudes) {
+            if(!enMemoire.contains(pageId.getFileIdx() + ":" + pageId.getPageIdx())) {
+                throw new IOException("Page chaude chassée par une opération de masse");
+            }
+        }
+        int pagesDuParcours = enMemoire.size() - chaudes.length;
+        if(pagesDuParcours > lecture.size() + ecriture.size()) {
+            throw new IOException(pagesDuParcours + " pages du parcours en mémoire pour deux anneaux de " + lecture.size());
+        }
+        System.out.println(chaudes.length + " pages chaudes restées, " + pagesDuParcours + " pages du parcours en mémoire");
+        
+        // Les pages recyclées par l'anneau d'écriture ont été réécrites avant réutilisation
+        bm.FlushBuffers();
+        byte[] data = new byte[config.getPageSize()];
+        for(int i = 0; i < parcours.length; i++) {
+            dm.ReadPage(parcours[i], data);
+            if(ByteBuffer.wrap(data).getInt(0) != 400 + i) {
+                throw new IOException("Modification perdue sur la page " + i + " du parcours");
+            }
+        }
+        System.out.println("Test anneau de frames terminé !");
+    }
+    
+    public static void testTailleVariable() throws Exception {
+        System.out.println("\n\nTest changement du nombre de frames pendant le fonctionnement...");
+        
+        DBConfig config = loadConfigAvec("bm_writer_dirty_ratio = 0", "bm_readahead_pages = 0");
+        AtomicInteger ecritures = new AtomicInteger();
+        DiskManager dm = new DiskManager(config) {
+            @Override
+            public void WritePages(PageId first, int count, ByteBuffer[] srcs) throws IOException {
+                ecritures.addAndGet(count);
+                super.WritePages(first, count, srcs);
+            }
+        };
+        BufferManager bm = new BufferManager(config, dm);
+        int n = config.getBufferCount();
+        
+        // Agrandissement : 4n pages modifiées tiennent en mémoire sans aucun remplacement
+        bm.SetBufferCount(4 * n);
+        PageId[] pages = new PageId[4 * n];
+        for(int i = 0; i < pages.length; i++) {
+            pages[i] = dm.allocPage();
+            bm.GetPageBuffer(pages[i]).putInt(0, 500 + i);
+            bm.FreePage(pages[i], true);
+        }
+        if(bm.getBufferCount() != 4 * n || bm.getPageTable().size() != 4 * n || ecritures.get() != 0) {
+            throw new IOException("Agrandissement incomplet : " + bm.getPageTable().size() + " pages en mémoire, "
+                    + ecritures.get() + " écritures");
+        }
+        
+        // Réduction pendant qu'une page d'une frame retirée est épinglée par une autre session
+        AtomicInteger epinglee = new AtomicInteger(-1);
+        bm.getPageTable().forEach((fileIdx, pageIdx, frameIdx) -> {
+            if(frameIdx >= n) {
+                epinglee.set(pageIdx);
+            }
+        });
+        int idx = 0;
+        while(pages[idx].getPageIdx() != epinglee.get() || pages[idx].getFileIdx() != pages[0].getFileIdx()) {
+            idx++;
+        }
+        PageId pageEpinglee = pages[idx];
+        ByteBuffer contenu = bm.GetPageBuffer(pageEpinglee);
+        AtomicReference<Exception> erreur = new AtomicReference<>();
+        Thread reduction = new Thread(() -> {
+            try {
+                bm.SetBufferCount(n);
+            } catch (Exception e) {
+                erreur.set(e);
+            }
+        });
+        reduction.start();
+        Thread.sleep(50);
+        if(!reduction.isAlive()) {
+            throw new IOException("Réduction terminée sans attendre la page épinglée");
+        }
+        contenu.putInt(0, 999);
+        bm.FreePage(pageEpinglee, true);
+        reduction.join();
+        if(erreur.get() != null) {
+            throw erreur.get();
+        }
+        if(bm.getBufferCount() != n || bm.getPageTable().size() > n) {
+            throw new IOException("Réduction incomplète : " + bm.getPageTable().size() + " pages en mémoire");
+        }
+        
+        // Le buffer pool réduit reste utilisable, et aucune modification n'est perdue
+        for(int i = 0; i < pages.length; i++) {
+            int attendu = i == idx ? 999 : 500 + i;
+            if(bm.GetPageBuffer(pages[i]).getInt(0) != attendu) {
+                throw new IOException("Modification perdue sur la page " + i);
+            }
+            bm.FreePage(pages[i], false);
+        }
+        bm.FlushBuffers();
+        System.out.println("Buffer pool passé de " + n + " à " + (4 * n) + " puis " + n + " frames, pages épinglées attendues");
+        System.out.println("Test changement du nombre de frames terminé !");
+    }
+    
+    public static void testStatistiques() throws Exception {
+        System.out.println("\n\nTest statistiques du buffer pool...");
+        
+        DBConfig config = loadConfigAvec("bm_policy = 'LRU'", "bm_writer_dirty_ratio = 0", "bm_readahead_pages = 0");
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        int n = config.getBufferCount();
+        PageId[] pages = new PageId[2 * n];
+        for(int i = 0; i < pages.length; i++) {
+            pages[i] = dm.allocPage();
+        }
+        
+        // n défauts (pages modifiées), n succès, puis n défauts qui remplacent les n pages modifiées
+        for(int i = 0; i < n; i++) {
+            bm.GetPageBuffer(pages[i]).putInt(0, i);
+            bm.FreePage(pages[i], true);
+        }
+        for(int i = 0; i < n; i++) {
+            bm.GetPageBuffer(pages[i]);
+            bm.FreePage(pages[i], false);
+        }
+        for(int i = n; i < 2 * n; i++) {
+            bm.GetPageBuffer(pages[i]);
+            bm.FreePage(pages[i], false);
+        }
+        BufferPoolStats stats = bm.getStats();
+        System.out.println(stats);
+        if(stats.getHits() != n || stats.getMisses() != 2 * n || stats.getEvictions() != n
+                || stats.getDirtyWritebacks() != n || stats.getPinWaits() != 0) {
+            throw new IOException("Statistiques incorrectes : " + stats);
+        }
+        if(Math.abs(stats.getHitRatio() - 1.0 / 3) > 1e-9) {
+            throw new IOException("Taux de succès incorrect : " + stats.getHitRatio());
+        }
+        
+        // Remise à zéro, puis un succès et un défaut comptés pour une relation
+        bm.resetStats();
+        AccessCounters relation = bm.getAccessCounters("R");
+        bm.GetPageBuffer(pages[2 * n - 1], null, relation);
+        bm.FreePage(pages[2 * n - 1], false);
+        bm.GetPageBuffer(pages[0], null, relation);
+        bm.FreePage(pages[0], false);
+        stats = bm.getStats();
+        if(stats.getHits() != 1 || stats.getMisses() != 1 || stats.getEvictions() != 1
+                || stats.getDirtyWritebacks() != 0 || relation.getHits() != 1 || relation.getMisses() != 1) {
+            throw new IOException("Statistiques après remise à zéro incorrectes : " + stats);
+        }
+        Double ratio = stats.getRelationHitRatios().get("R");
+        if(ratio == null || Math.abs(ratio - 0.5) > 1e-9) {
+            throw new IOException("Taux de succès de la relation incorrect : " + ratio);
+        }
+        
+        // Les mêmes compteurs par JMX, jusqu'à l'arrêt du buffer pool
+        bm.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("bdda:type=BufferPool");
+        if(!Long.valueOf(1).equals(server.getAttribute(name, "Hits"))
+                || !Integer.valueOf(n).equals(server.getAttribute(name, "BufferCount"))) {
+            throw new IOException("Statistiques JMX incorrectes");
+        }
+        server.invoke(name, "resetStats", null, null);
+        if(bm.getStats().getHits() != 0) {
+            throw new IOException("Remise à zéro JMX sans effet");
+        }
+        bm.FlushBuffers();
+        bm.finish();
+        if(server.isRegistered(name)) {
+            throw new IOException("MBean toujours enregistré après finish");
+        }
+        System.out.println("Test statistiques terminé !");
+    }
+    
+    public static void testPoolsNommes() throws Exception {
+        System.out.println("\n\nTest buffer pools nommés (KEEP, DEFAULT, RECYCLE)...");
+        
+        DBConfig config = loadConfigAvec("bm_keep_buffercount = 4", "bm_keep_policy = 'CLOCK'",
+                "bm_writer_dirty_ratio = 0", "bm_readahead_pages = 0");
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        BufferManager keep = bm.getPool(BufferPoolName.KEEP);
+        int n = config.getBufferCount();
+        if(keep == bm || keep.getBufferCount() != 4 || keep.getPoolName() != BufferPoolName.KEEP
+                || bm.getPool(BufferPoolName.RECYCLE) != bm || bm.getPools().size() != 2) {
+            throw new IOException("Pools mal configurés");
+        }
+        
+        // Une page du pool KEEP n'est pas chassée par un parcours du pool DEFAULT
+        PageId chaude = dm.allocPage();
+        keep.GetPageBuffer(chaude).putInt(0, 42);
+        keep.FreePage(chaude, true);
+        for(int i = 0; i < 3 * n; i++) {
+            PageId page = dm.allocPage();
+            bm.GetPageBuffer(page);
+            bm.FreePage(page, false);
+        }
+        if(!enMemoire(keep, chaude) || enMemoire(bm, chaude) || keep.getStats().getEvictions() != 0) {
+            throw new IOException("Page du pool KEEP chassée par le parcours");
+        }
+        if(keep.GetPageBuffer(chaude).getInt(0) != 42) {
+            throw new IOException("Contenu perdu dans le pool KEEP");
+        }
+        keep.FreePage(chaude, false);
+        
+        // Une page désallouée est oubliée par tous les pools, sans être écrite
+        PageId jetee = dm.allocPage();
+        bm.GetPageBuffer(jetee);
+        bm.FreePage(jetee, true);
+        keep.GetPageBuffer(jetee);
+        keep.FreePage(jetee, true);
+        keep.discardPage(jetee);
+        dm.DeallocPage(jetee);
+        if(enMemoire(bm, jetee) || enMemoire(keep, jetee)) {
+            throw new IOException("Page désallouée encore en mémoire");
+        }
+        // Seule la page chaude reste à écrire
+        int ecritures = bm.checkpoint() + keep.checkpoint();
+        if(ecritures != 1) {
+            throw new IOException("Écritures inattendues : " + ecritures);
+        }
+        for(BufferManager pool : bm.getPools()) {
+            pool.finish();
+            pool.FlushBuffers();
+        }
+        System.out.println("Pool KEEP de " + keep.getBufferCount() + " frames intact après un parcours de " + (3 * n) + " pages");
+        System.out.println("Test buffer pools nommés terminé !");
+    }
+    
+    public static void testPartitions() throws Exception {
+        System.out.println("\n\nTest buffer pool partitionné (bm_shards)...");
+        
+        DBConfig config = loadConfigAvec("bm_buffercount = 64", "bm_shards = 4", "bm_memory = 'DIRECT'",
+                "bm_writer_dirty_ratio = 0", "bm_readahead_pages = 0");
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        int n = config.getBufferCount();
+        
+        // Toutes les frames servent, quelle que soit la partition des pages : une partition
+        // pleine de pages épinglées emprunte les frames des autres
+        PageId[] pages = new PageId[2 * n];
+        for(int i = 0; i < pages.length; i++) {
+            pages[i] = dm.allocPage();
+        }
+        for(int i = 0; i < n; i++) {
+            bm.GetPageBuffer(pages[i]).putInt(0, 700 + i);
+        }
+        boolean sature = false;
+        try {
+            bm.GetPageBuffer(pages[n]);
+        } catch (IOException e) {
+            sature = true;
+        }
+        if(!sature || bm.getPageTable().size() != n) {
+            throw new IOException("Frames des partitions inutilisées : " + bm.getPageTable().size() + " pages épinglées");
+        }
+        // Chaque page est retrouvée par la table de sa partition d'origine, même dans une frame empruntée
+        long succes = bm.getStats().getHits();
+        for(int i = 0; i < n; i++) {
+            if(bm.GetPageBuffer(pages[i]).getInt(0) != 700 + i) {
+                throw new IOException("Page " + i + " introuvable dans la table des pages");
+            }
+            bm.FreePage(pages[i], false);
+        }
+        if(bm.getStats().getHits() - succes != n) {
+            throw new IOException((bm.getStats().getHits() - succes) + " pages retrouvées en mémoire au lieu de " + n);
+        }
+        for(int i = 0; i < n; i++) {
+            bm.FreePage(pages[i], true);
+        }
+        
+        // Remplacements dans chaque partition, puis changements de taille
+        for(int i = n; i < pages.length; i++) {
+            bm.GetPageBuffer(pages[i]).putInt(0, 700 + i);
+            bm.FreePage(pages[i], true);
+        }
+        bm.SetBufferCount(n / 4);
+        bm.SetBufferCount(n + 16);
+        for(int i = 0; i < pages.length; i++) {
+            if(bm.GetPageBuffer(pages[i]).getInt(0) != 700 + i) {
+                throw new IOException("Modification perdue sur la page " + i);
+            }
+            bm.FreePage(pages[i], false);
+        }
+        if(bm.getBufferCount() != n + 16 || bm.getStats().getPinWaits() != 0) {
+            throw new IOException("Buffer pool partitionné incohérent : " + bm.getStats());
+        }
+        bm.finish();
+        bm.FlushBuffers();
+        System.out.println("4 partitions : " + n + " pages épinglées à la fois, contenu intact après redimensionnement");
+        System.out.println("Test buffer pool partitionné terminé !");
+    }
+    
+    public static void testErreurDeLecture() throws Exception {
+        System.out.println("\n\nTest lecture en échec (exception non contrôlée)...");
+        
+        DBConfig config = loadConfigAvec("bm_buffercount = 2", "bm_readahead_pages = 0", "bm_writer_dirty_ratio = 0");
+        AtomicReference<PageId> enPanne = new AtomicReference<>();
+        DiskManager dm = new DiskManager(config) {
+            @Override
+            public void ReadPages(PageId first, int count, ByteBuffer[] dests) throws IOException {
+                if(first.equals(enPanne.get())) {
+                    throw new IllegalStateException("lecture impossible");
+                }
+                super.ReadPages(first, count, dests);
+            }
+        };
+        BufferManager bm = new BufferManager(config, dm);
+        PageId[] pages = new PageId[3];
+        byte[] data = new byte[config.getPageSize()];
+        for(int i = 0; i < pages.length; i++) {
+            pages[i] = dm.allocPage();
+            ByteBuffer.wrap(data).putInt(0, 900 + i);
+            dm.WritePage(pages[i], data);
+        }
+        
+        // Chaque échec doit rendre sa frame : sinon la frame reste réservée, la page
+        // reste dans la table, et le buffer pool perd une frame à chaque fois
+        enPanne.set(pages[0]);
+        for(int i = 0; i < 2 * config.getBufferCount(); i++) {
+            try {
+                bm.GetPage(pages[0]);
+                throw new IOException("La lecture en échec n'a pas été signalée");
+            } catch (IllegalStateException e) {
+                // attendu
+            }
+        }
+        if(enMemoire(bm, pages[0])) {
+            throw new IOException("Page non chargée restée dans la table des pages");
+        }
+        
+        // Toutes les frames servent encore, et la page se relit une fois la panne passée
+        enPanne.set(null);
+        for(int i = 0; i < 2; i++) {
+            if(bm.GetPageBuffer(pages[i]).getInt(0) != 900 + i) {
+                throw new IOException("Contenu incorrect pour la page " + i);
+            }
+        }
+        for(int i = 0; i < 2; i++) {
+            bm.FreePage(pages[i], false);
+        }
+        bm.finish();
+        bm.FlushBuffers();
+        System.out.println("   OK - frame rendue après chaque échec, " + config.getBufferCount() + " frames utilisables");
+        System.out.println("Test lecture en échec terminé !");
+    }
+    
+    private static boolean enMemoire(BufferManager bm, PageId pageId) {
+        AtomicBoolean trouvee = new AtomicBoolean();
+        bm.getPageTable().forEach((fileIdx, pageIdx, frameIdx) -> {
+            if(fileIdx == pageId.getFileIdx() && pageIdx == pageId.getPageIdx()) {
+                trouvee.set(true);
+            }
+        });
+        return trouvee.get();
+    }
+    
+    /**
+     * Parcourt 200 pages dans l'ordre en vérifiant leur contenu.
+     *
+     * Aucune lecture anticipée ne doit dépasser la fin du fichier (200 pages).
+     *
+     * @return le nombre de pages lues à la demande (ReadPages synchrone)
+     */
+    private static int lecturesDuParcours(DBConfig config) throws IOException {
+        AtomicInteger lectures = new AtomicInteger();
+        AtomicInteger echecs = new AtomicInteger();
+        DiskManager dm = new DiskManager(config) {
+            @Override
+            public void ReadPages(PageId first, int count, ByteBuffer[] dests) throws IOException {
+                lectures.addAndGet(count);
+                super.ReadPages(first, count, dests);
+            }
+            
+            @Override
+            public CompletableFuture<Void> readPagesAsync(PageId first, int count, ByteBuffer[] dests) {
+                return super.readPagesAsync(first, count, dests).whenComplete((r, e) -> {
+                    if(e != null) {
+                        echecs.incrementAndGet();
+                    }
+                });
+            }
+        };
+        PageId[] pages = new PageId[200];
+        byte[] data = new byte[config.getPageSize()];
+        for(int i = 0; i < pages.length; i++) {
+            pages[i] = dm.allocPage();
+            ByteBuffer.wrap(data).putInt(0, 1000 + i);
+            dm.WritePage(pages[i], data);
+        }
+        
+        BufferManager bm = new BufferManager(config, dm);
+        for(int i = 0; i < pages.length; i++) {
+            if(bm.GetPageBuffer(pages[i]).getInt(0) != 1000 + i) {
+                throw new IOException("Contenu incorrect pour la page " + i);
+            }
+            bm.FreePage(pages[i], false);
+        }
+        bm.finish();
+        bm.FlushBuffers();
+        if(echecs.get() != 0) {
+            throw new IOException(echecs.get() + " lectures anticipées au-delà de la fin du fichier");
+        }
+        return lectures.get();
+    }
+    
+    /**
+     * Parcourt les 100 premières pages d'un fichier de 200 en les préchargeant par fenêtres,
+     * comme RelationScanner.
+     *
+     * @return le nombre de pages suivantes (hors du parcours) chargées dans le buffer pool
+     */
+    private static int pagesHorsParcours(DBConfig config) throws IOException {
+        DiskManager dm = new DiskManager(config);
+        List<PageId> pages = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            pages.add(dm.allocPage());
+        }
+        
+        BufferManager bm = new BufferManager(config, dm);
+        for(int i = 0; i < 100; i++) {
+            if(i % 8 == 0) {
+                bm.Prefetch(pages.subList(i, Math.min(i + 16, 100)));
+            }
+            bm.GetPageBuffer(pages.get(i));
+            bm.FreePage(pages.get(i), false);
+        }
+        int horsParcours = 0;
+        for(int i = 100; i < 200; i++) {
+            if(enMemoire(bm, pages.get(i))) {
+                horsParcours++;
+            }
+        }
+        bm.finish();
+        bm.FlushBuffers();
+        dm.finish();
+        return horsParcours;
+    }
+    
+    /**
+     * Remplit le buffer pool, libère les pages dans l'ordre, réutilise la page 0,
+     * puis charge une page de plus : vérifie que seule la page attendue a été évincée.
+     * Les accès se suivent dans la même milliseconde : l'ordre ne doit pas dépendre de l'heure.
+     */
+    private static boolean pageEvincee(String policy, int attendue) throws IOException {
+        DBConfig config = loadConfig(policy);
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        int n = config.getBufferCount();
+        
+        PageId[] pages = new PageId[n + 1];
+        for(int i = 0; i <= n; i++) {
+            pages[i] = dm.allocPage();
+        }
+        for(int i = 0; i < n; i++) {
+            bm.GetPage(pages[i]);
+        }
+        for(int i = 0; i < n; i++) {
+            bm.FreePage(pages[i], false);
+        }
+        bm.GetPage(pages[0]);
+        bm.FreePage(pages[0], false);
+        bm.GetPage(pages[n]);
+        bm.FreePage(pages[n], false);
+        
+        Set<String> enMemoire = new HashSet<>();
+        bm.getPageTable().forEach((fileIdx, pageIdx, frameIdx) -> enMemoire.add(fileIdx + ":" + pageIdx));
+        bm.FlushBuffers();
+        
+        for(int i = 0; i <= n; i++) {
+            boolean present = enMemoire.contains(pages[i].getFileIdx() + ":" + pages[i].getPageIdx());
+            if(present == (i == attendue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int pagesChaudesApresParcours(DBConfig config) throws IOException {
+        DiskManager dm = new DiskManager(config);
+        BufferManager bm = new BufferManager(config, dm);
+        int n = config.getBufferCount();
+        
+        PageId[] chaudes = new PageId[n / 2];
+        for(int i = 0; i < chaudes.length; i++) {
+            chaudes[i] = dm.allocPage();
+        }
+        PageId[] parcours = new PageId[8 * n];
+        for(int i = 0; i < parcours.length; i++) {
+            parcours[i] = dm.allocPage();
+        }
+        
+        int suivante = 0;
+        for(int tour = 0; tour < 3; tour++) {
+            for(PageId pageId : chaudes) {
+                bm.GetPage(pageId);
+                bm.FreePage(pageId, false);
+            }
+            for(int i = 0; i < n / 2; i++, suivante++) {
+                bm.GetPage(parcours[suivante]);
+                bm.FreePage(parcours[suivante], false);
+            }
+        }
+        for(; suivante < parcours.length; suivante++) {
+            bm.GetPage(parcours[suivante]);
+            bm.FreePage(parcours[suivante], false);
+        }
+        
+        Set<String> enMemoire = new HashSet<>();
+        bm.getPageTable().forEach((fileIdx, pageIdx, frameIdx) -> enMemoire.add(fileIdx + ":" + pageIdx));
+        int restees = 0;
+        for(PageId pageId : chaudes) {
+            if(enMemoire.contains(pageId.getFileIdx() + ":" + pageId.getPageIdx())) {
+                restees++;
+            }
+        }
+        bm.FlushBuffers();
+        return restees;
+    }
+    
+    /**
+     * Configuration de test : config.txt avec la politique de remplacement donnée
+     */
+    private static DBConfig loadConfig(String policy) throws IOException {
+        return loadConfigAvec("bm_policy = '" + policy + "'");
+    }
+    
+    private static DBConfig loadConfigAvec(String... options) throws IOException {
+        File configFile = File.createTempFile("config_policy", ".txt");
+        configFile.deleteOnExit();
+        List<String> lines = new ArrayList<>(Files.readAllLines(new File("config/config.txt").toPath()));
+        lines.addAll(List.of(options));
+        Files.write(configFile.toPath(), lines);
+        return DBConfig.LoadDBConfig(configFile);
+    }
 }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 
+import bdda.core.BufferPoolName;
 import bdda.core.DBConfig;
 import bdda.manager.DBManager;
 import bdda.storage.ColumnInfo;
@@ -15,6 +16,11 @@ public class DBManagerTests {
     private static final File CONFIG_FILE = new File("config/config.txt");
     
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("crash")) {
+            crashAfterSaveState();
+            return;
+        }
+        
         System.out.println("================================================================");
         System.out.println("           TESTS TP6 : DBMANAGER                               ");
         System.out.println("================================================================\n");
@@ -29,6 +35,8 @@ public class DBManagerTests {
             testDescribeAllTables();
             testSaveAndLoadState();
             testPersistenceWithData();
+            testBufferPools();
+            testCrashAfterSaveState();
             
             System.out.println("\n================================================================");
             System.out.println("              TOUS LES TESTS OK !                              ");
@@ -507,4 +515,133 @@ public class DBManagerTests {
         
         System.out.println("\nTEST 9 REUSSI\n");
     }
-}
\ No newline at end of file
+    
+    // ================================================================
+    // TEST 10 : Buffer pools des tables (SET POOL)
+    // ================================================================
+    static void testBufferPools() throws Exception {
+        System.out.println("----------------------------------------------------------------");
+        System.out.println(" TEST 10 : Buffer pools des tables                             ");
+        System.out.println("----------------------------------------------------------------");
+        
+        DBConfig config = DBConfig.LoadDBConfig(CONFIG_FILE);
+        config.setKeepBufferCount(4);
+        config.setRecycleBufferCount(4);
+        cleanTestFiles(config);
+        
+        // PARTIE 1 : une petite table dans KEEP, une grande dans RECYCLE
+        DBManager dbManager1 = new DBManager(config);
+        List<ColumnInfo> cols = Arrays.asList(
+            new ColumnInfo("id", "INT"),
+            new ColumnInfo("nom", "CHAR(10)")
+        );
+        Relation dim = new Relation("Dim", cols, dbManager1.getDiskManager(), dbManager1.getBufferManager());
+        Relation fait = new Relation("Fait", cols, dbManager1.getDiskManager(), dbManager1.getBufferManager());
+        dbManager1.AddTable(dim);
+        dbManager1.AddTable(fait);
+        dim.InsertRecord(new Record(Arrays.asList(1, "Alice")));
+        
+        dbManager1.SetTablePool("Dim", BufferPoolName.KEEP);
+        dbManager1.SetTablePool("Fait", BufferPoolName.RECYCLE);
+        if (dbManager1.SetTablePool("Absente", BufferPoolName.KEEP)) {
+            throw new Exception("ERREUR : pool change pour une table inexistante");
+        }
+        for (int i = 0; i < 500; i++) {
+            fait.InsertRecord(new Record(Arrays.asList(i, "F" + i)));
+        }
+        if (dim.getBufferManager().getPoolName() != BufferPoolName.KEEP
+                || fait.getBufferManager().getPoolName() != BufferPoolName.RECYCLE
+                || dim.GetAllRecords().size() != 1) {
+            throw new Exception("ERREUR : tables dans le mauvais buffer pool");
+        }
+        System.out.println("Dim -> KEEP, Fait -> RECYCLE ("
+                + fait.getBufferManager().getStats().getEvictions() + " evictions dans RECYCLE, "
+                + dim.getBufferManager().getStats().getEvictions() + " dans KEEP)");
+        dbManager1.Finish();
+        
+        // PARTIE 2 : les pools sont sauvegardes avec les tables
+        DBManager dbManager2 = new DBManager(config);
+        dbManager2.LoadState();
+        Relation dim2 = dbManager2.GetTable("Dim");
+        Relation fait2 = dbManager2.GetTable("Fait");
+        if (dim2.getBufferPool() != BufferPoolName.KEEP || fait2.getBufferPool() != BufferPoolName.RECYCLE
+                || fait2.getBufferManager().getPoolName() != BufferPoolName.RECYCLE) {
+            throw new Exception("ERREUR : buffer pools non restaures");
+        }
+        if (dim2.GetAllRecords().size() != 1 || fait2.GetAllRecords().size() != 500) {
+            throw new Exception("ERREUR : records perdus");
+        }
+        System.out.println("Verification OK : pools et records restaures");
+        dbManager2.Finish();
+        
+        System.out.println("\nTEST 10 REUSSI\n");
+    }
+    
+    // ================================================================
+    // TEST 11 : Arret brutal apres SaveState
+    // ================================================================
+    static void testCrashAfterSaveState() throws Exception {
+        System.out.println("----------------------------------------------------------------");
+        System.out.println(" TEST 11 : Arret brutal apres SaveState                        ");
+        System.out.println("----------------------------------------------------------------");
+        
+        DBConfig config = DBConfig.LoadDBConfig(CONFIG_FILE);
+        cleanTestFiles(config);
+        
+        // PARTIE 1 : un autre processus insere 2000 records, sauvegarde puis s'arrete sans Finish()
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                DBManagerTests.class.getName(), "crash").inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new Exception("ERREUR : le processus arrete brutalement a echoue");
+        }
+        System.out.println("2000 records inseres, SaveState puis arret brutal (Runtime.halt)");
+        
+        // PARTIE 2 : la carte d'espace sauvegardee ne redonne pas les pages de T
+        DBManager dbManager = new DBManager(config);
+        dbManager.LoadState();
+        Relation t = dbManager.GetTable("T");
+        if (t == null) {
+            throw new Exception("ERREUR : table T non restauree");
+        }
+        Relation u = new Relation("U", t.getColumns(), dbManager.getDiskManager(), dbManager.getBufferManager());
+        dbManager.AddTable(u);
+        for (int i = 0; i < 500; i++) {
+            u.InsertRecord(new Record(Arrays.asList(i, "U" + i)));
+        }
+        int countT = t.GetAllRecords().size();
+        int countU = u.GetAllRecords().size();
+        if (countT != 2000 || countU != 500) {
+            throw new Exception("ERREUR : T contient " + countT + " records (2000 attendus), U " + countU + " (500 attendus)");
+        }
+        System.out.println("Verification OK : T garde ses 2000 records, U en a 500");
+        dbManager.Finish();
+        
+        System.out.println("\nTEST 11 REUSSI\n");
+    }
+    
+    /**
+     * Processus du TEST 11 : insere 2000 records dans T, sauvegarde l'etat
+     * puis s'arrete sans Finish() ni fermeture des fichiers
+     */
+    static void crashAfterSaveState() {
+        try {
+            DBConfig config = DBConfig.LoadDBConfig(CONFIG_FILE);
+            DBManager dbManager = new DBManager(config);
+            List<ColumnInfo> cols = Arrays.asList(
+                new ColumnInfo("id", "INT"),
+                new ColumnInfo("nom", "CHAR(10)")
+            );
+            Relation t = new Relation("T", cols, dbManager.getDiskManager(), dbManager.getBufferManager());
+            dbManager.AddTable(t);
+            for (int i = 0; i < 2000; i++) {
+                t.InsertRecord(new Record(Arrays.asList(i, "T" + i)));
+            }
+            dbManager.SaveState();
+        } catch (Exception e) {
+            e.printStackTrace();
+            Runtime.getRuntime().halt(1);
+        }
+        Runtime.getRuntime().halt(0);
+    }
+}
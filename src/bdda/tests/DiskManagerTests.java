@@ -2,6 +2,12 @@ package bdda.tests;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import bdda.core.DBConfig;
 import bdda.core.DiskManager;
@@ -38,6 +44,33 @@ public class DiskManagerTests {
             // 7. Test bitmap persistence
             testBitmapPersistence();
             
+            // 8. Test lecture/écriture groupée de pages contiguës
+            testVectoredReadWrite();
+            
+            // 9. Test lecture/écriture asynchrone
+            testAsyncReadWrite();
+            
+            // 10. Test détection de page corrompue (somme de contrôle)
+            testChecksum();
+            
+            // 11. Test fichiers compressés
+            testCompression();
+            
+            // 12. Test en-tête à jour sans finish() (arrêt brutal)
+            testHeaderWithoutFinish();
+            
+            // 13. Test réutilisation des pages libres par allocPage(near)
+            testNearReusesFreePages();
+            
+            // 14. Test ouverture des fichiers d'un format précédent
+            testLegacyFormats();
+            
+            // 15. Test somme de contrôle effacée (page utilisée d'après la bitmap)
+            testErasedChecksum();
+            
+            // 16. Test taille d'un fichier compressé (pages de taille par défaut)
+            testCompressedFileSize();
+            
             System.out.println("\nTOUS LES TESTS REUSSIS !");
             
         } catch (Exception e) {
@@ -94,7 +127,7 @@ public class DiskManagerTests {
         // Vérifier que les fichiers Data.bin ont bien la bitmap
         File dataFile = new File(config.getPath(), "Data0.bin");
         if (dataFile.exists()) {
-            long expectedMinSize = 64 + 3 * config.getPageSize(); // bitmap + 3 pages
+            long expectedMinSize = (2 + 3) * (config.getPageSize() + DiskManager.CHECKSUM_SIZE); // en-tête + bitmap + 3 pages
             if (dataFile.length() < expectedMinSize) {
                 throw new IOException("Erreur : Taille fichier incorrecte !");
             }
@@ -322,16 +355,17 @@ public class DiskManagerTests {
             dm.finish();
         }
         
-        // Vérifier que le fichier contient bien bitmap + 5 pages
+        // Vérifier que le fichier contient bien en-tête + bitmap + 5 pages (arrondi à l'extent préalloué)
         File dataFile = new File(config.getPath(), "Data0.bin");
-        long expectedSize = 64 + (5 * config.getPageSize());
+        int extent = config.getExtentPages();
+        long expectedSize = (long) (2 + (5 + extent - 1) / extent * extent) * (config.getPageSize() + DiskManager.CHECKSUM_SIZE);
         
         if (dataFile.length() != expectedSize) {
             throw new IOException("Erreur : Taille fichier incorrecte ! " +
                 "Attendu: " + expectedSize + " Obtenu: " + dataFile.length());
         }
         
-        System.out.println("   OK - Fichier Data0.bin a la bonne taille (64 bytes bitmap + 5 pages)");
+        System.out.println("   OK - Fichier Data0.bin a la bonne taille (en-tête + page de bitmap + extents des 5 pages, avec sommes de contrôle)");
         
         // Recharger et vérifier que les 5 pages sont marquées comme utilisées
         {
@@ -352,6 +386,530 @@ public class DiskManagerTests {
         System.out.println("   OK - Bitmap persiste correctement entre redémarrages");
     }
 
+    /**
+     * Test 8 : WritePages / ReadPages sur des pages contiguës
+     */
+    private static void testVectoredReadWrite() throws IOException {
+        System.out.println("\n8. Test lecture/écriture groupée...");
+        
+        File configFile = new File("config/config.txt");
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+
+        DiskManager dm = new DiskManager(config);
+        
+        int count = 6;
+        PageId first = dm.allocPage();
+        for (int i = 1; i < count; i++) {
+            dm.allocPage();
+        }
+        
+        // Écrire les 6 pages en un appel, chaque page remplie avec son numéro
+        ByteBuffer[] srcs = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[config.getPageSize()];
+            Arrays.fill(data, (byte) (i + 1));
+            srcs[i] = ByteBuffer.wrap(data);
+        }
+        dm.WritePages(first, count, srcs);
+        System.out.println("   OK - " + count + " pages écrites en un appel");
+        
+        // Relire page par page
+        for (int i = 0; i < count; i++) {
+            byte[] dataRead = new byte[config.getPageSize()];
+            dm.ReadPage(new PageId(first.getFileIdx(), first.getPageIdx() + i), dataRead);
+            if (dataRead[0] != i + 1 || dataRead[dataRead.length - 1] != i + 1) {
+                throw new IOException("Erreur : Page " + i + " mal écrite par WritePages !");
+            }
+        }
+        
+        // Relire en un appel
+        ByteBuffer[] dests = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            dests[i] = ByteBuffer.allocate(config.getPageSize());
+        }
+        dm.ReadPages(first, count, dests);
+        for (int i = 0; i < count; i++) {
+            if (dests[i].hasRemaining() || dests[i].get(0) != i + 1 || dests[i].get(config.getPageSize() - 1) != i + 1) {
+                throw new IOException("Erreur : Page " + i + " mal lue par ReadPages !");
+            }
+        }
+        System.out.println("   OK - " + count + " pages relues en un appel");
+        
+        // Une suite qui dépasse la fin du fichier est refusée
+        try {
+            dm.ReadPages(new PageId(first.getFileIdx(), first.getPageIdx() + count - 1), 1000, new ByteBuffer[1000]);
+            throw new IOException("Erreur : Exception attendue pour suite de pages inexistantes !");
+        } catch (IOException e) {
+            if (!e.getMessage().contains("inexistante")) {
+                throw e;
+            }
+            System.out.println("   OK - Suite de pages inexistantes détectée");
+        }
+
+        dm.finish();
+    }
+
+    /**
+     * Test 9 : writePageAsync / readPageAsync
+     */
+    private static void testAsyncReadWrite() throws IOException {
+        System.out.println("\n9. Test lecture/écriture asynchrone...");
+        
+        File configFile = new File("config/config.txt");
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+
+        DiskManager dm = new DiskManager(config);
+        
+        int count = 20;
+        PageId[] pages = new PageId[count];
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pages[i] = dm.allocPage();
+            byte[] data = new byte[config.getPageSize()];
+            Arrays.fill(data, (byte) (i + 1));
+            futures.add(dm.writePageAsync(pages[i], ByteBuffer.wrap(data)));
+        }
+        
+        // force() attend les écritures en cours
+        dm.force();
+        for (CompletableFuture<Void> future : futures) {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                throw new IOException("Erreur : Écriture asynchrone non terminée après force() !");
+            }
+        }
+        System.out.println("   OK - " + count + " écritures asynchrones terminées");
+        
+        ByteBuffer[] dests = new ByteBuffer[count];
+        futures.clear();
+        for (int i = 0; i < count; i++) {
+            dests[i] = ByteBuffer.allocate(config.getPageSize());
+            futures.add(dm.readPageAsync(pages[i], dests[i]));
+        }
+        for (int i = 0; i < count; i++) {
+            futures.get(i).join();
+            if (dests[i].get(0) != i + 1 || dests[i].get(config.getPageSize() - 1) != i + 1) {
+                throw new IOException("Erreur : Page " + i + " mal lue par readPageAsync !");
+            }
+        }
+        System.out.println("   OK - " + count + " lectures asynchrones cohérentes");
+        
+        // Une page inexistante donne un futur en erreur
+        CompletableFuture<Void> bad =
+            dm.readPageAsync(new PageId(0, 100000), ByteBuffer.allocate(config.getPageSize()));
+        if (!bad.isCompletedExceptionally()) {
+            throw new IOException("Erreur : Futur en erreur attendu pour page inexistante !");
+        }
+        System.out.println("   OK - Page inexistante signalée par le futur");
+
+        dm.finish();
+    }
+
+    /**
+     * Test 10 : une page modifiée sur disque est détectée à la lecture et par scrub()
+     */
+    private static void testChecksum() throws IOException {
+        System.out.println("\n10. Test sommes de contrôle...");
+        
+        File configFile = new File("config/config.txt");
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+
+        PageId pageId;
+        {
+            DiskManager dm = new DiskManager(config);
+            pageId = dm.allocPage();
+            byte[] data = new byte[config.getPageSize()];
+            Arrays.fill(data, (byte) 42);
+            dm.WritePage(pageId, data);
+            
+            if (dm.scrub() != 0) {
+                throw new IOException("Erreur : scrub() signale une page corrompue à tort !");
+            }
+            System.out.println("   OK - Aucune page corrompue avant modification");
+            
+            dm.finish();
+        }
+        
+        // Modifier un octet de la page directement dans le fichier
+        // (en-tête + bitmap du groupe 0, puis emplacements des pages)
+        int slotSize = config.getPageSize() + DiskManager.CHECKSUM_SIZE;
+        long offset = (long) (2 + pageId.getPageIdx()) * slotSize + 100;
+        try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(
+                new File(config.getPath(), "Data" + pageId.getFileIdx() + ".bin"), "rw")) {
+            raf.seek(offset);
+            raf.write(7);
+        }
+        
+        DiskManager dm = new DiskManager(config);
+        if (dm.scrub() != 1 || !dm.getCorruptPages().contains(pageId)) {
+            throw new IOException("Erreur : scrub() n'a pas trouvé la page corrompue !");
+        }
+        System.out.println("   OK - Page corrompue trouvée par scrub()");
+        
+        try {
+            dm.ReadPage(pageId, new byte[config.getPageSize()]);
+            throw new IOException("Erreur : Exception attendue pour page corrompue !");
+        } catch (IOException e) {
+            if (!e.getMessage().contains("Somme de contrôle")) {
+                throw e;
+            }
+            System.out.println("   OK - Lecture de la page corrompue refusée");
+        }
+        
+        // Réécrire la page la répare
+        dm.WritePage(pageId, new byte[config.getPageSize()]);
+        dm.ReadPage(pageId, new byte[config.getPageSize()]);
+        System.out.println("   OK - Page réécrite lisible de nouveau");
+
+        dm.finish();
+    }
+
+    /**
+     * Test 11 : pages d'un fichier compressé (dm_compression = 'LZ4')
+     */
+    private static void testCompression() throws IOException {
+        System.out.println("\n11. Test compression des pages...");
+        
+        // Configuration de test : config.txt + compression LZ4
+        File configFile = File.createTempFile("config_lz4", ".txt");
+        configFile.deleteOnExit();
+        List<String> lines = new ArrayList<>(java.nio.file.Files.readAllLines(new File("config/config.txt").toPath()));
+        lines.add("dm_compression = 'LZ4'");
+        java.nio.file.Files.write(configFile.toPath(), lines);
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+
+        int count = 10;
+        PageId[] pages = new PageId[count];
+        {
+            DiskManager dm = new DiskManager(config);
+            for (int i = 0; i < count; i++) {
+                pages[i] = dm.allocPage();
+                // Page de texte complétée par des espaces, sauf la dernière (aléatoire, incompressible)
+                byte[] data = new byte[config.getPageSize()];
+                Arrays.fill(data, (byte) ' ');
+                if (i == count - 1) {
+                    new java.util.Random(i).nextBytes(data);
+                }
+                byte[] text = ("Enregistrement " + i).getBytes();
+                System.arraycopy(text, 0, data, 0, text.length);
+                dm.WritePage(pages[i], data);
+            }
+            dm.finish();
+        }
+        System.out.println("   OK - " + count + " pages écrites dans un fichier compressé");
+        
+        DiskManager dm = new DiskManager(config);
+        for (int i = 0; i < count; i++) {
+            byte[] dataRead = new byte[config.getPageSize()];
+            dm.ReadPage(pages[i], dataRead);
+            String text = "Enregistrement " + i;
+            if (!new String(dataRead, 0, text.length()).equals(text)
+                    || (i < count - 1 && dataRead[config.getPageSize() - 1] != ' ')) {
+                throw new IOException("Erreur : Page " + i + " mal relue après compression !");
+            }
+        }
+        System.out.println("   OK - Pages relues et décompressées après redémarrage");
+        
+        if (dm.scrub() != 0) {
+            throw new IOException("Erreur : scrub() signale une page compressée corrompue à tort !");
+        }
+        System.out.println("   OK - Sommes de contrôle des pages compressées valides");
+
+        dm.finish();
+    }
+
+    /**
+     * Test 12 : après un arrêt sans finish() ni force(), les pages créées par
+     * l'agrandissement du fichier existent toujours au redémarrage
+     */
+    private static void testHeaderWithoutFinish() throws IOException {
+        System.out.println("\n12. Test en-tête sans finish()...");
+        
+        File configFile = new File("config/config.txt");
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+
+        int count = 3 * config.getExtentPages() + 1;
+        PageId last = null;
+        {
+            DiskManager dm = new DiskManager(config);
+            for (int i = 0; i < count; i++) {
+                last = dm.allocPage();
+            }
+            byte[] data = new byte[config.getPageSize()];
+            Arrays.fill(data, (byte) 77);
+            dm.WritePage(last, data);
+            // Pas de finish() : le gestionnaire est abandonné comme après un arrêt brutal
+        }
+        
+        DiskManager dm = new DiskManager(config);
+        byte[] dataRead = new byte[config.getPageSize()];
+        dm.ReadPage(last, dataRead);
+        if (dataRead[0] != 77 || dataRead[config.getPageSize() - 1] != 77) {
+            throw new IOException("Erreur : Page " + last.getPageIdx() + " mal relue après redémarrage !");
+        }
+        System.out.println("   OK - Page " + last.getPageIdx() + " relue sans finish() avant le redémarrage");
+
+        dm.finish();
+    }
+
+    /**
+     * Test 13 : insertions et suppressions alternées avec allocPage(near) :
+     * les pages désallouées sont réutilisées avant d'agrandir le fichier
+     */
+    private static void testNearReusesFreePages() throws IOException {
+        System.out.println("\n13. Test réutilisation des pages libres par allocPage(near)...");
+        
+        File configFile = new File("config/config.txt");
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+
+        DiskManager dm = new DiskManager(config);
+        List<PageId> pages = new ArrayList<>();
+        PageId near = dm.allocPage();
+        for (int i = 0; i < 8 * config.getExtentPages(); i++) {
+            near = dm.allocPage(near);
+            pages.add(near);
+        }
+        int pageCount = dm.getPageCount(near.getFileIdx());
+        
+        for (int tour = 0; tour < 10; tour++) {
+            // Une page sur deux libérée : aucun extent ne devient entièrement libre
+            List<PageId> freed = new ArrayList<>();
+            for (int i = tour % 2; i < pages.size(); i += 2) {
+                dm.DeallocPage(pages.get(i));
+                freed.add(pages.get(i));
+            }
+            for (PageId pageId : freed) {
+                near = dm.allocPage(near);
+                pages.set(pages.indexOf(pageId), near);
+            }
+        }
+        if (dm.getPageCount(near.getFileIdx()) != pageCount) {
+            throw new IOException("Erreur : Fichier agrandi de " + pageCount + " à "
+                + dm.getPageCount(near.getFileIdx()) + " pages malgré les pages libres !");
+        }
+        System.out.println("   OK - " + pageCount + " pages après 10 tours de suppressions et d'insertions");
+
+        dm.finish();
+    }
+
+    /**
+     * Test 14 : Fichiers écrits par une version précédente (sans en-tête, version 3, version 4 compressé)
+     */
+    private static void testLegacyFormats() throws IOException {
+        System.out.println("\n14. Test fichiers d'un format précédent...");
+        
+        File configFile = new File("config/config.txt");
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+        int pageSize = config.getPageSize();
+
+        // Data0.bin sans en-tête : bitmap de 64 octets puis 3 pages (0 et 2 utilisées)
+        ByteBuffer v0 = ByteBuffer.allocate(64 + 3 * pageSize);
+        v0.put(0, (byte) 0b101);
+        for (int i = 0; i < 3; i++) {
+            v0.put(64 + i * pageSize, (byte) (i + 1));
+            v0.put(64 + (i + 1) * pageSize - 1, (byte) (i + 1));
+        }
+        Files.write(new File(config.getPath(), "Data0.bin").toPath(), v0.array());
+
+        // Data1.bin en version 3 : en-tête, bitmap du groupe 0 puis 3 pages (0 et 1 utilisées)
+        int slot = pageSize + DiskManager.CHECKSUM_SIZE;
+        ByteBuffer v3 = ByteBuffer.allocate(5 * slot);
+        v3.putInt(0x42444441).putInt(3).putInt(3).putInt(1).putInt(1);
+        v3.put(slot, (byte) 0b011);
+        for (int i = 0; i < 3; i++) {
+            v3.put((2 + i) * slot, (byte) (10 + i));
+            v3.put((2 + i) * slot + pageSize - 1, (byte) (10 + i));
+        }
+        Files.write(new File(config.getPath(), "Data1.bin").toPath(), v3.array());
+
+        // Data2.bin compressé en version 4 : emplacements fixes de pageSize + 8 octets,
+        // page 0 stockée sans compression, page 1 jamais écrite (longueur nulle)
+        int compressedSlot = pageSize + 8;
+        ByteBuffer v4 = ByteBuffer.allocate(4 * compressedSlot);
+        v4.putInt(0x42444441).putInt(4).putInt(1).putInt(2).putInt(1).putInt(0);
+        v4.put(compressedSlot, (byte) 0b11);
+        byte[] stored = new byte[pageSize];
+        Arrays.fill(stored, (byte) 20);
+        java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+        crc.update(stored);
+        v4.putInt(2 * compressedSlot, -pageSize).putInt(2 * compressedSlot + 4, (int) crc.getValue());
+        v4.put(2 * compressedSlot + 8, stored);
+        Files.write(new File(config.getPath(), "Data2.bin").toPath(), v4.array());
+
+        for (int ouverture = 1; ouverture <= 2; ouverture++) {
+            DiskManager dm = new DiskManager(config);
+            int[][] expected = { {0, 0, 1}, {0, 2, 3}, {1, 0, 10}, {1, 1, 11}, {2, 0, 20}, {2, 1, 0} };
+            byte[] dataRead = new byte[pageSize];
+            for (int[] e : expected) {
+                dm.ReadPage(new PageId(e[0], e[1]), dataRead);
+                if (dataRead[0] != e[2] || dataRead[pageSize - 1] != e[2]) {
+                    throw new IOException("Erreur : Page (" + e[0] + "," + e[1] + ") mal relue à l'ouverture " + ouverture + " !");
+                }
+            }
+            if (dm.getPageCount(0) != 3 || dm.getPageCount(1) != 3 || dm.getPageCount(2) != 2) {
+                throw new IOException("Erreur : Nombre de pages incorrect après conversion !");
+            }
+            if (ouverture == 1) {
+                PageId reused = dm.allocPage();
+                if (reused.getFileIdx() != 0 || reused.getPageIdx() != 1) {
+                    throw new IOException("Erreur : La page libre (0,1) n'est pas réutilisée : (" + reused.getFileIdx() + "," + reused.getPageIdx() + ") !");
+                }
+                dm.DeallocPage(reused);
+            }
+            dm.finish();
+        }
+        System.out.println("   OK - Fichiers sans en-tête, version 3 et version 4 compressé convertis, pages relues après redémarrage");
+    }
+
+    /**
+     * Test 15 : Une somme de contrôle nulle n'est admise que pour une page libre
+     */
+    private static void testErasedChecksum() throws IOException {
+        System.out.println("\n15. Test somme de contrôle effacée...");
+        
+        File configFile = new File("config/config.txt");
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+        cleanDBFiles(config);
+        int pageSize = config.getPageSize();
+
+        PageId written;
+        PageId blank;
+        PageId free;
+        {
+            DiskManager dm = new DiskManager(config);
+            written = dm.allocPage();
+            blank = dm.allocPage();
+            free = dm.allocPage();
+            byte[] data = new byte[pageSize];
+            Arrays.fill(data, (byte) 42);
+            dm.WritePage(written, data);
+            dm.WritePage(free, data);
+            dm.DeallocPage(free);
+
+            // Page allouée jamais écrite : lisible (vide), et non signalée
+            byte[] dataRead = new byte[pageSize];
+            dm.ReadPage(blank, dataRead);
+            if (dataRead[0] != 0 || dm.scrub() != 0) {
+                throw new IOException("Erreur : Page allouée jamais écrite signalée corrompue !");
+            }
+            System.out.println("   OK - Page allouée jamais écrite lisible");
+            dm.finish();
+        }
+
+        // Effacer la somme de contrôle de la page écrite et de la page libérée
+        int slotSize = pageSize + DiskManager.CHECKSUM_SIZE;
+        try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(
+                new File(config.getPath(), "Data" + written.getFileIdx() + ".bin"), "rw")) {
+            for (PageId pageId : new PageId[] { written, free }) {
+                raf.seek((long) (2 + pageId.getPageIdx()) * slotSize + pageSize);
+                raf.writeInt(0);
+            }
+        }
+
+        DiskManager dm = new DiskManager(config);
+        if (dm.scrub() != 1 || !dm.getCorruptPages().contains(written)) {
+            throw new IOException("Erreur : scrub() n'a pas signalé la seule page utilisée sans somme de contrôle !");
+        }
+        System.out.println("   OK - Somme effacée trouvée par scrub(), page libre ignorée");
+
+        try {
+            dm.ReadPage(written, new byte[pageSize]);
+            throw new IOException("Erreur : Exception attendue pour une somme de contrôle effacée !");
+        } catch (IOException e) {
+            if (!e.getMessage().contains("Somme de contrôle")) {
+                throw e;
+            }
+            System.out.println("   OK - Lecture de la page sans somme de contrôle refusée");
+        }
+
+        dm.finish();
+    }
+
+    /**
+     * Test 16 : Un fichier compressé est plus petit que le même fichier non compressé,
+     * à la taille de page par défaut, y compris après des réécritures qui déplacent les pages
+     */
+    private static void testCompressedFileSize() throws IOException {
+        System.out.println("\n16. Test taille d'un fichier compressé...");
+        
+        File configFile = File.createTempFile("config_lz4", ".txt");
+        configFile.deleteOnExit();
+        List<String> lines = new ArrayList<>(Files.readAllLines(new File("config/config.txt").toPath()));
+        lines.add("dm_compression = 'LZ4'");
+        Files.write(configFile.toPath(), lines);
+        DBConfig lz4 = DBConfig.LoadDBConfig(configFile);
+        DBConfig plain = DBConfig.LoadDBConfig(new File("config/config.txt"));
+        int pageSize = plain.getPageSize();
+        int count = 200;
+
+        long[] sizes = new long[2];
+        DBConfig[] configs = { plain, lz4 };
+        for (int c = 0; c < 2; c++) {
+            cleanDBFiles(configs[c]);
+            DiskManager dm = new DiskManager(configs[c]);
+            for (int i = 0; i < count; i++) {
+                dm.WritePage(dm.allocPage(), textPage(i, pageSize));
+            }
+            dm.finish();
+            sizes[c] = new File(configs[c].getPath(), "Data0.bin").length();
+        }
+        if (sizes[1] * 4 > sizes[0]) {
+            throw new IOException("Erreur : Fichier compressé de " + sizes[1] + " octets pour "
+                + sizes[0] + " octets sans compression !");
+        }
+        System.out.println("   OK - " + count + " pages de " + pageSize + " octets : " + sizes[1]
+            + " octets compressées, " + sizes[0] + " octets sans compression");
+
+        // Pages incompressibles (déplacées), puis de nouveau du texte
+        {
+            DiskManager dm = new DiskManager(lz4);
+            byte[] noise = new byte[pageSize];
+            java.util.Random random = new java.util.Random(16);
+            for (int i = 0; i < count; i += 2) {
+                random.nextBytes(noise);
+                dm.WritePage(new PageId(0, i), noise);
+            }
+            for (int i = 0; i < count; i += 4) {
+                dm.WritePage(new PageId(0, i), textPage(-i, pageSize));
+            }
+            dm.finish();
+        }
+
+        DiskManager dm = new DiskManager(lz4);
+        byte[] dataRead = new byte[pageSize];
+        for (int i = 0; i < count; i++) {
+            dm.ReadPage(new PageId(0, i), dataRead);
+            boolean expected = i % 2 == 1 ? Arrays.equals(dataRead, textPage(i, pageSize))
+                : i % 4 == 0 ? Arrays.equals(dataRead, textPage(-i, pageSize)) : dataRead[pageSize - 1] != ' ';
+            if (!expected) {
+                throw new IOException("Erreur : Page " + i + " mal relue après réécritures !");
+            }
+        }
+        if (dm.scrub() != 0) {
+            throw new IOException("Erreur : scrub() signale une page compressée corrompue à tort !");
+        }
+        System.out.println("   OK - Pages déplacées relues après redémarrage ("
+            + new File(lz4.getPath(), "Data0.bin").length() + " octets)");
+        dm.finish();
+    }
+
+    /**
+     * Page de texte complétée par des espaces (très compressible).
+     */
+    private static byte[] textPage(int i, int pageSize) {
+        byte[] data = new byte[pageSize];
+        Arrays.fill(data, (byte) ' ');
+        byte[] text = ("Enregistrement " + i).getBytes();
+        System.arraycopy(text, 0, data, 0, text.length);
+        return data;
+    }
+
     /**
      * Supprime les fichiers Data*.bin pour repartir d'un état propre
      */
@@ -0,0 +1,156 @@
+package bdda.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import bdda.core.BufferManager;
+import bdda.core.DBConfig;
+import bdda.core.DiskManager;
+import bdda.core.InMemoryBackend;
+import bdda.core.PageId;
+import bdda.core.StorageBackend;
+import bdda.storage.ColumnInfo;
+import bdda.storage.Record;
+import bdda.storage.Relation;
+
+/**
+ * Tests du choix du stockage (dm_backend) et du stockage en mémoire
+ */
+public class StorageBackendTests {
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("=== TEST STORAGEBACKEND ===\n");
+
+            // 1. Choix du stockage selon la configuration
+            testBackendSelection();
+
+            // 2. Allocation, lecture, écriture en mémoire
+            testInMemoryPages();
+
+            // 3. Relation et BufferManager sur le stockage en mémoire
+            testRelationInMemory();
+
+            System.out.println("\nTOUS LES TESTS REUSSIS !");
+
+        } catch (Exception e) {
+            System.err.println("ERREUR DANS LES TESTS : " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Test 1 : dm_backend choisit DiskManager (FILE, par défaut) ou InMemoryBackend (MEMORY)
+     */
+    private static void testBackendSelection() throws IOException {
+        System.out.println("1. Test choix du stockage...");
+
+        StorageBackend fileBackend = StorageBackend.open(DBConfig.LoadDBConfig(new File("config/config.txt")));
+        if (!(fileBackend instanceof DiskManager) || !fileBackend.isPersistent()) {
+            throw new IOException("Erreur : DiskManager attendu par défaut !");
+        }
+        fileBackend.finish();
+        System.out.println("   OK - Stockage FILE : DiskManager");
+
+        StorageBackend memoryBackend = StorageBackend.open(loadMemoryConfig());
+        if (!(memoryBackend instanceof InMemoryBackend) || memoryBackend.isPersistent()) {
+            throw new IOException("Erreur : InMemoryBackend attendu pour dm_backend = 'MEMORY' !");
+        }
+        memoryBackend.finish();
+        System.out.println("   OK - Stockage MEMORY : InMemoryBackend");
+    }
+
+    /**
+     * Test 2 : pages en mémoire (réutilisation, lecture/écriture, erreurs)
+     */
+    private static void testInMemoryPages() throws IOException {
+        System.out.println("\n2. Test pages en mémoire...");
+
+        DBConfig config = loadMemoryConfig();
+        StorageBackend backend = StorageBackend.open(config);
+
+        PageId page1 = backend.allocPage();
+        PageId page2 = backend.allocPage();
+        PageId page3 = backend.allocPage();
+        backend.DeallocPage(page2);
+        if (!backend.allocPage().equals(page2)) {
+            throw new IOException("Erreur : La page libérée n'a pas été réutilisée !");
+        }
+        System.out.println("   OK - Allocation et réutilisation des pages");
+
+        byte[] data = new byte[config.getPageSize()];
+        Arrays.fill(data, (byte) 5);
+        backend.WritePage(page3, data);
+        byte[] dataRead = new byte[config.getPageSize()];
+        backend.ReadPage(page3, dataRead);
+        if (!Arrays.equals(data, dataRead)) {
+            throw new IOException("Erreur : Données lues différentes des données écrites !");
+        }
+        backend.ReadPage(page1, dataRead);
+        if (dataRead[0] != 0) {
+            throw new IOException("Erreur : Page jamais écrite non vide !");
+        }
+        System.out.println("   OK - Écriture/lecture cohérente");
+
+        try {
+            backend.ReadPage(new PageId(0, 100000), dataRead);
+            throw new IOException("Erreur : Exception attendue pour page inexistante !");
+        } catch (IOException e) {
+            if (!e.getMessage().contains("inexistante")) {
+                throw e;
+            }
+            System.out.println("   OK - Erreur page inexistante détectée");
+        }
+
+        backend.finish();
+    }
+
+    /**
+     * Test 3 : une relation complète sur le stockage en mémoire
+     */
+    private static void testRelationInMemory() throws IOException {
+        System.out.println("\n3. Test relation en mémoire...");
+
+        DBConfig config = loadMemoryConfig();
+        StorageBackend backend = StorageBackend.open(config);
+        BufferManager bm = new BufferManager(config, backend);
+
+        List<ColumnInfo> cols = Arrays.asList(
+            new ColumnInfo("id", "INT"),
+            new ColumnInfo("nom", "CHAR(10)")
+        );
+        Relation rel = new Relation("Memoire", cols, backend, bm);
+
+        int count = 500;
+        for (int i = 0; i < count; i++) {
+            rel.InsertRecord(new Record(Arrays.asList((Object) i, "nom" + i)));
+        }
+        bm.FlushBuffers();
+
+        List<Record> records = rel.GetAllRecords();
+        if (records.size() != count) {
+            throw new IOException("Erreur : " + records.size() + " records relus au lieu de " + count + " !");
+        }
+        System.out.println("   OK - " + count + " records insérés et relus en mémoire ("
+                + rel.getDataPages().size() + " pages de données)");
+
+        bm.FlushBuffers();
+        backend.finish();
+    }
+
+    /**
+     * Configuration de test : config.txt avec dm_backend = 'MEMORY'
+     */
+    private static DBConfig loadMemoryConfig() throws IOException {
+        File configFile = File.createTempFile("config_memory", ".txt");
+        configFile.deleteOnExit();
+        List<String> lines = new ArrayList<>(Files.readAllLines(new File("config/config.txt").toPath()));
+        lines.add("dm_backend = 'MEMORY'");
+        Files.write(configFile.toPath(), lines);
+        return DBConfig.LoadDBConfig(configFile);
+    }
+}